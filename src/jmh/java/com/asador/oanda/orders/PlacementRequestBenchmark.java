@@ -0,0 +1,63 @@
+package com.asador.oanda.orders;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.asador.oanda.orders.domain.Order;
+import com.asador.oanda.orders.domain.OrderAction;
+import com.oanda.v20.account.AccountID;
+import com.oanda.v20.order.OrderCreateRequest;
+
+/**
+ * Work done between a trigger and the call to OANDA: building the stop order request from scratch,
+ * compared with stamping the request prepared when the order started being watched.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlacementRequestBenchmark {
+
+	private static final AccountID ACCOUNT_ID = new AccountID("101-004-1234567-001");
+
+	private final OrderManager orderManager = new OrderManager();
+	private final Order order = new Order();
+	private PlacementRequest placementRequest;
+
+	@Setup
+	public void setup() {
+		ReflectionTestUtils.setField(orderManager, "accountIdObject", ACCOUNT_ID);
+		order.setOrderId(1);
+		order.setInstrument("EUR_USD");
+		order.setAction(OrderAction.BUY);
+		order.setStopEntry(1.1925);
+		order.setTargetProfit(1.2025);
+		order.setStopLoss(1.1875);
+		order.setUnits(10000);
+		order.setTriggerDistancePips(5);
+		placementRequest = new PlacementRequest(ACCOUNT_ID, order);
+	}
+
+	@Benchmark
+	public OrderCreateRequest buildStopOrderRequest() {
+		return new PlacementRequest(ACCOUNT_ID, order).withGtdTime(orderManager.getNextWeekGtdTime());
+	}
+
+	@Benchmark
+	public OrderCreateRequest stampPreparedRequest() {
+		return placementRequest.withGtdTime(orderManager.getNextWeekGtdTime());
+	}
+}
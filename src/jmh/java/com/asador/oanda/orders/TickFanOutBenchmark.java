@@ -0,0 +1,120 @@
+package com.asador.oanda.orders;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.asador.oanda.Application;
+import com.asador.oanda.orders.domain.Order;
+import com.asador.oanda.orders.domain.OrderAction;
+import com.asador.oanda.pricing.PollingPriceFeed;
+import com.oanda.v20.Context;
+import com.oanda.v20.instrument.Candlestick;
+import com.oanda.v20.instrument.CandlestickData;
+import com.oanda.v20.instrument.InstrumentCandlesRequest;
+import com.oanda.v20.instrument.InstrumentCandlesResponse;
+import com.oanda.v20.instrument.InstrumentContext;
+
+/**
+ * One price poll end to end, from the candle request on a stubbed instrument context through the
+ * retry template and the price feed down to the trigger ring of the watched orders.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TickFanOutBenchmark {
+
+	@Param({"100", "10000"})
+	private int watchCount;
+
+	private ConfigurableApplicationContext applicationContext;
+	/** The poll PollingPriceFeed schedules for EUR_USD, run on the benchmark thread */
+	private Runnable eurusdPoller;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		applicationContext = new SpringApplicationBuilder(Application.class)
+				.web(WebApplicationType.NONE)
+				.run("--spring.datasource.url=jdbc:hsqldb:mem:benchmark",
+						"--oanda.api.pricingRequestsPerSecond=100000000",
+						"--logging.level.com.asador.oanda=WARN");
+
+		InstrumentCandlesResponse candlesResponse = mock(InstrumentCandlesResponse.class);
+		Candlestick candlestick = new Candlestick();
+		CandlestickData candleData = new CandlestickData();
+		candlestick.setMid(candleData);
+		candleData.setC(1.2000);
+		when(candlesResponse.getCandles()).thenReturn(Arrays.asList(candlestick));
+		Context oandaCtx = applicationContext.getBean(Context.class);
+		oandaCtx.instrument = new InstrumentContext(oandaCtx) {
+
+			@Override
+			public InstrumentCandlesResponse candles(InstrumentCandlesRequest request) {
+				return candlesResponse;
+			}
+		};
+
+		// BUY orders well below the price, so the tick never triggers any of them
+		OrderManager orderManager = applicationContext.getBean(OrderManager.class);
+		for (int i = 0; i < watchCount; i++) {
+			Order order = new Order();
+			order.setOrderId(i + 1);
+			order.setInstrument("EUR_USD");
+			order.setAction(OrderAction.BUY);
+			order.setStopEntry(1.1000 - i * 0.00001);
+			order.setTargetProfit(1.3000);
+			order.setStopLoss(0.9000);
+			order.setUnits(1000);
+			order.setTriggerDistancePips(3);
+			orderManager.createOrderWatch(order);
+		}
+		// the trigger ring thread subscribes the watches to the feed
+		PollingPriceFeed priceFeed = applicationContext.getBean(PollingPriceFeed.class);
+		long deadline = System.currentTimeMillis() + 10_000;
+		while ((eurusdPoller = getPoller(priceFeed, "EUR_USD")) == null) {
+			if (System.currentTimeMillis() > deadline)
+				throw new IllegalStateException("EUR_USD watches never subscribed to the price feed");
+			Thread.yield();
+		}
+	}
+
+	private static Runnable getPoller(PollingPriceFeed priceFeed, String instrument) {
+		synchronized (priceFeed) {
+			return (Runnable) ((Map<?, ?>) ReflectionTestUtils.getField(priceFeed, "pollers")).get(instrument);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		applicationContext.close();
+	}
+
+	@Benchmark
+	public void pollAndFanOutTick() {
+		eurusdPoller.run();
+	}
+}
@@ -0,0 +1,89 @@
+package com.asador.oanda.orders;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.asador.oanda.instruments.InstrumentCatalog;
+import com.asador.oanda.instruments.InstrumentMetadata;
+import com.asador.oanda.orders.domain.Order;
+import com.asador.oanda.orders.domain.OrderAction;
+import com.asador.oanda.pricing.Price;
+
+/**
+ * Cost of checking one price against every pending order, compared with finding the crossed orders
+ * in the trigger index. No order is crossed, which is what almost every tick looks like.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TriggerEvaluationBenchmark {
+
+	private static final double PRICE = 1.2000;
+	private static final long PRICE_TICKS = Price.toTicks(PRICE);
+
+	@Param({"1000", "100000"})
+	private int orderCount;
+
+	private final OrderManager orderManager = new OrderManager();
+	private Order[] orders;
+	private TriggerIndex triggerIndex;
+
+	@Setup
+	public void setup() {
+		InstrumentCatalog instrumentCatalog = new InstrumentCatalog();
+		instrumentCatalog.update(Collections.singletonList(new InstrumentMetadata("EUR_USD", -4, 5, 1)));
+		ReflectionTestUtils.setField(orderManager, "instrumentCatalog", instrumentCatalog);
+		Random random = new Random(42);
+		orders = new Order[orderCount];
+		triggerIndex = new TriggerIndex();
+		for (int i = 0; i < orderCount; i++) {
+			Order order = new Order();
+			order.setOrderId(i + 1);
+			order.setInstrument("EUR_USD");
+			order.setAction(i % 2 == 0 ? OrderAction.BUY : OrderAction.SELL);
+			double distance = 0.0010 + random.nextInt(500) / 10000.0;
+			order.setStopEntry(order.getAction() == OrderAction.BUY ? PRICE - distance : PRICE + distance);
+			order.setTriggerDistancePips(3);
+			orders[i] = order;
+			triggerIndex.add(new PriceTrigger(order, orderManager.getOrderPlacementTicks(order), null));
+		}
+	}
+
+	@Benchmark
+	public void checkEveryOrder(Blackhole blackhole) {
+		for (Order order : orders) {
+			long placementTicks = orderManager.getOrderPlacementTicks(order);
+			blackhole.consume(order.getAction() == OrderAction.BUY ? PRICE_TICKS <= placementTicks : PRICE_TICKS >= placementTicks);
+		}
+	}
+
+	@Benchmark
+	public void getOrderPlacementTicks(Blackhole blackhole) {
+		for (Order order : orders)
+			blackhole.consume(orderManager.getOrderPlacementTicks(order));
+	}
+
+	@Benchmark
+	public List<PriceTrigger> triggerIndexPollTriggered() {
+		return triggerIndex.pollTriggered(PRICE_TICKS);
+	}
+}
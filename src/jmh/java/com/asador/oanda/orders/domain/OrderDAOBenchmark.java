@@ -0,0 +1,119 @@
+package com.asador.oanda.orders.domain;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * {@link OrderDAO} throughput with a number of orders already pending, on the in-memory HSQLDB store
+ * and on the journal store.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderDAOBenchmark {
+
+	@Param({"jdbc", "journal"})
+	private String store;
+
+	@Param({"1000"})
+	private int pendingOrders;
+
+	private OrderDAO orderDao;
+	private JdbcTemplate jdbcTemplate;
+	private JournalOrderStore journalOrderStore;
+	private Path journalPath;
+	private long[] pendingOrderIds;
+	private int nextPendingOrder;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		OrderStore orderStore;
+		if ("jdbc".equals(store)) {
+			jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource("jdbc:hsqldb:mem:benchmark", "SA", ""));
+			new ResourceDatabasePopulator(new ClassPathResource("schema-hsqldb.sql"))
+					.execute(jdbcTemplate.getDataSource());
+			JdbcOrderStore jdbcOrderStore = new JdbcOrderStore();
+			ReflectionTestUtils.setField(jdbcOrderStore, "jdbcTemplate", jdbcTemplate);
+			jdbcOrderStore.migrateSchema();
+			orderStore = jdbcOrderStore;
+		} else {
+			journalPath = Files.createTempFile("orders", ".journal");
+			Files.delete(journalPath);
+			journalOrderStore = new JournalOrderStore(journalPath.toString(), false);
+			journalOrderStore.init();
+			orderStore = journalOrderStore;
+		}
+
+		orderDao = new OrderDAO();
+		ReflectionTestUtils.setField(orderDao, "orderStore", orderStore);
+		ReflectionTestUtils.setField(orderDao, "orderIdGenerator", new OrderIdGenerator(0));
+		orderDao.init();
+
+		pendingOrderIds = new long[pendingOrders];
+		for (int i = 0; i < pendingOrders; i++)
+			pendingOrderIds[i] = orderDao.createOrder(createOrder(i % 2 == 0 ? "EUR_USD" : "GBP_USD"));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		if (jdbcTemplate != null)
+			jdbcTemplate.execute("SHUTDOWN");
+		if (journalOrderStore != null) {
+			journalOrderStore.close();
+			Files.deleteIfExists(journalPath);
+		}
+	}
+
+	private Order createOrder(String instrument) {
+		Order order = new Order();
+		order.setInstrument(instrument);
+		order.setAction(OrderAction.BUY);
+		order.setStopEntry(1.1925);
+		order.setTargetProfit(1.2025);
+		order.setStopLoss(1.1875);
+		order.setUnits(10000);
+		order.setTriggerDistancePips(5);
+		return order;
+	}
+
+	@Benchmark
+	public boolean createAndRemoveOrder() {
+		long orderId = orderDao.createOrder(createOrder("USD_CAD"));
+		return orderDao.removeOrder(orderId, OrderStatus.CANCELLED);
+	}
+
+	@Benchmark
+	public Order getOrder() {
+		nextPendingOrder = (nextPendingOrder + 1) % pendingOrders;
+		return orderDao.getOrder(pendingOrderIds[nextPendingOrder]);
+	}
+
+	@Benchmark
+	public boolean hasOrder() {
+		return orderDao.hasOrder("USD_CHF", OrderAction.SELL);
+	}
+}
@@ -1,23 +1,46 @@
 package com.asador.oanda;
 
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
-import org.springframework.retry.backoff.FixedBackOffPolicy;
-import org.springframework.retry.policy.AlwaysRetryPolicy;
-import org.springframework.retry.support.RetryTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import com.oanda.v20.Context;
+import com.oanda.v20.ContextBuilder;
 
 @SpringBootApplication
 public class Application {
 
+	/**
+	 * The default HTTP client of the OANDA library keeps 2 connections, which price polling and order
+	 * placement would queue on, so the pool is sized by oanda.api.maxConnections instead.
+	 */
 	@Bean
-	public RetryTemplate retryTemplate() {
-		RetryTemplate retryTemplate = new RetryTemplate();
-		retryTemplate.setRetryPolicy(new AlwaysRetryPolicy());
-		FixedBackOffPolicy backOffPolicy = new FixedBackOffPolicy();
-		backOffPolicy.setBackOffPeriod(2000);
-		retryTemplate.setBackOffPolicy(backOffPolicy);
-		return retryTemplate;
+	public Context oandaContext(@Value("${oanda.restEndpoint}") String oandaApiEndpoint,
+			@Value("${oanda.accessToken}") String accessToken,
+			@Value("${oanda.api.maxConnections:10}") int maxConnections) {
+		return new ContextBuilder(oandaApiEndpoint)
+				.setApplication("")
+				.setToken(accessToken)
+				.setHttpClient(HttpClientBuilder.create()
+						.setMaxConnPerRoute(maxConnections)
+						.setMaxConnTotal(maxConnections)
+						.build())
+				.build();
+	}
+
+	/**
+	 * Runs price polls and background housekeeping. Pending orders are only entries in a trigger index,
+	 * so this pool stays the same size no matter how many orders are being watched.
+	 */
+	@Bean(destroyMethod = "shutdownNow")
+	public ScheduledExecutorService watcherScheduler(@Value("${oanda.watcher.threads:2}") int threads) {
+		return Executors.newScheduledThreadPool(threads, new CustomizableThreadFactory("order-watcher-"));
 	}
 	
 	public static void main(String[] args) {
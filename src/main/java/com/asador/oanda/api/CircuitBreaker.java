@@ -0,0 +1,84 @@
+package com.asador.oanda.api;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Opens after a number of consecutive failures and lets a single probe request through once the pause
+ * is over. The pause doubles every time the probe fails, up to a maximum, and is jittered so that
+ * breakers tripped by the same outage do not all probe at the same moment.
+ */
+public class CircuitBreaker {
+
+	public enum State {CLOSED, OPEN, HALF_OPEN}
+
+	private final int failureThreshold;
+	private final long basePauseNanos;
+	private final long maxPauseNanos;
+	private final LongSupplier nanoClock;
+
+	private State state = State.CLOSED;
+	private int consecutiveFailures;
+	private int consecutiveTrips;
+	private long pausedUntil;
+
+	public CircuitBreaker(int failureThreshold, long basePauseMillis, long maxPauseMillis) {
+		this(failureThreshold, basePauseMillis, maxPauseMillis, System::nanoTime);
+	}
+
+	CircuitBreaker(int failureThreshold, long basePauseMillis, long maxPauseMillis, LongSupplier nanoClock) {
+		this.failureThreshold = failureThreshold;
+		this.basePauseNanos = TimeUnit.MILLISECONDS.toNanos(basePauseMillis);
+		this.maxPauseNanos = TimeUnit.MILLISECONDS.toNanos(maxPauseMillis);
+		this.nanoClock = nanoClock;
+	}
+
+	public synchronized boolean allowRequest() {
+		if (state == State.CLOSED)
+			return true;
+
+		long now = nanoClock.getAsLong();
+		if (now - pausedUntil < 0)
+			return false;
+
+		// one probe at a time, another one is let through if the probe never reports back
+		state = State.HALF_OPEN;
+		pausedUntil = now + basePauseNanos;
+		return true;
+	}
+
+	/**
+	 * Whether {@link #allowRequest()} would let a request through, without giving the probe away.
+	 */
+	public synchronized boolean isRequestAllowed() {
+		return state == State.CLOSED || nanoClock.getAsLong() - pausedUntil >= 0;
+	}
+
+	public synchronized void recordSuccess() {
+		state = State.CLOSED;
+		consecutiveFailures = 0;
+		consecutiveTrips = 0;
+	}
+
+	public synchronized void recordFailure() {
+		consecutiveFailures++;
+		if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+			state = State.OPEN;
+			pausedUntil = nanoClock.getAsLong() + nextPauseNanos();
+			consecutiveTrips++;
+		}
+	}
+
+	public synchronized State getState() {
+		return state;
+	}
+
+	private long nextPauseNanos() {
+		long pause = basePauseNanos << Math.min(consecutiveTrips, 20);
+		if (pause <= 0 || pause > maxPauseNanos)
+			pause = maxPauseNanos;
+		// somewhere between half and the whole pause
+		return pause / 2 + ThreadLocalRandom.current().nextLong(pause / 2 + 1);
+	}
+}
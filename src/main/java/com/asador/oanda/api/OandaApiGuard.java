@@ -0,0 +1,143 @@
+package com.asador.oanda.api;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.oanda.v20.ExecuteException;
+import com.oanda.v20.RequestException;
+
+/**
+ * Single gate in front of every OANDA REST call. Pricing and order placement draw from their own
+ * token buckets, shared by all watchers. Failures trip a circuit breaker for the whole account when
+ * the API itself is failing (connection errors, throttling, server and authentication errors) or for
+ * a single instrument otherwise, and price polling pauses while the relevant breaker is open.
+ */
+@Component
+public class OandaApiGuard {
+	private final Logger logger = LoggerFactory.getLogger(OandaApiGuard.class);
+
+	private final TokenBucket pricingBucket;
+	private final TokenBucket orderBucket;
+	private final CircuitBreaker accountBreaker;
+	private final Map<String, CircuitBreaker> instrumentBreakers = new ConcurrentHashMap<>();
+
+	private final int failureThreshold;
+	private final long basePauseMillis;
+	private final long maxPauseMillis;
+	private final LongSupplier nanoClock;
+
+	@Autowired
+	public OandaApiGuard(@Value("${oanda.api.pricingRequestsPerSecond:20}") double pricingRequestsPerSecond,
+			@Value("${oanda.api.orderRequestsPerSecond:5}") double orderRequestsPerSecond,
+			@Value("${oanda.api.failureThreshold:3}") int failureThreshold,
+			@Value("${oanda.api.pauseSeconds:5}") long pauseSeconds,
+			@Value("${oanda.api.maxPauseSeconds:120}") long maxPauseSeconds) {
+		this(pricingRequestsPerSecond, orderRequestsPerSecond, failureThreshold, pauseSeconds, maxPauseSeconds, System::nanoTime);
+	}
+
+	OandaApiGuard(double pricingRequestsPerSecond, double orderRequestsPerSecond, int failureThreshold, long pauseSeconds,
+			long maxPauseSeconds, LongSupplier nanoClock) {
+		this.pricingBucket = new TokenBucket(pricingRequestsPerSecond);
+		this.orderBucket = new TokenBucket(orderRequestsPerSecond);
+		this.failureThreshold = failureThreshold;
+		this.basePauseMillis = pauseSeconds * 1000;
+		this.maxPauseMillis = maxPauseSeconds * 1000;
+		this.nanoClock = nanoClock;
+		this.accountBreaker = new CircuitBreaker(failureThreshold, basePauseMillis, maxPauseMillis, nanoClock);
+	}
+
+	/**
+	 * Failures worth retrying: the request never got an answer, or OANDA is throttling us or failing.
+	 */
+	public static boolean isTransientFailure(Throwable e) {
+		if (e instanceof ExecuteException)
+			return true;
+		if (e instanceof RequestException) {
+			int status = ((RequestException) e).getStatus();
+			return status == 429 || status >= 500;
+		}
+		return false;
+	}
+
+	private static boolean isAccountFailure(Throwable e) {
+		if (isTransientFailure(e))
+			return true;
+		int status = ((RequestException) e).getStatus();
+		return status == 401 || status == 403;
+	}
+
+	/**
+	 * A breaker past its pause gives its single probe to whoever asks, so it is only asked once the
+	 * other one lets the request through.
+	 */
+	public boolean isPricingAllowed(String instrument) {
+		CircuitBreaker instrumentBreaker = instrumentBreakers.get(instrument);
+		if (instrumentBreaker != null && !instrumentBreaker.isRequestAllowed())
+			return false;
+		if (!accountBreaker.allowRequest())
+			return false;
+		return instrumentBreaker == null || instrumentBreaker.allowRequest();
+	}
+
+	public void acquirePricingPermit() throws InterruptedException {
+		pricingBucket.acquire();
+	}
+
+	public void acquireOrderPermit() throws InterruptedException {
+		orderBucket.acquire();
+	}
+
+	/**
+	 * @param instrument null for calls which are not about an instrument
+	 */
+	public void recordSuccess(String instrument) {
+		accountBreaker.recordSuccess();
+		if (instrument != null) {
+			CircuitBreaker instrumentBreaker = instrumentBreakers.get(instrument);
+			if (instrumentBreaker != null)
+				instrumentBreaker.recordSuccess();
+		}
+	}
+
+	/**
+	 * Only OANDA API failures count, anything else says nothing about the API health.
+	 * @param instrument null for calls which are not about an instrument, only account wide failures
+	 * of those count
+	 */
+	public void recordFailure(String instrument, Throwable e) {
+		if (!(e instanceof RequestException || e instanceof ExecuteException))
+			return;
+
+		if (isAccountFailure(e)) {
+			recordFailure(accountBreaker, "account", e);
+		} else if (instrument != null) {
+			recordFailure(instrumentBreakers.computeIfAbsent(instrument,
+					key -> new CircuitBreaker(failureThreshold, basePauseMillis, maxPauseMillis, nanoClock)), instrument, e);
+		}
+	}
+
+	private void recordFailure(CircuitBreaker breaker, String scope, Throwable e) {
+		CircuitBreaker.State previousState = breaker.getState();
+		breaker.recordFailure();
+		if (previousState != CircuitBreaker.State.OPEN && breaker.getState() == CircuitBreaker.State.OPEN)
+			logger.warn("OANDA API keeps failing for {}, pausing its price polling. Last failure: {}", scope, e.toString());
+	}
+
+	public CircuitBreaker.State getAccountState() {
+		return accountBreaker.getState();
+	}
+
+	public Map<String, CircuitBreaker.State> getInstrumentStates() {
+		Map<String, CircuitBreaker.State> states = new TreeMap<>();
+		instrumentBreakers.forEach((instrument, breaker) -> states.put(instrument, breaker.getState()));
+		return states;
+	}
+}
@@ -0,0 +1,25 @@
+package com.asador.oanda.api;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+public class OandaApiGuardController {
+
+	@Autowired
+	private OandaApiGuard apiGuard;
+
+	@GetMapping(path="/api/circuits", produces="application/json")
+	@ResponseBody()
+	public Map<String, Object> getCircuitStates() {
+		Map<String, Object> states = new LinkedHashMap<>();
+		states.put("account", apiGuard.getAccountState());
+		states.put("instruments", apiGuard.getInstrumentStates());
+		return states;
+	}
+}
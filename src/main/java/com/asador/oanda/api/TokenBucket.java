@@ -0,0 +1,50 @@
+package com.asador.oanda.api;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket refilled at a steady rate up to its capacity. A caller finding the bucket empty reserves
+ * the next token and sleeps until it is due, so waiting callers are served in turn without spinning.
+ */
+public class TokenBucket {
+
+	private final double capacity;
+	private final double tokensPerNano;
+	private final LongSupplier nanoClock;
+
+	private double tokens;
+	private long lastRefill;
+
+	public TokenBucket(double tokensPerSecond) {
+		this(tokensPerSecond, System::nanoTime);
+	}
+
+	TokenBucket(double tokensPerSecond, LongSupplier nanoClock) {
+		if (tokensPerSecond <= 0)
+			throw new IllegalArgumentException("Token rate must be positive");
+		this.capacity = Math.max(1, tokensPerSecond);
+		this.tokensPerNano = tokensPerSecond / TimeUnit.SECONDS.toNanos(1);
+		this.nanoClock = nanoClock;
+		this.tokens = capacity;
+		this.lastRefill = nanoClock.getAsLong();
+	}
+
+	public void acquire() throws InterruptedException {
+		long waitNanos = reserve();
+		if (waitNanos > 0)
+			TimeUnit.NANOSECONDS.sleep(waitNanos);
+	}
+
+	/**
+	 * @return how long the caller has to wait for its token, in nanoseconds
+	 */
+	synchronized long reserve() {
+		long now = nanoClock.getAsLong();
+		tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+		lastRefill = now;
+
+		tokens--;
+		return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / tokensPerNano);
+	}
+}
@@ -0,0 +1,199 @@
+package com.asador.oanda.cluster;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Splits the instruments between the instances sharing the jdbc order store. Instruments hash to a
+ * fixed number of partitions and every partition is leased to one node in the PARTITION_LEASE table.
+ * Each node heartbeats in CLUSTER_NODE, renews its leases and takes expired or free partitions up to
+ * its fair share of the live nodes, releasing the partitions above it so that joining nodes get
+ * theirs. Lease times come from the database clock, so node clocks do not need to agree.
+ * <p>
+ * When clustering is disabled the node owns every instrument.
+ */
+@Component
+public class ClusterCoordinator {
+	private final Logger logger = LoggerFactory.getLogger(ClusterCoordinator.class);
+
+	private static final String SQL_HEARTBEAT = "merge into cluster_node using (values(?)) as n(node_id) " +
+			"on cluster_node.node_id = n.node_id when matched then update set heartbeat_at = unix_millis() " +
+			"when not matched then insert values (n.node_id, unix_millis())";
+	private static final String SQL_CREATE_PARTITION = "merge into partition_lease using (values(?)) as p(partition_id) " +
+			"on partition_lease.partition_id = p.partition_id when not matched then insert values (p.partition_id, null, 0)";
+	private static final String SQL_COUNT_LIVE_NODES = "select count(*) from cluster_node where heartbeat_at > unix_millis() - ?";
+	private static final String SQL_RENEW_LEASES = "update partition_lease set expires_at = unix_millis() + ? where owner = ?";
+	private static final String SQL_SELECT_OWNED = "select partition_id from partition_lease where owner = ? and partition_id < ?";
+	private static final String SQL_SELECT_FREE = "select partition_id from partition_lease " +
+			"where (owner is null or expires_at <= unix_millis()) and partition_id < ?";
+	private static final String SQL_ACQUIRE_LEASE = "update partition_lease set owner = ?, expires_at = unix_millis() + ? " +
+			"where partition_id = ? and (owner is null or expires_at <= unix_millis())";
+	private static final String SQL_RELEASE_LEASE = "update partition_lease set owner = null, expires_at = 0 " +
+			"where partition_id = ? and owner = ?";
+	private static final String SQL_RELEASE_ALL_LEASES = "update partition_lease set owner = null, expires_at = 0 where owner = ?";
+	private static final String SQL_REMOVE_NODE = "delete from cluster_node where node_id = ?";
+
+	private final JdbcTemplate jdbcTemplate;
+	private final boolean enabled;
+	private final int nodeId;
+	private final int partitions;
+	private final long heartbeatMillis;
+	private final long leaseMillis;
+	private final List<Runnable> heartbeatListeners = new CopyOnWriteArrayList<>();
+
+	private volatile Set<Integer> ownedPartitions = Collections.emptySet();
+	/** {@link System#nanoTime()} until which the leases renewed by the last heartbeat are held for sure */
+	private volatile long leasesValidUntilNanos;
+	private ScheduledExecutorService heartbeatScheduler;
+
+	@Autowired
+	public ClusterCoordinator(JdbcTemplate jdbcTemplate,
+			@Value("${oanda.cluster.enabled:false}") boolean enabled,
+			@Value("${oanda.orderStore:jdbc}") String orderStore,
+			@Value("${oanda.nodeId:0}") int nodeId,
+			@Value("${oanda.cluster.partitions:64}") int partitions,
+			@Value("${oanda.cluster.heartbeatMillis:1000}") long heartbeatMillis,
+			@Value("${oanda.cluster.leaseMillis:5000}") long leaseMillis) {
+		if (enabled && !"jdbc".equals(orderStore))
+			throw new IllegalStateException("Clustering requires the jdbc order store shared by every node");
+		if (partitions <= 0 || leaseMillis <= heartbeatMillis)
+			throw new IllegalArgumentException("Partitions must be positive and leases must outlive a heartbeat");
+		this.jdbcTemplate = jdbcTemplate;
+		this.enabled = enabled;
+		this.nodeId = nodeId;
+		this.partitions = partitions;
+		this.heartbeatMillis = heartbeatMillis;
+		this.leaseMillis = leaseMillis;
+	}
+
+	@PostConstruct
+	protected void init() {
+		if (!enabled)
+			return;
+
+		join();
+		heartbeatScheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("cluster-heartbeat-"));
+		heartbeatScheduler.scheduleWithFixedDelay(this::heartbeat, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+		logger.info("Node {} joined the cluster owning {} of {} partitions", nodeId, ownedPartitions.size(), partitions);
+	}
+
+	void join() {
+		for (int partition = 0; partition < partitions; partition++)
+			jdbcTemplate.update(SQL_CREATE_PARTITION, partition);
+		heartbeat();
+	}
+
+	/**
+	 * Leaves the cluster right away, so other nodes take over the partitions without waiting for the
+	 * leases to expire.
+	 */
+	@PreDestroy
+	public void shutdown() {
+		if (!enabled)
+			return;
+
+		if (heartbeatScheduler != null)
+			heartbeatScheduler.shutdownNow();
+		ownedPartitions = Collections.emptySet();
+		try {
+			jdbcTemplate.update(SQL_RELEASE_ALL_LEASES, nodeId);
+			jdbcTemplate.update(SQL_REMOVE_NODE, nodeId);
+		} catch (Exception e) {
+			logger.warn("Failed to leave the cluster, partitions will move once the leases expire", e);
+		}
+	}
+
+	/**
+	 * Listeners run on the heartbeat thread after every heartbeat, once the owned partitions are known.
+	 */
+	public void addHeartbeatListener(Runnable listener) {
+		heartbeatListeners.add(listener);
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public boolean ownsInstrument(String instrument) {
+		return !enabled || ownedPartitions.contains(partitionOf(instrument));
+	}
+
+	public Set<Integer> getOwnedPartitions() {
+		return ownedPartitions;
+	}
+
+	int partitionOf(String instrument) {
+		return Math.floorMod(instrument.hashCode(), partitions);
+	}
+
+	void heartbeat() {
+		long heartbeatStart = System.nanoTime();
+		try {
+			updateLeases();
+			leasesValidUntilNanos = heartbeatStart + TimeUnit.MILLISECONDS.toNanos(leaseMillis);
+		} catch (Exception e) {
+			logger.warn("Cluster heartbeat of node {} failed", nodeId, e);
+			// leases not renewed in time expire and are taken over by the other nodes
+			if (!ownedPartitions.isEmpty() && heartbeatStart - leasesValidUntilNanos >= 0) {
+				ownedPartitions = Collections.emptySet();
+				logger.warn("Leases of node {} expired, it no longer owns any partition", nodeId);
+			}
+			return;
+		}
+
+		for (Runnable listener : heartbeatListeners) {
+			try {
+				listener.run();
+			} catch (Exception e) {
+				logger.error("Cluster heartbeat listener failed", e);
+			}
+		}
+	}
+
+	private void updateLeases() {
+		jdbcTemplate.update(SQL_HEARTBEAT, nodeId);
+		jdbcTemplate.update(SQL_RENEW_LEASES, leaseMillis, nodeId);
+
+		int liveNodes = Math.max(1, jdbcTemplate.queryForObject(SQL_COUNT_LIVE_NODES, Integer.class, leaseMillis));
+		int fairShare = (partitions + liveNodes - 1) / liveNodes;
+		Set<Integer> owned = new HashSet<>(jdbcTemplate.queryForList(SQL_SELECT_OWNED, Integer.class, nodeId, partitions));
+
+		List<Integer> surplus = new ArrayList<>(owned);
+		Collections.sort(surplus);
+		for (int i = surplus.size() - 1; i >= 0 && owned.size() > fairShare; i--) {
+			jdbcTemplate.update(SQL_RELEASE_LEASE, surplus.get(i), nodeId);
+			owned.remove(surplus.get(i));
+		}
+
+		if (owned.size() < fairShare) {
+			for (Integer partition : jdbcTemplate.queryForList(SQL_SELECT_FREE, Integer.class, partitions)) {
+				if (owned.size() >= fairShare)
+					break;
+				if (jdbcTemplate.update(SQL_ACQUIRE_LEASE, nodeId, leaseMillis, partition) == 1)
+					owned.add(partition);
+			}
+		}
+
+		if (!owned.equals(ownedPartitions))
+			logger.info("Node {} now owns {} of {} partitions with {} live nodes", nodeId, owned.size(), partitions, liveNodes);
+		ownedPartitions = Collections.unmodifiableSet(owned);
+	}
+}
@@ -0,0 +1,127 @@
+package com.asador.oanda.instruments;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ResourceUtils;
+
+import com.asador.oanda.api.OandaApiGuard;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.oanda.v20.Context;
+import com.oanda.v20.account.AccountID;
+import com.oanda.v20.account.AccountInstrumentsResponse;
+import com.oanda.v20.primitives.Instrument;
+
+/**
+ * In-memory copy of the account instruments, loaded at startup and refreshed periodically. It is read
+ * from a file in the OANDA account instruments response format instead when oanda.instruments.file
+ * is set, e.g. for tests. Until the instruments are loaded, currency pairs get the pip size they
+ * usually have.
+ */
+@Component
+public class InstrumentCatalog {
+	private final Logger logger = LoggerFactory.getLogger(InstrumentCatalog.class);
+
+	@Value("${oanda.accountId}")
+	private String accountId;
+
+	@Value("${oanda.instruments.file:}")
+	private String instrumentsFile;
+
+	@Value("${oanda.instruments.refreshMinutes:60}")
+	private long refreshMinutes;
+
+	@Autowired
+	private Context oandaCtx;
+
+	@Autowired
+	private OandaApiGuard apiGuard;
+
+	@Autowired
+	private ScheduledExecutorService watcherScheduler;
+
+	private volatile Map<String, InstrumentMetadata> instruments = Collections.emptyMap();
+
+	@PostConstruct
+	protected void init() {
+		refresh();
+		if (instrumentsFile.isEmpty() && refreshMinutes > 0)
+			watcherScheduler.scheduleWithFixedDelay(this::refresh, refreshMinutes, refreshMinutes, TimeUnit.MINUTES);
+	}
+
+	public void refresh() {
+		try {
+			update(instrumentsFile.isEmpty() ? fetchInstruments() : readInstruments());
+			logger.info("Loaded metadata of {} instruments", instruments.size());
+		} catch (Exception e) {
+			logger.warn("Failed to load instrument metadata, keeping the {} instruments known so far", 
+					instruments.size(), e);
+		}
+	}
+
+	public void update(Collection<InstrumentMetadata> metadata) {
+		Map<String, InstrumentMetadata> loaded = new HashMap<>();
+		for (InstrumentMetadata instrument : metadata)
+			loaded.put(instrument.getName(), instrument);
+		instruments = loaded;
+	}
+
+	public InstrumentMetadata get(String instrument) {
+		InstrumentMetadata metadata = instruments.get(instrument);
+		return metadata != null ? metadata : InstrumentMetadata.assumed(instrument);
+	}
+
+	/**
+	 * @return true if the account can trade the instrument, or if the instruments are not loaded yet
+	 */
+	public boolean isTradeable(String instrument) {
+		Map<String, InstrumentMetadata> known = instruments;
+		return known.isEmpty() || known.containsKey(instrument);
+	}
+
+	private List<InstrumentMetadata> fetchInstruments() throws Exception {
+		apiGuard.acquirePricingPermit();
+		AccountInstrumentsResponse response;
+		try {
+			response = oandaCtx.account.instruments(new AccountID(accountId));
+			apiGuard.recordSuccess(null);
+		} catch (Exception e) {
+			apiGuard.recordFailure(null, e);
+			throw e;
+		}
+
+		List<InstrumentMetadata> metadata = new ArrayList<>();
+		for (Instrument instrument : response.getInstruments())
+			metadata.add(new InstrumentMetadata(instrument.getName().toString(), instrument.getPipLocation().intValue(),
+					instrument.getDisplayPrecision().intValue(), instrument.getMinimumTradeSize().doubleValue()));
+		return metadata;
+	}
+
+	private List<InstrumentMetadata> readInstruments() throws Exception {
+		JsonNode response;
+		try (InputStream in = ResourceUtils.getURL(instrumentsFile).openStream()) {
+			response = new ObjectMapper().readTree(in);
+		}
+
+		List<InstrumentMetadata> metadata = new ArrayList<>();
+		for (JsonNode instrument : response.path("instruments"))
+			metadata.add(new InstrumentMetadata(instrument.path("name").asText(), instrument.path("pipLocation").asInt(),
+					instrument.path("displayPrecision").asInt(), instrument.path("minimumTradeSize").asDouble()));
+		return metadata;
+	}
+}
@@ -0,0 +1,69 @@
+package com.asador.oanda.instruments;
+
+import com.asador.oanda.pricing.Price;
+
+/**
+ * What OANDA tells about an instrument that matters for pricing orders, with the pip size and the
+ * smallest price step worked out once in {@link Price} ticks.
+ */
+public class InstrumentMetadata {
+
+	private final String name;
+	private final int pipLocation;
+	private final int displayPrecision;
+	private final double minimumTradeSize;
+	private final long ticksPerPip;
+	private final long ticksPerPriceStep;
+
+	public InstrumentMetadata(String name, int pipLocation, int displayPrecision, double minimumTradeSize) {
+		this.name = name;
+		this.pipLocation = pipLocation;
+		this.displayPrecision = displayPrecision;
+		this.minimumTradeSize = minimumTradeSize;
+		this.ticksPerPip = powerOfTen(Price.DECIMALS + pipLocation);
+		this.ticksPerPriceStep = powerOfTen(Price.DECIMALS - displayPrecision);
+	}
+
+	/**
+	 * Metadata of an instrument OANDA has not told about, JPY crosses quote to 2 decimals and other
+	 * currency pairs to 4.
+	 */
+	static InstrumentMetadata assumed(String name) {
+		return name.contains("_JPY") ? new InstrumentMetadata(name, -2, 3, 1) : new InstrumentMetadata(name, -4, 5, 1);
+	}
+
+	public String getName() {
+		return name;
+	}
+	public int getPipLocation() {
+		return pipLocation;
+	}
+	public int getDisplayPrecision() {
+		return displayPrecision;
+	}
+	public double getMinimumTradeSize() {
+		return minimumTradeSize;
+	}
+	public double getPipSize() {
+		return Price.toDouble(ticksPerPip);
+	}
+
+	public long pipsToTicks(int pips) {
+		return pips * ticksPerPip;
+	}
+
+	/**
+	 * @return false if OANDA would reject the price for having more decimals than the instrument has
+	 */
+	public boolean isPriceWithinPrecision(long ticks) {
+		return ticks % ticksPerPriceStep == 0;
+	}
+
+	/** Negative exponents give 1, nothing OANDA quotes is finer than a tick */
+	private static long powerOfTen(int exponent) {
+		long power = 1;
+		for (int i = 0; i < exponent; i++)
+			power *= 10;
+		return power;
+	}
+}
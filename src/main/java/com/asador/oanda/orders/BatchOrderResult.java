@@ -0,0 +1,40 @@
+package com.asador.oanda.orders;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Outcome of one order of a batch submission, in the position the order had in the batch.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchOrderResult {
+
+	public enum Status {CREATED, INVALID, DUPLICATE}
+
+	private final Status status;
+	private final Long orderId;
+	private final String error;
+
+	private BatchOrderResult(Status status, Long orderId, String error) {
+		this.status = status;
+		this.orderId = orderId;
+		this.error = error;
+	}
+
+	static BatchOrderResult created(long orderId) {
+		return new BatchOrderResult(Status.CREATED, orderId, null);
+	}
+
+	static BatchOrderResult rejected(Status status, String error) {
+		return new BatchOrderResult(status, null, error);
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+	public Long getOrderId() {
+		return orderId;
+	}
+	public String getError() {
+		return error;
+	}
+}
@@ -1,6 +1,6 @@
 package com.asador.oanda.orders;
 
-import java.util.Collection;
+import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -10,11 +10,15 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import com.asador.oanda.orders.domain.Order;
+import com.asador.oanda.orders.domain.OrderAction;
 
 @RestController
 @RequestMapping("/orders")
@@ -22,11 +26,43 @@ public class OrderController {
 	
 	@Autowired
 	private OrderManager orderManager;
+	
+	@Autowired
+	private PlacementPipeline placementPipeline;
+	
+	@Autowired
+	private OrderEventStream orderEventStream;
 
+	/**
+	 * Lists pending orders by order id, optionally filtered by instrument and action. To page through them,
+	 * pass a limit and the last order id of the previous page as after. Orders are written out as they are
+	 * listed, and a poll with the ETag of the previous response gets a 304 until an order is created or
+	 * removed.
+	 */
 	@GetMapping(produces="application/json")
 	@ResponseBody()
-	public Collection<Order> listPendingOrders() {
-		return orderManager.getPendingStopOrders();
+	public Iterable<Order> listPendingOrders(@RequestParam(required=false) String instrument,
+			@RequestParam(required=false) OrderAction action,
+			@RequestParam(defaultValue="0") long after,
+			@RequestParam(defaultValue="0") int limit,
+			WebRequest request) {
+		if (request.checkNotModified("\"" + orderManager.getPendingStopOrdersVersion() + "\""))
+			return null;
+		return orderManager.getPendingStopOrders(instrument, action, after, limit);
+	}
+	
+	/**
+	 * Streams the {@link OrderEvent}s of this instance as Server-Sent Events.
+	 */
+	@GetMapping(path="/events", produces="text/event-stream")
+	public SseEmitter streamOrderEvents() {
+		return orderEventStream.subscribe();
+	}
+	
+	@GetMapping(path="/placement", produces="application/json")
+	@ResponseBody()
+	public PlacementPipeline.PlacementStats getPlacementStats() {
+		return placementPipeline.getStats();
 	}
 	
 	@PostMapping()
@@ -35,6 +71,12 @@ public class OrderController {
 		orderManager.createStopOrder(order);
 	}
 	
+	@PostMapping(path="/batch", produces="application/json")
+	@ResponseBody()
+	public List<BatchOrderResult> createStopOrders(@RequestBody List<Order> orders) {
+		return orderManager.createStopOrders(orders);
+	}
+	
 	@DeleteMapping("/{orderId}")
 	@ResponseStatus(HttpStatus.OK)
 	public void cancelOrder(@PathVariable long orderId) {
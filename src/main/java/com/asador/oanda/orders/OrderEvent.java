@@ -0,0 +1,91 @@
+package com.asador.oanda.orders;
+
+import com.asador.oanda.orders.domain.Order;
+import com.asador.oanda.orders.domain.OrderAction;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * A change in the life of a pending order, as streamed by {@link OrderEventStream}. Only the fields
+ * relevant to the type of event are set.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class OrderEvent {
+
+	public enum Type { CREATED, APPROACHING, TRIGGERED, PLACED, REJECTED, CANCELLED }
+
+	private final Type type;
+	private final long orderId;
+	private final String instrument;
+	private final OrderAction action;
+	private final Double price;
+	private final Double distancePips;
+	private final String transactionId;
+	private final String reason;
+	private final long time = System.currentTimeMillis();
+
+	private OrderEvent(Type type, Order order, Double price, Double distancePips, String transactionId, String reason) {
+		this.type = type;
+		this.orderId = order.getOrderId();
+		this.instrument = order.getInstrument();
+		this.action = order.getAction();
+		this.price = price;
+		this.distancePips = distancePips;
+		this.transactionId = transactionId;
+		this.reason = reason;
+	}
+
+	public static OrderEvent created(Order order) {
+		return new OrderEvent(Type.CREATED, order, null, null, null, null);
+	}
+
+	/**
+	 * @param distancePips how far the price still is from the placement price of the order
+	 */
+	public static OrderEvent approaching(Order order, double price, double distancePips) {
+		return new OrderEvent(Type.APPROACHING, order, price, distancePips, null, null);
+	}
+
+	public static OrderEvent triggered(Order order, double price) {
+		return new OrderEvent(Type.TRIGGERED, order, price, null, null, null);
+	}
+
+	public static OrderEvent placed(Order order, String transactionId) {
+		return new OrderEvent(Type.PLACED, order, null, null, transactionId, null);
+	}
+
+	public static OrderEvent rejected(Order order, String reason) {
+		return new OrderEvent(Type.REJECTED, order, null, null, null, reason);
+	}
+
+	public static OrderEvent cancelled(Order order) {
+		return new OrderEvent(Type.CANCELLED, order, null, null, null, null);
+	}
+
+	public Type getType() {
+		return type;
+	}
+	public long getOrderId() {
+		return orderId;
+	}
+	public String getInstrument() {
+		return instrument;
+	}
+	public OrderAction getAction() {
+		return action;
+	}
+	public Double getPrice() {
+		return price;
+	}
+	public Double getDistancePips() {
+		return distancePips;
+	}
+	public String getTransactionId() {
+		return transactionId;
+	}
+	public String getReason() {
+		return reason;
+	}
+	public long getTime() {
+		return time;
+	}
+}
@@ -0,0 +1,297 @@
+package com.asador.oanda.orders;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Pushes {@link OrderEvent}s to Server-Sent Events subscribers. Events are collected and flushed
+ * every oanda.events.flushMillis. Approaching events of an order are coalesced to the latest one
+ * of the flush, other events are all kept in order. Each flush is formatted once and the same text is
+ * written to every subscriber, so the cost of an event hardly depends on the number of subscribers.
+ * <p>
+ * Subscribers are written to on a small pool, one batch at a time per subscriber, so a slow client
+ * does not hold up the others. A client more than oanda.events.maxPendingBatches behind is
+ * disconnected, and can reconnect and list the pending orders again.
+ */
+@Component
+public class OrderEventStream {
+	private final Logger logger = LoggerFactory.getLogger(OrderEventStream.class);
+
+	private static final long KEEP_ALIVE_MILLIS = 15_000;
+
+	private final ObjectMapper objectMapper;
+	private final long flushMillis;
+	private final int maxPendingBatches;
+	private final long timeoutMillis;
+	private final ScheduledExecutorService dispatcher;
+	private final ExecutorService senderPool;
+
+	private final Queue<OrderEvent> lifecycleEvents = new ConcurrentLinkedQueue<>();
+	private final Map<Long, OrderEvent> approachingEvents = new ConcurrentHashMap<>();
+	private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+	/** Only used by the dispatcher thread */
+	private long lastEventId;
+	private long lastSendMillis = System.currentTimeMillis();
+
+	@Autowired
+	public OrderEventStream(ObjectMapper objectMapper,
+			@Value("${oanda.events.flushMillis:250}") long flushMillis,
+			@Value("${oanda.events.maxPendingBatches:100}") int maxPendingBatches,
+			@Value("${oanda.events.timeoutMinutes:30}") long timeoutMinutes,
+			@Value("${oanda.events.senders:2}") int senders) {
+		this.objectMapper = objectMapper;
+		this.flushMillis = flushMillis;
+		this.maxPendingBatches = maxPendingBatches;
+		this.timeoutMillis = TimeUnit.MINUTES.toMillis(timeoutMinutes);
+		dispatcher = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("order-events-"));
+		senderPool = Executors.newFixedThreadPool(senders, new CustomizableThreadFactory("order-events-sender-"));
+	}
+
+	@PostConstruct
+	protected void start() {
+		dispatcher.scheduleWithFixedDelay(this::flush, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	protected void shutdown() {
+		dispatcher.shutdownNow();
+		senderPool.shutdownNow();
+		for (Subscriber subscriber : subscribers)
+			subscriber.close();
+	}
+
+	public SseEmitter subscribe() {
+		SseEmitter emitter = new SseEmitter(timeoutMillis);
+		subscribe(emitter);
+		return emitter;
+	}
+
+	void subscribe(SseEmitter emitter) {
+		Subscriber subscriber = new Subscriber(emitter);
+		emitter.onCompletion(() -> subscribers.remove(subscriber));
+		emitter.onTimeout(() -> subscribers.remove(subscriber));
+		emitter.onError(e -> subscribers.remove(subscriber));
+		subscribers.add(subscriber);
+	}
+
+	/**
+	 * Lets callers skip building events nobody listens to.
+	 */
+	public boolean hasSubscribers() {
+		return !subscribers.isEmpty();
+	}
+
+	public int getSubscriberCount() {
+		return subscribers.size();
+	}
+
+	public void publish(OrderEvent event) {
+		if (subscribers.isEmpty())
+			return;
+		if (event.getType() == OrderEvent.Type.APPROACHING)
+			approachingEvents.put(event.getOrderId(), event);
+		else
+			lifecycleEvents.add(event);
+	}
+
+	void flush() {
+		if (subscribers.isEmpty()) {
+			lifecycleEvents.clear();
+			approachingEvents.clear();
+			return;
+		}
+
+		Set<DataWithMediaType> batch = new LinkedHashSet<>();
+		// approaching events were seen before the lifecycle events collected with them
+		Iterator<Long> approachingIds = approachingEvents.keySet().iterator();
+		while (approachingIds.hasNext()) {
+			OrderEvent event = approachingEvents.remove(approachingIds.next());
+			if (event != null)
+				append(batch, event);
+		}
+		OrderEvent event;
+		while ((event = lifecycleEvents.poll()) != null)
+			append(batch, event);
+
+		long now = System.currentTimeMillis();
+		if (batch.isEmpty()) {
+			if (now - lastSendMillis < KEEP_ALIVE_MILLIS)
+				return;
+			// lets both sides notice a dead connection
+			batch.addAll(SseEmitter.event().comment("").build());
+		}
+		lastSendMillis = now;
+
+		Set<DataWithMediaType> events = Collections.unmodifiableSet(batch);
+		for (Subscriber subscriber : subscribers)
+			subscriber.offer(events);
+	}
+
+	private void append(Set<DataWithMediaType> batch, OrderEvent event) {
+		try {
+			// serialized here so the converters write the same text to every subscriber
+			batch.addAll(SseEmitter.event()
+					.id(String.valueOf(++lastEventId))
+					.name(event.getType().name().toLowerCase())
+					.data(objectMapper.writeValueAsString(event), MediaType.TEXT_PLAIN)
+					.build());
+		} catch (JsonProcessingException e) {
+			logger.error("Failed to serialize {} event of order {}", event.getType(), event.getOrderId(), e);
+		}
+	}
+
+	private class Subscriber implements Runnable {
+		private final SseEmitter emitter;
+		private final Queue<Set<DataWithMediaType>> batches = new ArrayDeque<>();
+		private boolean scheduled;
+		private boolean closed;
+
+		Subscriber(SseEmitter emitter) {
+			this.emitter = emitter;
+		}
+
+		synchronized void offer(Set<DataWithMediaType> events) {
+			if (closed)
+				return;
+			if (batches.size() >= maxPendingBatches) {
+				logger.warn("Disconnecting an order event subscriber {} batches behind", batches.size());
+				close();
+				return;
+			}
+			batches.add(events);
+			if (!scheduled) {
+				scheduled = true;
+				senderPool.execute(this);
+			}
+		}
+
+		@Override
+		public void run() {
+			Set<DataWithMediaType> events;
+			synchronized (this) {
+				events = batches.poll();
+				if (events == null || closed) {
+					scheduled = false;
+					return;
+				}
+			}
+
+			try {
+				emitter.send(new PreparedEvents(events));
+			} catch (IOException | IllegalStateException e) {
+				// the client went away
+				subscribers.remove(this);
+				synchronized (this) {
+					closed = true;
+					scheduled = false;
+				}
+				return;
+			}
+
+			synchronized (this) {
+				if (batches.isEmpty() || closed)
+					scheduled = false;
+				else
+					senderPool.execute(this);
+			}
+		}
+
+		synchronized void close() {
+			closed = true;
+			batches.clear();
+			subscribers.remove(this);
+			emitter.complete();
+		}
+	}
+
+	/**
+	 * Sends events already built for all subscribers, followed by whatever is added to the builder.
+	 */
+	private static class PreparedEvents implements SseEmitter.SseEventBuilder {
+		private final Set<DataWithMediaType> events;
+		private final SseEmitter.SseEventBuilder next = SseEmitter.event();
+		private boolean nextUsed;
+
+		PreparedEvents(Set<DataWithMediaType> events) {
+			this.events = events;
+		}
+
+		@Override
+		public Set<DataWithMediaType> build() {
+			if (!nextUsed)
+				return events;
+			Set<DataWithMediaType> data = new LinkedHashSet<>(events);
+			data.addAll(next.build());
+			return data;
+		}
+
+		@Override
+		public SseEmitter.SseEventBuilder comment(String comment) {
+			next.comment(comment);
+			return added();
+		}
+
+		@Override
+		public SseEmitter.SseEventBuilder name(String eventName) {
+			next.name(eventName);
+			return added();
+		}
+
+		@Override
+		public SseEmitter.SseEventBuilder id(String id) {
+			next.id(id);
+			return added();
+		}
+
+		@Override
+		public SseEmitter.SseEventBuilder reconnectTime(long reconnectTimeMillis) {
+			next.reconnectTime(reconnectTimeMillis);
+			return added();
+		}
+
+		@Override
+		public SseEmitter.SseEventBuilder data(Object object) {
+			next.data(object);
+			return added();
+		}
+
+		@Override
+		public SseEmitter.SseEventBuilder data(Object object, MediaType mediaType) {
+			next.data(object, mediaType);
+			return added();
+		}
+
+		private SseEmitter.SseEventBuilder added() {
+			nextUsed = true;
+			return this;
+		}
+	}
+}
@@ -1,50 +1,59 @@
 package com.asador.oanda.orders;
 
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Date;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.retry.RetryCallback;
-import org.springframework.retry.RetryContext;
-import org.springframework.retry.RetryListener;
-import org.springframework.retry.support.RetryTemplate;
 import org.springframework.stereotype.Component;
 
+import com.asador.oanda.api.OandaApiGuard;
+import com.asador.oanda.cluster.ClusterCoordinator;
+import com.asador.oanda.instruments.InstrumentCatalog;
+import com.asador.oanda.instruments.InstrumentMetadata;
 import com.asador.oanda.orders.domain.Order;
 import com.asador.oanda.orders.domain.OrderAction;
 import com.asador.oanda.orders.domain.OrderDAO;
+import com.asador.oanda.orders.domain.OrderStatus;
+import com.asador.oanda.pricing.Price;
+import com.asador.oanda.pricing.PriceFeed;
+import com.asador.oanda.pricing.PriceListener;
 import com.oanda.v20.Context;
-import com.oanda.v20.ContextBuilder;
 import com.oanda.v20.ExecuteException;
 import com.oanda.v20.RequestException;
 import com.oanda.v20.account.AccountID;
-import com.oanda.v20.instrument.Candlestick;
-import com.oanda.v20.instrument.CandlestickGranularity;
-import com.oanda.v20.instrument.InstrumentCandlesRequest;
-import com.oanda.v20.instrument.InstrumentCandlesResponse;
 import com.oanda.v20.order.OrderCreateRequest;
 import com.oanda.v20.order.OrderCreateResponse;
-import com.oanda.v20.order.StopOrderRequest;
-import com.oanda.v20.order.TimeInForce;
 import com.oanda.v20.primitives.DateTime;
-import com.oanda.v20.primitives.InstrumentName;
 import com.oanda.v20.transaction.OrderCancelTransaction;
-import com.oanda.v20.transaction.StopLossDetails;
-import com.oanda.v20.transaction.TakeProfitDetails;
 import com.oanda.v20.transaction.Transaction;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
 @Component
 public class OrderManager {
 	private final Logger logger = LoggerFactory.getLogger(OrderManager.class);
@@ -55,70 +64,165 @@ public class OrderManager {
 	@Value("${oanda.accountId}")
 	private String accountId;
 	
-	@Value("${oanda.accessToken}")
-	private String accessToken;
+	@Value("${oanda.watcher.mode:scheduled}")
+	private String watcherMode;
 	
-	@Value("${oanda.restEndpoint}")
-	private String oandaApiEndpoint;
+	@Value("${oanda.events.approachingPips:10}")
+	private int approachingPips;
 	
 	@Autowired
 	private OrderDAO orderDao;
 	
 	@Autowired
-	private RetryTemplate retryTemplate;
-	
 	private Context oandaCtx;
+	
+	@Autowired
+	private PriceFeed priceFeed;
+	
+	@Autowired
+	private OandaApiGuard apiGuard;
+	
+	@Autowired
+	private PlacementPipeline placementPipeline;
+	
+	@Autowired
+	private TriggerShards triggerShards;
+	
+	@Autowired
+	private MeterRegistry meterRegistry;
+	
+	@Autowired
+	private InstrumentCatalog instrumentCatalog;
+	
+	@Autowired
+	private ClusterCoordinator clusterCoordinator;
+	
+	@Autowired
+	private OrderEventStream orderEvents;
+	
+	private static final DateTimeFormatter RFC3339 = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'")
+			.withZone(ZoneOffset.UTC);
+	
 	private AccountID accountIdObject;
+	private volatile GtdTime nextWeekGtdTime;
+	private Timer triggerToCreatedTimer;
+	private ExecutorService virtualThreadExecutor;
+	private volatile boolean shuttingDown;
 	
-	private ExecutorService executor = Executors.newCachedThreadPool();
-	private Set<Long> cancelledOrderIds = new HashSet<>();
+	private Map<Long, PriceTrigger> activeTriggers = new ConcurrentHashMap<>();
+	/** Keeps new orders from being mistaken for orders removed by another node */
+	private final Object clusterSync = new Object();
 	
 	@PostConstruct
 	protected void init() {
 		logger.info("OrderManager is being initialized with <<{}>> account.", activeProfile.toUpperCase());
-		oandaCtx = new ContextBuilder(oandaApiEndpoint)
-				.setApplication("")
-				.setToken(accessToken)
-				.build();
 		accountIdObject = new AccountID(accountId);
-		
-		for (Order order : orderDao.getOrders()) {
-			createOrderWatch(order);
+		if ("virtual".equalsIgnoreCase(watcherMode)) {
+			virtualThreadExecutor = newVirtualThreadPerTaskExecutor();
+			logger.info("Order watches will run on virtual threads");
 		}
 		
-		retryTemplate.registerListener(new RetryListener() {
-			
-			@Override
-			public <T, E extends Throwable> boolean open(RetryContext context, RetryCallback<T, E> callback) {
-				return true;
-			}
-			
-			@Override
-			public <T, E extends Throwable> void onError(RetryContext context, RetryCallback<T, E> callback,
-					Throwable throwable) {
-				logger.warn("", throwable);			
-			}
-			
-			@Override
-			public <T, E extends Throwable> void close(RetryContext context, RetryCallback<T, E> callback,
-					Throwable throwable) {
-			}
-		});
+		triggerToCreatedTimer = Timer.builder("oanda.order.trigger.to.created")
+				.description("From the price reaching the trigger of an order to OANDA creating the stop order")
+				.publishPercentiles(0.5, 0.95, 0.99)
+				.publishPercentileHistogram()
+				.register(meterRegistry);
+		meterRegistry.gauge("oanda.orders.watched", activeTriggers, Map::size);
+		meterRegistry.gauge("oanda.placement.queue.depth", placementPipeline, PlacementPipeline::getQueueDepth);
+		for (int i = 0; i < triggerShards.getShardCount(); i++)
+			meterRegistry.gauge("oanda.trigger.ring.backlog", Tags.of("shard", String.valueOf(i)),
+					triggerShards.getShard(i), TriggerRing::getBacklog);
+		
+		triggerShards.start(TriggerEvaluator::new);
+		if (clusterCoordinator.isEnabled())
+			clusterCoordinator.addHeartbeatListener(this::synchronizeClusterWatches);
+		else
+			createOrderWatches(orderDao.getOrders());
+	}
+	
+	/**
+	 * Stops the order watches while the placement pipeline they hand triggered orders to is still
+	 * running. Pending orders stay in the store and are watched again on the next start.
+	 */
+	@PreDestroy
+	protected void shutdown() throws InterruptedException {
+		shuttingDown = true;
+		triggerShards.stop();
+		if (virtualThreadExecutor != null) {
+			virtualThreadExecutor.shutdownNow();
+			if (!virtualThreadExecutor.awaitTermination(5, TimeUnit.SECONDS))
+				logger.warn("Order watches still running after shutdown");
+		}
 	}
 	
 	public long createStopOrder(Order order) {
 		
 		validateOrder(order);
 		
-		if (isOrderDuplicate(order))
-			throw new RuntimeException("A similar order already exist for " + order.getAction() + " " + order.getInstrument());
-		
-		long orderId = orderDao.createOrder(order);
-		logger.info("Pending order created. Order Id {}", orderId);
+		long orderId;
+		synchronized (clusterSync) {
+			orderId = orderDao.createOrderIfAbsent(order);
+			if (orderId != order.getOrderId())
+				throw new RuntimeException("A similar order already exist for " + order.getAction() + " " + order.getInstrument());
+			logger.info("Pending order created. Order Id {}", orderId);
+			orderEvents.publish(OrderEvent.created(order));
+			
+			if (clusterCoordinator.ownsInstrument(order.getInstrument()))
+				createOrderWatch(order);
+		}
+		return orderId;
+	}
+	
+	/**
+	 * Validates the whole batch up front, stores the acceptable orders in one go and starts watching all
+	 * of them. Orders which are invalid, or which duplicate a pending order or an earlier order of the
+	 * batch, are rejected individually.
+	 */
+	public List<BatchOrderResult> createStopOrders(List<Order> orders) {
+		List<BatchOrderResult> results = new ArrayList<>(orders.size());
+		List<Order> validOrders = new ArrayList<>(orders.size());
+		for (Order order : orders) {
+			try {
+				validateOrder(order);
+			} catch (IllegalArgumentException e) {
+				results.add(BatchOrderResult.rejected(BatchOrderResult.Status.INVALID, e.getMessage()));
+				continue;
+			}
+			validOrders.add(order);
+			results.add(null);
+		}
 		
-		createOrderWatch(order);
+		List<Order> createdOrders = new ArrayList<>(validOrders.size());
+		List<Long> orderIds = Collections.emptyList();
+		if (!validOrders.isEmpty()) {
+			synchronized (clusterSync) {
+				orderIds = orderDao.createOrdersIfAbsent(validOrders);
+				for (int i = 0; i < validOrders.size(); i++) {
+					if (orderIds.get(i) == validOrders.get(i).getOrderId())
+						createdOrders.add(validOrders.get(i));
+				}
+				logger.info("{} pending orders created in batch", createdOrders.size());
+				for (Order order : createdOrders)
+					orderEvents.publish(OrderEvent.created(order));
+				createOrderWatches(createdOrders.stream()
+						.filter(order -> clusterCoordinator.ownsInstrument(order.getInstrument()))
+						.collect(Collectors.toList()));
+			}
+		}
 		
-		return orderId;
+		// valid orders fill the gaps left in the results, in batch order
+		int valid = 0;
+		for (int i = 0; i < results.size(); i++) {
+			if (results.get(i) != null)
+				continue;
+			Order order = validOrders.get(valid);
+			if (orderIds.get(valid++) == order.getOrderId())
+				results.set(i, BatchOrderResult.created(order.getOrderId()));
+			else
+				results.set(i, BatchOrderResult.rejected(BatchOrderResult.Status.DUPLICATE, 
+						"A similar order already exist for " + order.getAction() + " " + order.getInstrument()));
+		}
+		return results;
 	}
 	
 	void validateOrder(Order order) throws IllegalArgumentException {
@@ -128,163 +232,320 @@ public class OrderManager {
 			throw new IllegalArgumentException("One or more order attributes are wrong.");
 		
 		order.setInstrument(order.getInstrument().toUpperCase());
+		if (!instrumentCatalog.isTradeable(order.getInstrument()))
+			throw new IllegalArgumentException("Instrument " + order.getInstrument() + " is not tradeable.");
+		
+		InstrumentMetadata metadata = instrumentCatalog.get(order.getInstrument());
+		if (order.getUnits() < metadata.getMinimumTradeSize())
+			throw new IllegalArgumentException("Units are below the minimum trade size of " + metadata.getMinimumTradeSize() + ".");
+		if (!metadata.isPriceWithinPrecision(order.getStopEntryTicks()) || !metadata.isPriceWithinPrecision(order.getStopLossTicks()) ||
+				!metadata.isPriceWithinPrecision(order.getTargetProfitTicks()))
+			throw new IllegalArgumentException("Prices must have at most " + metadata.getDisplayPrecision() + " decimals.");
 	}
 	
-	boolean isOrderDuplicate(Order newOrder) {
-		for (Order existingOrder : orderDao.getOrders()) {
-			if (newOrder.getInstrument().equals(existingOrder.getInstrument()) &&
-					newOrder.getAction() == existingOrder.getAction())
-				return true;
+	void createOrderWatch(Order order) {
+		createOrderWatches(Collections.singletonList(order));
+	}
+	
+	void createOrderWatches(Collection<Order> orders) {
+		List<PriceTrigger> triggers = new ArrayList<>(orders.size());
+		for (Order order : orders) {
+			TriggerListener listener = virtualThreadExecutor == null ? new TriggerListener() {
+				
+				@Override
+				public void onTriggered(PriceTrigger trigger, double price) {
+					submitPlacement(trigger);
+				}
+				
+				@Override
+				public void onCancelled(PriceTrigger trigger) {
+					logOrderWatchCancelled(order);
+				}
+			} : null;
+			triggers.add(createPriceTrigger(order, listener));
+		}
+		addTriggers(triggers);
+		
+		if (virtualThreadExecutor != null) {
+			for (PriceTrigger trigger : triggers)
+				virtualThreadExecutor.execute(() -> awaitPriceAndPlaceStopOrder(trigger));
 		}
-		return false;
 	}
-
-	private void createOrderWatch(Order order) {
-		executor.submit(() -> {
-			watchPriceAndPlaceStopOrder(order);
-		});
+	
+	private PriceTrigger startPriceWatch(Order order, TriggerListener listener) {
+		PriceTrigger trigger = createPriceTrigger(order, listener);
+		addTriggers(Collections.singletonList(trigger));
+		return trigger;
 	}
 	
-	void watchPriceAndPlaceStopOrder(Order order) {
+	private PriceTrigger createPriceTrigger(Order order, TriggerListener listener) {
+		long placementTicks = getOrderPlacementTicks(order);
+		logOrderWatchStart(order, placementTicks);
 		
+		PriceTrigger trigger = new PriceTrigger(order, placementTicks, new PlacementRequest(accountIdObject, order), listener);
+		activeTriggers.put(order.getOrderId(), trigger);
+		return trigger;
+	}
+	
+	/**
+	 * Blocking variant of the order watch which holds the calling thread until the order is either
+	 * triggered or canceled.
+	 */
+	void watchPriceAndPlaceStopOrder(Order order) {
+		awaitPriceAndPlaceStopOrder(startPriceWatch(order, null));
+	}
+	
+	private void awaitPriceAndPlaceStopOrder(PriceTrigger trigger) {
 		try {
-			watchPriceToReachZone(order);
-			
-			if (!isOrderCancelled(order.getOrderId())) {				
-				// price is in the zone, time to place the order
-				placeStopOrder(order);
-			} else {
-				cancelledOrderIds.remove(order.getOrderId());
-				logger.info("Stopped price watch for order {} {} {} as it was canceled", order.getOrderId(), 
+			awaitPriceTrigger(trigger);
+		} catch (Exception e) {
+			activeTriggers.remove(trigger.getOrder().getOrderId());
+			if (shuttingDown)
+				return;
+			logOrderWatchFailure(trigger.getOrder(), e);
+			removePendingOrder(trigger.getOrder());
+			return;
+		}
+		try {
+			submitPlacement(trigger).join();
+		} catch (CompletionException e) {
+			logger.warn("Order {} {} {} was not placed: {}", trigger.getOrder().getOrderId(), 
+					trigger.getOrder().getAction(), trigger.getOrder().getInstrument(), e.getCause().toString());
+		}
+	}
+	
+	private CompletableFuture<Void> submitPlacement(PriceTrigger trigger) {
+		return placementPipeline.submit(trigger.getOrder().getInstrument(), () -> placeTriggeredStopOrder(trigger));
+	}
+	
+	private void awaitPriceTrigger(PriceTrigger trigger) throws InterruptedException {
+		try {
+			trigger.awaitResolution();
+		} finally {
+			// only left in the index when the wait is interrupted
+			if (trigger.cancelWatching())
+				removeTrigger(trigger.getOrder());
+		}
+	}
+	
+	private void placeTriggeredStopOrder(PriceTrigger trigger) {
+		Order order = trigger.getOrder();
+		OrderStatus outcome = OrderStatus.FAILED;
+		boolean claimed = false;
+		try {
+			if (!trigger.startPlacing()) {
+				logOrderWatchCancelled(order);
+				return;
+			}
+			// whoever takes the order out of PENDING first places it, so a node which lost its lease or
+			// a cancel on another node cannot lead to a second placement
+			if (!orderDao.removeOrder(order.getOrderId(), OrderStatus.TRIGGERED)) {
+				logger.info("Order {} {} {} was already placed or canceled elsewhere", order.getOrderId(), 
 						order.getAction(), order.getInstrument());
+				return;
 			}
+			claimed = true;
+			// price is in the zone, time to place the order
+			if (placeStopOrder(order, trigger.getPlacementRequest()))
+				outcome = OrderStatus.PLACED;
+			triggerToCreatedTimer.record(System.nanoTime() - trigger.getFiredNanos(), TimeUnit.NANOSECONDS);
 			
 		} catch (Exception e) {
-			logger.error("Order " + order.getInstrument() + ", " + order.getAction() + " at " + 
-					order.getStopEntry() + " was canceled due to exception.", e);
-		} finally {				
-			try {
-				orderDao.removeOrder(order.getOrderId());
-			} catch (Exception e) {
-				// ignore it
-			}
+			logOrderWatchFailure(order, e);
+			orderEvents.publish(OrderEvent.rejected(order, e.toString()));
+		} finally {
+			activeTriggers.remove(order.getOrderId(), trigger);
+			if (claimed)
+				updateOrderStatus(order, outcome);
 		}	
 	}
 	
-	private boolean isOrderCancelled(long orderId) {
-		return cancelledOrderIds.contains(orderId);
+	private void updateOrderStatus(Order order, OrderStatus status) {
+		try {
+			orderDao.updateStatus(order.getOrderId(), status);
+		} catch (Exception e) {
+			// only the history of the order is missing
+			logger.error("Failed to record order {} as {}", order.getOrderId(), status, e);
+		}
 	}
 	
-	void watchPriceToReachZone(Order order) throws Exception {
-		logger.info("Start checking the price for {} to {} at {}. Order will be placed when price reaches {}", 
-				order.getInstrument(),	order.getAction(), order.getStopEntry(), getOrderPlacementPrice(order));
-		
-		boolean priceReached = false;
-		
-		InstrumentCandlesRequest request = new InstrumentCandlesRequest(new InstrumentName(order.getInstrument()));
-		request.setCount(1L);
-		request.setPrice("M");
-		request.setGranularity(CandlestickGranularity.M1);
-		
-		while (!priceReached && !isOrderCancelled(order.getOrderId())) {
-			InstrumentCandlesResponse response = retryTemplate.execute( 
-					new RetryCallback<InstrumentCandlesResponse, Exception>() {
-
-				@Override
-				public InstrumentCandlesResponse doWithRetry(RetryContext context) throws Exception {
-					return oandaCtx.instrument.candles(request);
-				}
-			});
-			Candlestick mostRecentCandlestick = response.getCandles().get(0);
-			if (priceMeetsOrderPlacementCondition(mostRecentCandlestick, order)) {
-				logger.info("{} reached {}. It's time to place {} stop order at {}", order.getInstrument(),
-						mostRecentCandlestick.getMid().getC().doubleValue(), order.getAction(), order.getStopEntry());
-				priceReached = true;
-			} else
-				delay(1);
+	private void removePendingOrder(Order order) {
+		try {
+			orderDao.removeOrder(order.getOrderId(), OrderStatus.FAILED);
+		} catch (Exception e) {
+			// ignore it
 		}
-		
 	}
 	
-	boolean priceMeetsOrderPlacementCondition(Candlestick candlestick, Order order) {
-		if (order.getAction() == OrderAction.BUY) {
-			if (candlestick.getMid().getC().doubleValue() <= getOrderPlacementPrice(order))
-				return true;
-		} else {
-			if (candlestick.getMid().getC().doubleValue() >= getOrderPlacementPrice(order))
-				return true;	
-		}
-		return false;
+	private void logOrderWatchStart(Order order, long placementTicks) {
+		logger.info("Start checking the price for {} to {} at {}. Order will be placed when price reaches {}", 
+				order.getInstrument(),	order.getAction(), order.getStopEntry(), Price.toDouble(placementTicks));
 	}
 	
-	double convertPip2PriceValue(int pip, String instrument) {
-		if (instrument.contains("_JPY"))
-			return (double)pip / 100;
-		else 
-			return (double)pip / 10000;
+	private void logOrderWatchCancelled(Order order) {
+		logger.info("Stopped price watch for order {} {} {} as it was canceled", order.getOrderId(), 
+				order.getAction(), order.getInstrument());
 	}
 	
-	double getOrderPlacementPrice(Order order) {
+	private void logOrderWatchFailure(Order order, Exception e) {
+		logger.error("Order " + order.getInstrument() + ", " + order.getAction() + " at " + 
+				order.getStopEntry() + " was canceled due to exception.", e);
+	}
+	
+	private void addTriggers(Collection<PriceTrigger> triggers) {
+		for (PriceTrigger trigger : triggers)
+			triggerShards.shardOf(trigger.getOrder().getInstrument()).publishAddTrigger(trigger);
+	}
+	
+	private void removeTrigger(Order order) {
+		triggerShards.shardOf(order.getInstrument()).publishRemoveTrigger(order.getInstrument(), order.getOrderId());
+	}
+	
+	long getOrderPlacementTicks(Order order) {
+		long triggerDistanceTicks = instrumentCatalog.get(order.getInstrument()).pipsToTicks(order.getTriggerDistancePips());
 		if (order.getAction() == OrderAction.BUY) {
-			return order.getStopEntry() - convertPip2PriceValue(order.getTriggerDistancePips(), order.getInstrument());
+			return order.getStopEntryTicks() - triggerDistanceTicks;
 		} else {
-			return order.getStopEntry() + convertPip2PriceValue(order.getTriggerDistancePips(), order.getInstrument());
+			return order.getStopEntryTicks() + triggerDistanceTicks;
 		}
 	}
 	
-	void placeStopOrder(Order order) throws RequestException, ExecuteException {
-        OrderCreateRequest request = new OrderCreateRequest(accountIdObject);
-
-        StopOrderRequest stopOrder = new StopOrderRequest();
-        stopOrder.setInstrument(order.getInstrument());
-        stopOrder.setPrice(order.getStopEntry());
-        stopOrder.setStopLossOnFill(new StopLossDetails().setPrice(order.getStopLoss()));
-        stopOrder.setTakeProfitOnFill(new TakeProfitDetails().setPrice(order.getTargetProfit()));
-        stopOrder.setTimeInForce(TimeInForce.GTD);
-        stopOrder.setGtdTime(new DateTime(getNextWeekTimeInRFC3339()));
-        if (order.getAction() == OrderAction.BUY)
-        	stopOrder.setUnits(order.getUnits());
-        else
-        	stopOrder.setUnits(-order.getUnits());
-        	        
-        // Attach the body parameter to the request
-        request.setOrder(stopOrder);
+	/**
+	 * @return false if OANDA canceled the order right away
+	 */
+	private boolean placeStopOrder(Order order, PlacementRequest placementRequest) 
+			throws RequestException, ExecuteException, InterruptedException {
+        OrderCreateRequest request = placementRequest.withGtdTime(getNextWeekGtdTime());
         
-        OrderCreateResponse response = oandaCtx.order.create(request);
+        apiGuard.acquireOrderPermit();
+        OrderCreateResponse response;
+        try {
+        	response = oandaCtx.order.create(request);
+        	apiGuard.recordSuccess(null);
+        } catch (RequestException | ExecuteException e) {
+        	apiGuard.recordFailure(null, e);
+        	throw e;
+        }
 		Transaction transaction = response.getOrderCreateTransaction();
 		logger.info("Created {} {} order with transaction ID {}", order.getInstrument(), order.getAction(), 
 				transaction.getId());
 		
 		OrderCancelTransaction orderCancelTx = response.getOrderCancelTransaction();
 		if (orderCancelTx != null) {
+			meterRegistry.counter("oanda.order.rejected", "reason", String.valueOf(orderCancelTx.getReason())).increment();
 			logger.error("{} {} order immediately canceled due to {}", order.getInstrument(), order.getAction(), 
 					orderCancelTx.getReason());
+			orderEvents.publish(OrderEvent.rejected(order, String.valueOf(orderCancelTx.getReason())));
+			return false;
+		}
+		orderEvents.publish(OrderEvent.placed(order, String.valueOf(transaction.getId())));
+		return true;
+	}
+	
+	/**
+	 * Good-till-date of the orders placed now, formatted once per second and shared by the placements
+	 * of that second.
+	 */
+	DateTime getNextWeekGtdTime() {
+		long second = System.currentTimeMillis() / 1000;
+		GtdTime gtdTime = nextWeekGtdTime;
+		if (gtdTime == null || gtdTime.second != second) {
+			gtdTime = new GtdTime(second, new DateTime(RFC3339.format(Instant.ofEpochSecond(second).plus(7, ChronoUnit.DAYS))));
+			nextWeekGtdTime = gtdTime;
+		}
+		return gtdTime.value;
+	}
+	
+	/**
+	 * Watches the pending orders of the partitions this node owns and drops the watches of orders
+	 * which moved to another node or were removed by one.
+	 */
+	void synchronizeClusterWatches() {
+		synchronized (clusterSync) {
+			Set<Long> ownedOrderIds = new HashSet<>();
+			List<Order> adoptedOrders = new ArrayList<>();
+			for (Order order : orderDao.refresh()) {
+				if (!clusterCoordinator.ownsInstrument(order.getInstrument()))
+					continue;
+				ownedOrderIds.add(order.getOrderId());
+				if (!activeTriggers.containsKey(order.getOrderId()))
+					adoptedOrders.add(order);
+			}
+			
+			for (PriceTrigger trigger : activeTriggers.values()) {
+				Order order = trigger.getOrder();
+				if (!ownedOrderIds.contains(order.getOrderId()) && trigger.cancelWatching()) {
+					activeTriggers.remove(order.getOrderId(), trigger);
+					removeTrigger(order);
+				}
+			}
+			if (!adoptedOrders.isEmpty()) {
+				logger.info("Taking over {} pending orders", adoptedOrders.size());
+				createOrderWatches(adoptedOrders);
+			}
 		}
 	}
 	
 	/**
-	 * Date format: YYYY-MM-DDTHH:MM:SS.nnnnnnnnnZ
-	 * @return Next week date time in RFC3339
+	 * @return false if the order has already been triggered and is being placed
 	 */
-	static String getNextWeekTimeInRFC3339() {
-		Calendar cal = Calendar.getInstance();
-		cal.add(Calendar.DAY_OF_MONTH, 7);
-		Date nextWeek = cal.getTime();
-		DateFormat df = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ");
-		return df.format(nextWeek);
+	boolean cancelOrderWatch(long orderId) {
+		PriceTrigger trigger = activeTriggers.get(orderId);
+		if (trigger == null)
+			return true;
+		if (!trigger.cancel())
+			return false;
+		
+		activeTriggers.remove(orderId);
+		removeTrigger(trigger.getOrder());
+		return true;
 	}
 	
 	public Collection<Order> getPendingStopOrders() {
 		return orderDao.getOrders();
 	}
-	
+
+	/**
+	 * A page of the pending orders, see {@link OrderDAO#getOrders(String, OrderAction, long, int)}.
+	 */
+	public Iterable<Order> getPendingStopOrders(String instrument, OrderAction action, long afterOrderId, int limit) {
+		return orderDao.getOrders(instrument, action, afterOrderId, limit);
+	}
+
+	public String getPendingStopOrdersVersion() {
+		return orderDao.getVersion();
+	}
+
 	public void cancelPendingStopOrder(long orderId) {
-		boolean orderRemoved = orderDao.removeOrder(orderId);
-		if (orderRemoved) {
-			cancelledOrderIds.add(orderId);			
-			logger.info("Order {} canceled.", orderId);
-		} else
+		// removing the pending order claims it the same way a placement does, whichever comes first wins
+		Order order = orderDao.getOrder(orderId);
+		if (!orderDao.removeOrder(orderId, OrderStatus.CANCELLED)) {
+			PriceTrigger trigger = activeTriggers.get(orderId);
+			if (trigger != null && trigger.getState() == PriceTrigger.State.PLACING)
+				throw new RuntimeException("Order " + orderId + " is already being placed");
 			throw new RuntimeException("Order not found " + orderId);
+		}
+		
+		cancelOrderWatch(orderId);
+		logger.info("Order {} canceled.", orderId);
+		if (order != null)
+			orderEvents.publish(OrderEvent.cancelled(order));
+	}
+	
+	int getActiveWatchCount() {
+		return activeTriggers.size();
+	}
+	
+	/**
+	 * Virtual threads are only available from Java 21, the executor is looked up reflectively so the
+	 * default Java 8 build still compiles.
+	 */
+	private static ExecutorService newVirtualThreadPerTaskExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Virtual thread watcher mode requires Java 21 or later", e);
+		}
 	}
 	
 	// a hack to override oanda context with mocks during testing
@@ -292,15 +553,110 @@ public class OrderManager {
 		return oandaCtx;
 	}
 	
-	private void delay(int seconds) {
-		try {
-			Thread.sleep(seconds * 1000);
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		} 
+	/**
+	 * Evaluates the triggers of the instruments of one shard on the shard thread, which is the only
+	 * thread touching their watches and trigger indexes. Triggered orders are handed over to the
+	 * placement pipeline.
+	 */
+	private class TriggerEvaluator implements TriggerRing.Handler {
+		private final Map<String, InstrumentTriggerWatch> instrumentWatches = new HashMap<>();
+		
+		@Override
+		public void onPrice(String instrument, long priceTicks, double price) {
+			InstrumentTriggerWatch watch = instrumentWatches.get(instrument);
+			if (watch == null)
+				return;
+			
+			long evaluationStart = System.nanoTime();
+			List<PriceTrigger> triggered = watch.triggerIndex.pollTriggered(priceTicks);
+			watch.evaluationTimer.record(System.nanoTime() - evaluationStart, TimeUnit.NANOSECONDS);
+			if (orderEvents.hasSubscribers())
+				publishApproaching(watch, priceTicks, price);
+			if (triggered.isEmpty())
+				return;
+			
+			for (PriceTrigger trigger : triggered) {
+				Order order = trigger.getOrder();
+				if (trigger.fire(price)) {
+					logger.info("{} reached {}. It's time to place {} stop order at {}", order.getInstrument(),
+							price, order.getAction(), order.getStopEntry());
+					orderEvents.publish(OrderEvent.triggered(order, price));
+				}
+			}
+			releaseWatchIfIdle(instrument, watch);
+		}
+		
+		private void publishApproaching(InstrumentTriggerWatch watch, long priceTicks, double price) {
+			watch.triggerIndex.forEachApproaching(priceTicks, watch.approachingTicks, trigger -> {
+				double distancePips = (double) Math.abs(priceTicks - trigger.getPlacementTicks()) / watch.ticksPerPip;
+				orderEvents.publish(OrderEvent.approaching(trigger.getOrder(), price, distancePips));
+			});
+		}
+		
+		@Override
+		public void onAddTrigger(PriceTrigger trigger) {
+			String instrument = trigger.getOrder().getInstrument();
+			InstrumentTriggerWatch watch = instrumentWatches.get(instrument);
+			if (watch == null) {
+				watch = new InstrumentTriggerWatch(instrument);
+				instrumentWatches.put(instrument, watch);
+				watch.triggerIndex.add(trigger);
+				priceFeed.subscribe(instrument, watch);
+			} else
+				watch.triggerIndex.add(trigger);
+		}
+		
+		@Override
+		public void onRemoveTrigger(String instrument, long orderId) {
+			InstrumentTriggerWatch watch = instrumentWatches.get(instrument);
+			if (watch == null)
+				return;
+			
+			watch.triggerIndex.remove(orderId);
+			releaseWatchIfIdle(instrument, watch);
+		}
+		
+		private void releaseWatchIfIdle(String instrument, InstrumentTriggerWatch watch) {
+			if (watch.triggerIndex.isEmpty()) {
+				instrumentWatches.remove(instrument);
+				priceFeed.unsubscribe(instrument, watch);
+			}
+		}
 	}
 	
-	public static void main(String[] a) {
-		System.out.println(getNextWeekTimeInRFC3339());
+	/**
+	 * Receives the shared instrument prices on behalf of all pending orders of one instrument and
+	 * passes them on to the shard of the instrument.
+	 */
+	private class InstrumentTriggerWatch implements PriceListener {
+		private final TriggerIndex triggerIndex = new TriggerIndex();
+		private final TriggerRing shard;
+		private final Timer evaluationTimer;
+		private final long ticksPerPip;
+		private final long approachingTicks;
+		
+		InstrumentTriggerWatch(String instrument) {
+			shard = triggerShards.shardOf(instrument);
+			InstrumentMetadata metadata = instrumentCatalog.get(instrument);
+			ticksPerPip = metadata.pipsToTicks(1);
+			approachingTicks = metadata.pipsToTicks(approachingPips);
+			evaluationTimer = Timer.builder("oanda.trigger.evaluation").tag("instrument", instrument)
+					.description("Time to find the orders triggered by a price").register(meterRegistry);
+		}
+		
+		@Override
+		public void onPrice(String instrument, double price) {
+			shard.publishPrice(instrument, Price.toTicks(price), price);
+		}
+	}
+	
+	private static class GtdTime {
+		private final long second;
+		private final DateTime value;
+		
+		GtdTime(long second, DateTime value) {
+			this.second = second;
+			this.value = value;
+		}
 	}
 }
@@ -0,0 +1,190 @@
+package com.asador.oanda.orders;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Places triggered orders on a fixed pool of workers. Each instrument has its own lane: orders of an
+ * instrument are placed one at a time in the order they were triggered, while lanes of different
+ * instruments are placed in parallel. A lane places one order per turn and goes back to the end of
+ * the pool queue, so a burst on one instrument cannot hold up the others. Once shut down, orders
+ * which were not placed yet and new submissions are failed with a {@link RejectedExecutionException}.
+ */
+@Component
+public class PlacementPipeline {
+
+	private final ExecutorService workerPool;
+	private final Map<String, Lane> lanes = new HashMap<>();
+
+	private final AtomicInteger queueDepth = new AtomicInteger();
+	private final LongAdder placedCount = new LongAdder();
+	private final LongAdder totalLatencyNanos = new LongAdder();
+	private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+	@Autowired
+	public PlacementPipeline(@Value("${oanda.placement.workers:4}") int workers) {
+		workerPool = Executors.newFixedThreadPool(workers, new CustomizableThreadFactory("order-placement-"));
+	}
+
+	@PreDestroy
+	protected synchronized void shutdown() {
+		// lanes still waiting for a worker are handed back, the others reject theirs after their turn
+		for (Runnable lane : workerPool.shutdownNow())
+			rejectPending((Lane) lane);
+	}
+
+	/**
+	 * @return completed once the placement has run, or exceptionally if the pipeline is shut down
+	 */
+	public CompletableFuture<Void> submit(String instrument, Runnable placement) {
+		Placement task = new Placement(placement);
+		synchronized (this) {
+			if (workerPool.isShutdown()) {
+				task.done.completeExceptionally(new RejectedExecutionException("Placement pipeline is shut down"));
+				return task.done;
+			}
+			queueDepth.incrementAndGet();
+			Lane lane = lanes.computeIfAbsent(instrument, Lane::new);
+			lane.placements.add(task);
+			if (!lane.scheduled) {
+				lane.scheduled = true;
+				workerPool.execute(lane);
+			}
+		}
+		return task.done;
+	}
+
+	public int getQueueDepth() {
+		return queueDepth.get();
+	}
+
+	public PlacementStats getStats() {
+		long placed = placedCount.sum();
+		return new PlacementStats(queueDepth.get(), placed,
+				placed == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalLatencyNanos.sum() / placed) / 1000.0,
+				TimeUnit.NANOSECONDS.toMicros(maxLatencyNanos.get()) / 1000.0);
+	}
+
+	private synchronized Placement nextPlacement(Lane lane) {
+		Placement placement = lane.placements.poll();
+		if (placement == null) {
+			lane.scheduled = false;
+			lanes.remove(lane.instrument);
+		}
+		return placement;
+	}
+
+	private synchronized void rescheduleIfPending(Lane lane) {
+		if (lane.placements.isEmpty()) {
+			lane.scheduled = false;
+			lanes.remove(lane.instrument);
+		} else if (workerPool.isShutdown())
+			rejectPending(lane);
+		else
+			workerPool.execute(lane);
+	}
+
+	private void rejectPending(Lane lane) {
+		lane.scheduled = false;
+		lanes.remove(lane.instrument);
+		RejectedExecutionException rejection = new RejectedExecutionException("Placement pipeline is shut down");
+		Placement placement;
+		while ((placement = lane.placements.poll()) != null) {
+			queueDepth.decrementAndGet();
+			placement.done.completeExceptionally(rejection);
+		}
+	}
+
+	private class Lane implements Runnable {
+		private final String instrument;
+		private final Queue<Placement> placements = new ArrayDeque<>();
+		private boolean scheduled;
+
+		Lane(String instrument) {
+			this.instrument = instrument;
+		}
+
+		@Override
+		public void run() {
+			Placement placement = nextPlacement(this);
+			if (placement == null)
+				return;
+
+			queueDepth.decrementAndGet();
+			Throwable failure = null;
+			try {
+				placement.task.run();
+			} catch (Throwable e) {
+				failure = e;
+			}
+
+			long latency = System.nanoTime() - placement.submitTime;
+			placedCount.increment();
+			totalLatencyNanos.add(latency);
+			maxLatencyNanos.accumulateAndGet(latency, Math::max);
+			rescheduleIfPending(this);
+
+			if (failure == null)
+				placement.done.complete(null);
+			else
+				placement.done.completeExceptionally(failure);
+		}
+	}
+
+	private static class Placement {
+		private final Runnable task;
+		private final long submitTime = System.nanoTime();
+		private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+		Placement(Runnable task) {
+			this.task = task;
+		}
+	}
+
+	/**
+	 * Latencies are in milliseconds, from the moment an order is queued to the end of its placement.
+	 */
+	public static class PlacementStats {
+		private final int queueDepth;
+		private final long placedCount;
+		private final double averageLatencyMillis;
+		private final double maxLatencyMillis;
+
+		PlacementStats(int queueDepth, long placedCount, double averageLatencyMillis, double maxLatencyMillis) {
+			this.queueDepth = queueDepth;
+			this.placedCount = placedCount;
+			this.averageLatencyMillis = averageLatencyMillis;
+			this.maxLatencyMillis = maxLatencyMillis;
+		}
+
+		public int getQueueDepth() {
+			return queueDepth;
+		}
+		public long getPlacedCount() {
+			return placedCount;
+		}
+		public double getAverageLatencyMillis() {
+			return averageLatencyMillis;
+		}
+		public double getMaxLatencyMillis() {
+			return maxLatencyMillis;
+		}
+	}
+}
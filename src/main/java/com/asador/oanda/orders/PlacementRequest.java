@@ -0,0 +1,40 @@
+package com.asador.oanda.orders;
+
+import com.asador.oanda.orders.domain.Order;
+import com.asador.oanda.orders.domain.OrderAction;
+import com.asador.oanda.pricing.Price;
+import com.oanda.v20.account.AccountID;
+import com.oanda.v20.order.OrderCreateRequest;
+import com.oanda.v20.order.StopOrderRequest;
+import com.oanda.v20.order.TimeInForce;
+import com.oanda.v20.primitives.DateTime;
+import com.oanda.v20.transaction.StopLossDetails;
+import com.oanda.v20.transaction.TakeProfitDetails;
+
+/**
+ * The OANDA stop order request of a pending order, built when the order is watched so that placing
+ * it only stamps the good-till-date. It is used for a single placement.
+ */
+class PlacementRequest {
+
+	private final OrderCreateRequest request;
+	private final StopOrderRequest stopOrder;
+
+	PlacementRequest(AccountID accountId, Order order) {
+		stopOrder = new StopOrderRequest();
+		stopOrder.setInstrument(order.getInstrument());
+		stopOrder.setPrice(Price.toDecimal(order.getStopEntryTicks()));
+		stopOrder.setStopLossOnFill(new StopLossDetails().setPrice(Price.toDecimal(order.getStopLossTicks())));
+		stopOrder.setTakeProfitOnFill(new TakeProfitDetails().setPrice(Price.toDecimal(order.getTargetProfitTicks())));
+		stopOrder.setTimeInForce(TimeInForce.GTD);
+		stopOrder.setUnits(order.getAction() == OrderAction.BUY ? order.getUnits() : -order.getUnits());
+
+		request = new OrderCreateRequest(accountId);
+		request.setOrder(stopOrder);
+	}
+
+	OrderCreateRequest withGtdTime(DateTime gtdTime) {
+		stopOrder.setGtdTime(gtdTime);
+		return request;
+	}
+}
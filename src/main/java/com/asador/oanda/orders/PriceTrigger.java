@@ -0,0 +1,118 @@
+package com.asador.oanda.orders;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.asador.oanda.orders.domain.Order;
+
+/**
+ * A pending order waiting in a {@link TriggerIndex} together with its precomputed placement price in
+ * {@link com.asador.oanda.pricing.Price} ticks.
+ * <p>
+ * Firing, canceling and placing the order are compare-and-set transitions of the trigger state, so
+ * when a cancel races with the price trigger exactly one of them wins and a canceled order is never
+ * placed.
+ */
+public class PriceTrigger {
+
+	enum State { WATCHING, TRIGGERED, PLACING, CANCELLED }
+
+	private final Order order;
+	private final long placementTicks;
+	private final PlacementRequest placementRequest;
+	private final TriggerListener listener;
+	private final AtomicReference<State> state = new AtomicReference<>(State.WATCHING);
+	private final CountDownLatch resolved = new CountDownLatch(1);
+	private volatile long firedNanos;
+
+	public PriceTrigger(Order order, long placementTicks, TriggerListener listener) {
+		this(order, placementTicks, null, listener);
+	}
+
+	PriceTrigger(Order order, long placementTicks, PlacementRequest placementRequest, TriggerListener listener) {
+		this.order = order;
+		this.placementTicks = placementTicks;
+		this.placementRequest = placementRequest;
+		this.listener = listener;
+	}
+
+	public Order getOrder() {
+		return order;
+	}
+
+	public long getPlacementTicks() {
+		return placementTicks;
+	}
+
+	/**
+	 * @return the request prepared when the order started being watched, null if none was
+	 */
+	PlacementRequest getPlacementRequest() {
+		return placementRequest;
+	}
+
+	/**
+	 * @return {@link System#nanoTime()} when the placement price was reached
+	 */
+	long getFiredNanos() {
+		return firedNanos;
+	}
+
+	State getState() {
+		return state.get();
+	}
+
+	boolean fire(double price) {
+		if (!state.compareAndSet(State.WATCHING, State.TRIGGERED))
+			return false;
+
+		firedNanos = System.nanoTime();
+		resolved.countDown();
+		if (listener != null)
+			listener.onTriggered(this, price);
+		return true;
+	}
+
+	/**
+	 * @return false if the order is already being placed
+	 */
+	boolean cancel() {
+		if (!state.compareAndSet(State.WATCHING, State.CANCELLED) &&
+				!state.compareAndSet(State.TRIGGERED, State.CANCELLED))
+			return false;
+
+		onCancelled();
+		return true;
+	}
+
+	/**
+	 * Cancels the trigger only if its price has not been reached yet.
+	 */
+	boolean cancelWatching() {
+		if (!state.compareAndSet(State.WATCHING, State.CANCELLED))
+			return false;
+
+		onCancelled();
+		return true;
+	}
+
+	private void onCancelled() {
+		resolved.countDown();
+		if (listener != null)
+			listener.onCancelled(this);
+	}
+
+	/**
+	 * @return false if the order was canceled after being triggered
+	 */
+	boolean startPlacing() {
+		return state.compareAndSet(State.TRIGGERED, State.PLACING);
+	}
+
+	/**
+	 * Blocks until the trigger is either fired or canceled.
+	 */
+	void awaitResolution() throws InterruptedException {
+		resolved.await();
+	}
+}
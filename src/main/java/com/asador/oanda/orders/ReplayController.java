@@ -0,0 +1,22 @@
+package com.asador.oanda.orders;
+
+import java.io.IOException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+public class ReplayController {
+
+	@Autowired
+	private ReplayEngine replayEngine;
+
+	@PostMapping(path="/replay", produces="application/json")
+	@ResponseBody()
+	public ReplayReport replay(@RequestBody ReplayRequest request) throws IOException {
+		return replayEngine.replay(request.getFiles(), request.getOrders());
+	}
+}
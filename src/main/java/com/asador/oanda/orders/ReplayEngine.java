@@ -0,0 +1,127 @@
+package com.asador.oanda.orders;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.asador.oanda.orders.domain.Order;
+import com.asador.oanda.pricing.Price;
+
+/**
+ * Replays historical prices through the same trigger index and triggers as the live order watches and
+ * records the orders that would have been placed, without touching OANDA or the order store. The clock
+ * is the time of the replayed prices, so nothing waits and the replay runs as fast as the files can be
+ * read.
+ * <p>
+ * Replay files are CSV files under oanda.replay.dataDir with a price per line, either a tick,
+ * {@code time,instrument,price}, or a candle, {@code time,instrument,open,high,low,close}. Time is in
+ * epoch milliseconds or RFC3339 and lines not starting with a digit, e.g. headers, are skipped. The
+ * files are read line by line and merged by time, so years of prices of many instruments can be
+ * replayed with a few KB per file.
+ */
+@Component
+public class ReplayEngine {
+	private final Logger logger = LoggerFactory.getLogger(ReplayEngine.class);
+
+	@Value("${oanda.replay.dataDir:data/replay}")
+	private String dataDir;
+
+	@Autowired
+	private OrderManager orderManager;
+
+	public ReplayReport replay(List<String> fileNames, List<Order> orders) throws IOException {
+		Path root = Paths.get(dataDir).toAbsolutePath().normalize();
+		List<Path> files = new ArrayList<>(fileNames.size());
+		for (String fileName : fileNames) {
+			Path file = root.resolve(fileName).normalize();
+			if (!file.startsWith(root))
+				throw new IllegalArgumentException("Replay file " + fileName + " is outside " + dataDir);
+			files.add(file);
+		}
+		for (Order order : orders)
+			orderManager.validateOrder(order);
+
+		return replayFiles(files, orders);
+	}
+
+	ReplayReport replayFiles(List<Path> files, List<Order> orders) throws IOException {
+		List<ReplayReport.SimulatedPlacement> placements = new ArrayList<>();
+		long[] clock = new long[1];
+		TriggerListener listener = new TriggerListener() {
+
+			@Override
+			public void onTriggered(PriceTrigger trigger, double price) {
+				Order order = trigger.getOrder();
+				placements.add(new ReplayReport.SimulatedPlacement(order.getOrderId(), order.getInstrument(),
+						order.getAction(), clock[0], price, order.getStopEntry()));
+			}
+
+			@Override
+			public void onCancelled(PriceTrigger trigger) {
+			}
+		};
+
+		Map<String, TriggerIndex> triggerIndexes = new HashMap<>();
+		for (int i = 0; i < orders.size(); i++) {
+			Order order = orders.get(i);
+			if (order.getOrderId() == 0)
+				order.setOrderId(i + 1);
+			triggerIndexes.computeIfAbsent(order.getInstrument(), instrument -> new TriggerIndex())
+					.add(new PriceTrigger(order, orderManager.getOrderPlacementTicks(order), listener));
+		}
+
+		PriorityQueue<ReplayFile> queue = new PriorityQueue<>(Math.max(files.size(), 1),
+				Comparator.comparingLong(ReplayFile::getTime));
+		List<ReplayFile> openFiles = new ArrayList<>(files.size());
+		long events = 0;
+		long firstEventTime = 0;
+		long start = System.nanoTime();
+		try {
+			for (Path file : files) {
+				ReplayFile replayFile = new ReplayFile(file);
+				openFiles.add(replayFile);
+				if (replayFile.next())
+					queue.add(replayFile);
+			}
+
+			while (!queue.isEmpty()) {
+				ReplayFile replayFile = queue.poll();
+				clock[0] = replayFile.getTime();
+				if (events++ == 0)
+					firstEventTime = clock[0];
+
+				TriggerIndex triggerIndex = triggerIndexes.get(replayFile.getInstrument());
+				if (triggerIndex != null) {
+					long priceTicks = replayFile.getPriceTicks();
+					for (PriceTrigger trigger : triggerIndex.pollTriggered(priceTicks))
+						trigger.fire(Price.toDouble(priceTicks));
+				}
+
+				if (replayFile.next())
+					queue.add(replayFile);
+			}
+		} finally {
+			for (ReplayFile replayFile : openFiles)
+				replayFile.close();
+		}
+
+		ReplayReport report = new ReplayReport(events, firstEventTime, clock[0], orders.size(), placements,
+				System.nanoTime() - start);
+		logger.info("Replayed {} prices of {} files in {} ms, {} events/s, {} of {} orders placed", events,
+				files.size(), report.getElapsedMillis(), report.getEventsPerSecond(), placements.size(), orders.size());
+		return report;
+	}
+}
@@ -0,0 +1,154 @@
+package com.asador.oanda.orders;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+
+import com.asador.oanda.pricing.Price;
+
+/**
+ * Reads the prices of a replay file one at a time. Candles are turned into up to four prices, open,
+ * the extreme nearest to the open, the other extreme and close, which is the path the price most
+ * likely took within the candle.
+ */
+class ReplayFile implements Closeable {
+
+	private final Path path;
+	private final BufferedReader reader;
+	private final long[] parsed = new long[4];
+	private final long[] pending = new long[4];
+	private int pendingCount;
+	private int pendingIndex;
+	private int lineNumber;
+
+	private long time;
+	private String instrument;
+	private long priceTicks;
+
+	ReplayFile(Path path) throws IOException {
+		this.path = path;
+		this.reader = Files.newBufferedReader(path, StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * @return false at the end of the file
+	 */
+	boolean next() throws IOException {
+		if (pendingIndex < pendingCount) {
+			priceTicks = pending[pendingIndex++];
+			return true;
+		}
+
+		String line;
+		do {
+			line = reader.readLine();
+			lineNumber++;
+			if (line == null)
+				return false;
+		} while (line.isEmpty() || !Character.isDigit(line.charAt(0)));
+
+		try {
+			parse(line);
+		} catch (RuntimeException e) {
+			throw new IllegalArgumentException("Cannot read line " + lineNumber + " of " + path + ": " + line, e);
+		}
+		priceTicks = pending[0];
+		pendingIndex = 1;
+		return true;
+	}
+
+	long getTime() {
+		return time;
+	}
+	String getInstrument() {
+		return instrument;
+	}
+	long getPriceTicks() {
+		return priceTicks;
+	}
+
+	private void parse(String line) {
+		int timeEnd = line.indexOf(',');
+		int instrumentEnd = line.indexOf(',', timeEnd + 1);
+		if (timeEnd < 0 || instrumentEnd < 0)
+			throw new IllegalArgumentException("Expected time, instrument and prices");
+		time = parseTime(line, timeEnd);
+		// files usually hold a single instrument, keep the same string instead of allocating one per line
+		int instrumentLength = instrumentEnd - timeEnd - 1;
+		if (instrument == null || instrument.length() != instrumentLength ||
+				!line.regionMatches(timeEnd + 1, instrument, 0, instrumentLength))
+			instrument = line.substring(timeEnd + 1, instrumentEnd);
+
+		long[] prices = parsed;
+		int priceCount = 0;
+		for (int start = instrumentEnd + 1; start <= line.length() && priceCount < 4; priceCount++) {
+			int end = line.indexOf(',', start);
+			if (end < 0)
+				end = line.length();
+			prices[priceCount] = parseTicks(line, start, end);
+			start = end + 1;
+		}
+
+		if (priceCount == 1) {
+			pending[0] = prices[0];
+			pendingCount = 1;
+		} else if (priceCount == 4) {
+			long open = prices[0], high = prices[1], low = prices[2], close = prices[3];
+			boolean highFirst = high - open < open - low;
+			pending[0] = open;
+			pending[1] = highFirst ? high : low;
+			pending[2] = highFirst ? low : high;
+			pending[3] = close;
+			pendingCount = 4;
+		} else {
+			throw new IllegalArgumentException("Expected a price or open, high, low and close");
+		}
+	}
+
+	private static long parseTime(String line, int end) {
+		long millis = 0;
+		for (int i = 0; i < end; i++) {
+			char c = line.charAt(i);
+			if (c < '0' || c > '9')
+				return Instant.parse(line.substring(0, end)).toEpochMilli();
+			millis = millis * 10 + (c - '0');
+		}
+		return millis;
+	}
+
+	/**
+	 * Parses a decimal price straight into ticks, without going through a double.
+	 */
+	static long parseTicks(String line, int start, int end) {
+		long ticks = 0;
+		int decimals = -1;
+		for (int i = start; i < end; i++) {
+			char c = line.charAt(i);
+			if (c == '.' && decimals < 0) {
+				decimals = 0;
+			} else if (c >= '0' && c <= '9') {
+				if (decimals < Price.DECIMALS) {
+					ticks = ticks * 10 + (c - '0');
+					if (decimals >= 0)
+						decimals++;
+				}
+			} else {
+				throw new NumberFormatException("Not a price: " + line.substring(start, end));
+			}
+		}
+		if (end == start)
+			throw new NumberFormatException("Missing price");
+		for (int i = Math.max(decimals, 0); i < Price.DECIMALS; i++)
+			ticks *= 10;
+		return ticks;
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+}
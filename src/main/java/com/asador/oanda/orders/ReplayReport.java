@@ -0,0 +1,96 @@
+package com.asador.oanda.orders;
+
+import java.time.Instant;
+import java.util.List;
+
+import com.asador.oanda.orders.domain.OrderAction;
+
+/**
+ * Outcome of a replay, the orders that would have been placed and how fast the prices went through
+ * the trigger index.
+ */
+public class ReplayReport {
+
+	private final long events;
+	private final String firstEventTime;
+	private final String lastEventTime;
+	private final int orders;
+	private final List<SimulatedPlacement> placements;
+	private final long elapsedMillis;
+	private final long eventsPerSecond;
+
+	ReplayReport(long events, long firstEventTime, long lastEventTime, int orders, List<SimulatedPlacement> placements,
+			long elapsedNanos) {
+		this.events = events;
+		this.firstEventTime = events > 0 ? Instant.ofEpochMilli(firstEventTime).toString() : null;
+		this.lastEventTime = events > 0 ? Instant.ofEpochMilli(lastEventTime).toString() : null;
+		this.orders = orders;
+		this.placements = placements;
+		this.elapsedMillis = elapsedNanos / 1_000_000;
+		this.eventsPerSecond = elapsedNanos > 0 ? events * 1_000_000_000L / elapsedNanos : 0;
+	}
+
+	public long getEvents() {
+		return events;
+	}
+	public String getFirstEventTime() {
+		return firstEventTime;
+	}
+	public String getLastEventTime() {
+		return lastEventTime;
+	}
+	public int getOrders() {
+		return orders;
+	}
+	public List<SimulatedPlacement> getPlacements() {
+		return placements;
+	}
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+	public long getEventsPerSecond() {
+		return eventsPerSecond;
+	}
+
+	/**
+	 * An order whose placement price was reached during the replay, at the simulated time it was reached.
+	 */
+	public static class SimulatedPlacement {
+
+		private final long orderId;
+		private final String instrument;
+		private final OrderAction action;
+		private final String time;
+		private final double price;
+		private final double stopEntry;
+
+		SimulatedPlacement(long orderId, String instrument, OrderAction action, long time, double price,
+				double stopEntry) {
+			this.orderId = orderId;
+			this.instrument = instrument;
+			this.action = action;
+			this.time = Instant.ofEpochMilli(time).toString();
+			this.price = price;
+			this.stopEntry = stopEntry;
+		}
+
+		public long getOrderId() {
+			return orderId;
+		}
+		public String getInstrument() {
+			return instrument;
+		}
+		public OrderAction getAction() {
+			return action;
+		}
+		public String getTime() {
+			return time;
+		}
+		public double getPrice() {
+			return price;
+		}
+		public double getStopEntry() {
+			return stopEntry;
+		}
+	}
+}
@@ -0,0 +1,29 @@
+package com.asador.oanda.orders;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.asador.oanda.orders.domain.Order;
+
+/**
+ * Replay files, relative to oanda.replay.dataDir, and the orders whose triggers they are replayed
+ * against.
+ */
+public class ReplayRequest {
+
+	private List<String> files = new ArrayList<>();
+	private List<Order> orders = new ArrayList<>();
+
+	public List<String> getFiles() {
+		return files;
+	}
+	public void setFiles(List<String> files) {
+		this.files = files;
+	}
+	public List<Order> getOrders() {
+		return orders;
+	}
+	public void setOrders(List<Order> orders) {
+		this.orders = orders;
+	}
+}
@@ -0,0 +1,117 @@
+package com.asador.oanda.orders;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+import com.asador.oanda.orders.domain.OrderAction;
+
+/**
+ * Pending order triggers of a single instrument. BUY triggers are kept sorted by descending placement
+ * price and SELL triggers by ascending placement price, so the triggers crossed by a new price are
+ * always at the head of their set. Adding and removing a trigger is O(log n) and finding the k
+ * triggers crossed by a price is O(log n + k).
+ * <p>
+ * An index is not thread safe, it is meant to be owned by a single thread such as the
+ * {@link TriggerRing} thread.
+ */
+public class TriggerIndex {
+
+	private static final Comparator<PriceTrigger> ASCENDING_PLACEMENT_TICKS =
+			Comparator.comparingLong(PriceTrigger::getPlacementTicks)
+					.thenComparingLong(trigger -> trigger.getOrder().getOrderId());
+
+	private final NavigableSet<PriceTrigger> buyTriggers = new TreeSet<>(
+			Comparator.comparingLong(PriceTrigger::getPlacementTicks).reversed()
+					.thenComparingLong(trigger -> trigger.getOrder().getOrderId()));
+	private final NavigableSet<PriceTrigger> sellTriggers = new TreeSet<>(ASCENDING_PLACEMENT_TICKS);
+	private final Map<Long, PriceTrigger> triggersByOrderId = new HashMap<>();
+
+	public void add(PriceTrigger trigger) {
+		PriceTrigger previous = triggersByOrderId.put(trigger.getOrder().getOrderId(), trigger);
+		if (previous != null)
+			triggersOf(previous).remove(previous);
+		triggersOf(trigger).add(trigger);
+	}
+
+	public PriceTrigger remove(long orderId) {
+		PriceTrigger trigger = triggersByOrderId.remove(orderId);
+		if (trigger != null)
+			triggersOf(trigger).remove(trigger);
+		return trigger;
+	}
+
+	/**
+	 * Removes and returns the triggers whose placement price has been reached by the given price in
+	 * {@link com.asador.oanda.pricing.Price} ticks.
+	 */
+	public List<PriceTrigger> pollTriggered(long priceTicks) {
+		List<PriceTrigger> triggered = Collections.emptyList();
+
+		Iterator<PriceTrigger> buyIterator = buyTriggers.iterator();
+		while (buyIterator.hasNext()) {
+			PriceTrigger trigger = buyIterator.next();
+			if (priceTicks > trigger.getPlacementTicks())
+				break;
+			triggered = addTriggered(triggered, trigger);
+			buyIterator.remove();
+		}
+
+		Iterator<PriceTrigger> sellIterator = sellTriggers.iterator();
+		while (sellIterator.hasNext()) {
+			PriceTrigger trigger = sellIterator.next();
+			if (priceTicks < trigger.getPlacementTicks())
+				break;
+			triggered = addTriggered(triggered, trigger);
+			sellIterator.remove();
+		}
+
+		return triggered;
+	}
+
+	/**
+	 * Calls the consumer with the triggers not reached by the price whose placement price is at most
+	 * the given distance away from it, nearest first for each action.
+	 */
+	public void forEachApproaching(long priceTicks, long distanceTicks, Consumer<PriceTrigger> consumer) {
+		for (PriceTrigger trigger : buyTriggers) {
+			if (trigger.getPlacementTicks() < priceTicks - distanceTicks)
+				break;
+			if (trigger.getPlacementTicks() < priceTicks)
+				consumer.accept(trigger);
+		}
+		for (PriceTrigger trigger : sellTriggers) {
+			if (trigger.getPlacementTicks() > priceTicks + distanceTicks)
+				break;
+			if (trigger.getPlacementTicks() > priceTicks)
+				consumer.accept(trigger);
+		}
+	}
+
+	public boolean isEmpty() {
+		return triggersByOrderId.isEmpty();
+	}
+
+	public int size() {
+		return triggersByOrderId.size();
+	}
+
+	private List<PriceTrigger> addTriggered(List<PriceTrigger> triggered, PriceTrigger trigger) {
+		if (triggered.isEmpty())
+			triggered = new ArrayList<>();
+		triggered.add(trigger);
+		triggersByOrderId.remove(trigger.getOrder().getOrderId());
+		return triggered;
+	}
+
+	private NavigableSet<PriceTrigger> triggersOf(PriceTrigger trigger) {
+		return trigger.getOrder().getAction() == OrderAction.BUY ? buyTriggers : sellTriggers;
+	}
+}
@@ -0,0 +1,8 @@
+package com.asador.oanda.orders;
+
+public interface TriggerListener {
+
+	void onTriggered(PriceTrigger trigger, double price);
+
+	void onCancelled(PriceTrigger trigger);
+}
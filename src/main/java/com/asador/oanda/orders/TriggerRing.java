@@ -0,0 +1,217 @@
+package com.asador.oanda.orders;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Ring buffer of preallocated events between the threads which receive prices or create and cancel
+ * orders, and the single thread which owns the trigger indexes. Prices and order commands go through
+ * the same ring, so the handler sees them in the exact order they were published.
+ * <p>
+ * Producers claim a sequence with a compare-and-set, fill the slot of that sequence and mark it as
+ * published. The handler thread processes every published event in sequence order, spinning and then
+ * parking while the ring is empty, until a producer publishing wakes it up. Producers wait for the
+ * handler when the ring is full.
+ *
+ * @see TriggerShards
+ */
+public class TriggerRing {
+	private final Logger logger = LoggerFactory.getLogger(TriggerRing.class);
+
+	private static final int SPIN_TRIES = 100;
+	private static final int YIELD_TRIES = 100;
+	/** Only a backstop, producers and stop() unpark the handler */
+	private static final long PARK_SAFETY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	/**
+	 * Receives the events of the ring, always on the ring thread.
+	 */
+	public interface Handler {
+
+		void onPrice(String instrument, long priceTicks, double price);
+
+		void onAddTrigger(PriceTrigger trigger);
+
+		void onRemoveTrigger(String instrument, long orderId);
+	}
+
+	private enum EventType { PRICE, ADD_TRIGGER, REMOVE_TRIGGER }
+
+	private static class Event {
+		private EventType type;
+		private String instrument;
+		private long priceTicks;
+		private double price;
+		private long orderId;
+		private PriceTrigger trigger;
+	}
+
+	private final String name;
+	private final Event[] events;
+	private final int mask;
+	/** Sequence each slot was last published with */
+	private final AtomicLongArray published;
+	private final AtomicLong claimed = new AtomicLong(-1);
+	private final AtomicLong processed = new AtomicLong(-1);
+
+	private volatile Thread handlerThread;
+	private volatile boolean handlerParked;
+	private volatile boolean running;
+
+	public TriggerRing(String name, int size) {
+		if (size <= 0 || Integer.bitCount(size) != 1)
+			throw new IllegalArgumentException("Ring size must be a power of two");
+		this.name = name;
+		events = new Event[size];
+		for (int i = 0; i < size; i++)
+			events[i] = new Event();
+		mask = size - 1;
+		published = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++)
+			published.set(i, -1);
+	}
+
+	/**
+	 * Starts the ring thread. Events published before are handled once it runs.
+	 */
+	public synchronized void start(Handler handler) {
+		if (handlerThread != null)
+			throw new IllegalStateException("Trigger ring is already started");
+		running = true;
+		handlerThread = new Thread(() -> run(handler), name);
+		handlerThread.setDaemon(true);
+		handlerThread.start();
+	}
+
+	public void stop() {
+		running = false;
+		Thread thread = handlerThread;
+		if (thread != null)
+			LockSupport.unpark(thread);
+	}
+
+	public void publishPrice(String instrument, long priceTicks, double price) {
+		long sequence = claim();
+		Event event = events[(int) sequence & mask];
+		event.type = EventType.PRICE;
+		event.instrument = instrument;
+		event.priceTicks = priceTicks;
+		event.price = price;
+		publish(sequence);
+	}
+
+	public void publishAddTrigger(PriceTrigger trigger) {
+		long sequence = claim();
+		Event event = events[(int) sequence & mask];
+		event.type = EventType.ADD_TRIGGER;
+		event.trigger = trigger;
+		publish(sequence);
+	}
+
+	public void publishRemoveTrigger(String instrument, long orderId) {
+		long sequence = claim();
+		Event event = events[(int) sequence & mask];
+		event.type = EventType.REMOVE_TRIGGER;
+		event.instrument = instrument;
+		event.orderId = orderId;
+		publish(sequence);
+	}
+
+	/**
+	 * @return events published but not handled yet
+	 */
+	public int getBacklog() {
+		return (int) (claimed.get() - processed.get());
+	}
+
+	private long claim() {
+		while (true) {
+			long current = claimed.get();
+			long next = current + 1;
+			if (next - events.length > processed.get()) {
+				// ring is full, wait for the handler to free a slot
+				wakeUpHandler();
+				LockSupport.parkNanos(1_000);
+				continue;
+			}
+			if (claimed.compareAndSet(current, next))
+				return next;
+		}
+	}
+
+	private void publish(long sequence) {
+		// a full fence, a lazy set could still be in the store buffer when the flag is read and the
+		// handler would park past this event
+		published.set((int) sequence & mask, sequence);
+		if (handlerParked)
+			wakeUpHandler();
+	}
+
+	private void wakeUpHandler() {
+		Thread thread = handlerThread;
+		if (thread != null)
+			LockSupport.unpark(thread);
+	}
+
+	private void run(Handler handler) {
+		long next = processed.get() + 1;
+		int idleCount = 0;
+		while (running) {
+			if (published.get((int) next & mask) != next) {
+				idle(++idleCount, next);
+				continue;
+			}
+			idleCount = 0;
+
+			// handle the whole published batch before giving the slots back
+			long last = next;
+			while (published.get((int) (last + 1) & mask) == last + 1)
+				last++;
+			for (long sequence = next; sequence <= last; sequence++)
+				handle(handler, events[(int) sequence & mask]);
+			processed.lazySet(last);
+			next = last + 1;
+		}
+	}
+
+	private void idle(int idleCount, long next) {
+		if (idleCount <= SPIN_TRIES)
+			return;
+		if (idleCount <= SPIN_TRIES + YIELD_TRIES) {
+			Thread.yield();
+			return;
+		}
+		handlerParked = true;
+		// a producer publishing now either sees the flag or is seen by this check
+		if (published.get((int) next & mask) != next)
+			LockSupport.parkNanos(this, PARK_SAFETY_NANOS);
+		handlerParked = false;
+	}
+
+	private void handle(Handler handler, Event event) {
+		try {
+			switch (event.type) {
+			case PRICE:
+				handler.onPrice(event.instrument, event.priceTicks, event.price);
+				break;
+			case ADD_TRIGGER:
+				handler.onAddTrigger(event.trigger);
+				break;
+			case REMOVE_TRIGGER:
+				handler.onRemoveTrigger(event.instrument, event.orderId);
+				break;
+			}
+		} catch (RuntimeException e) {
+			// the ring thread must outlive a failing event
+			logger.error("Failed to handle " + event.type + " event", e);
+		} finally {
+			event.instrument = null;
+			event.trigger = null;
+		}
+	}
+}
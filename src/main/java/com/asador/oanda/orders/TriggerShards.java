@@ -0,0 +1,70 @@
+package com.asador.oanda.orders;
+
+import java.util.function.Supplier;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Partitions instruments across single-threaded {@link TriggerRing} shards. An instrument always
+ * hashes to the same shard, whose thread owns the instrument's pending triggers and price
+ * subscription, so prices and order commands of an instrument never need a lock and instruments of
+ * different shards are evaluated in parallel.
+ */
+@Component
+public class TriggerShards {
+
+	private final TriggerRing[] shards;
+
+	/**
+	 * @param shardCount 0 for one shard per available core
+	 */
+	@Autowired
+	public TriggerShards(@Value("${oanda.trigger.shards:0}") int shardCount,
+			@Value("${oanda.trigger.ringSize:65536}") int ringSize) {
+		if (shardCount < 0)
+			throw new IllegalArgumentException("Shard count must not be negative");
+		if (shardCount == 0)
+			shardCount = Runtime.getRuntime().availableProcessors();
+
+		shards = new TriggerRing[shardCount];
+		for (int i = 0; i < shardCount; i++)
+			shards[i] = new TriggerRing("trigger-shard-" + i, ringSize);
+	}
+
+	/**
+	 * Starts every shard with a handler of its own.
+	 */
+	public void start(Supplier<TriggerRing.Handler> handlerFactory) {
+		for (TriggerRing shard : shards)
+			shard.start(handlerFactory.get());
+	}
+
+	@PreDestroy
+	public void stop() {
+		for (TriggerRing shard : shards)
+			shard.stop();
+	}
+
+	public TriggerRing shardOf(String instrument) {
+		return shards[shardIndexOf(instrument)];
+	}
+
+	int shardIndexOf(String instrument) {
+		int hash = instrument.hashCode();
+		// spread the high bits, instrument names often only differ in their last characters
+		hash ^= hash >>> 16;
+		return Math.floorMod(hash, shards.length);
+	}
+
+	public int getShardCount() {
+		return shards.length;
+	}
+
+	TriggerRing getShard(int index) {
+		return shards[index];
+	}
+}
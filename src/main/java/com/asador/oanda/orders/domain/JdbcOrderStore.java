@@ -0,0 +1,267 @@
+package com.asador.oanda.orders.domain;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.asador.oanda.pricing.Price;
+
+/**
+ * Keeps orders in the PENDING_ORDER table, with prices stored as {@link Price} ticks. Orders are not
+ * deleted when they stop being pending, their status and update time record what became of them.
+ * <p>
+ * The table is created and migrated at startup. SCHEMA_VERSION holds the versions applied, each one
+ * recorded as soon as its step is done. Tables created before it existed are recognized from their
+ * columns.
+ */
+@Repository
+@ConditionalOnProperty(name = "oanda.orderStore", havingValue = "jdbc", matchIfMissing = true)
+public class JdbcOrderStore implements OrderStore {
+	private final Logger logger = LoggerFactory.getLogger(JdbcOrderStore.class);
+	
+	private static final String SQL_INSERT_ORDER="insert into pending_order (order_id, instrument, action, units, stop_entry, target_profit, stop_loss, trigger_distance_pips, status, created_at, updated_at) values (?,?,?,?,?,?,?,?,'PENDING',unix_millis(),unix_millis())";
+	private static final String SQL_SELECT_PENDING_ORDERS="select * from pending_order where status='PENDING'";
+	private static final String SQL_SELECT_LAST_ORDER_ID="select coalesce(max(order_id), 0) from pending_order";
+	private static final String SQL_REMOVE_ORDER="update pending_order set status=?, updated_at=unix_millis() where order_id=? and status='PENDING'";
+	private static final String SQL_UPDATE_STATUS="update pending_order set status=?, updated_at=unix_millis() where order_id=?";
+	
+	private static final String SQL_CREATE_SCHEMA_VERSION="create table if not exists schema_version ( version integer primary key, applied_at bigint )";
+	private static final String SQL_SELECT_SCHEMA_VERSION="select max(version) from schema_version";
+	private static final String SQL_INSERT_SCHEMA_VERSION="insert into schema_version (version, applied_at) values (?, unix_millis())";
+	private static final String SQL_CREATE_SCHEMA_LOCK="create table if not exists schema_lock ( lock_id integer primary key, locked_until bigint )";
+	private static final String SQL_DELETE_EXPIRED_SCHEMA_LOCK="delete from schema_lock where locked_until < unix_millis()";
+	private static final String SQL_INSERT_SCHEMA_LOCK="insert into schema_lock (lock_id, locked_until) values (1, unix_millis() + ?)";
+	private static final String SQL_DELETE_SCHEMA_LOCK="delete from schema_lock where lock_id=1";
+	private static final String SQL_SELECT_TABLE_COUNT="select count(*) from information_schema.tables where table_name='PENDING_ORDER'";
+	private static final String SQL_SELECT_COLUMN_TYPE="select data_type from information_schema.columns where table_name='PENDING_ORDER' and column_name=?";
+	private static final String SQL_SELECT_PRIMARY_KEY_COUNT="select count(*) from information_schema.table_constraints where table_name='PENDING_ORDER' and constraint_type='PRIMARY KEY'";
+	private static final String SQL_SELECT_INDEX_COUNT="select count(*) from information_schema.system_indexinfo where table_name='PENDING_ORDER' and index_name=?";
+	private static final String SQL_DELETE_ORDERS_WITHOUT_ID="delete from pending_order where order_id is null";
+	private static final String SQL_SELECT_DUPLICATE_ORDER_IDS="select order_id from pending_order group by order_id having count(*) > 1";
+	private static final String SQL_SELECT_ORDER_COUNT="select count(*) from pending_order where order_id=?";
+	private static final String SQL_DELETE_DUPLICATE_ORDERS="delete from pending_order where order_id=? limit ?";
+	
+	/** Version 1 is the original table, with prices in FLOAT columns */
+	static final int SCHEMA_VERSION = 3;
+	private static final String[] PRICE_COLUMNS = {"STOP_ENTRY", "TARGET_PROFIT", "STOP_LOSS"};
+	/** How long a node may hold the schema lock before the others take it over, should it die migrating */
+	private static final long SCHEMA_LOCK_MILLIS = 60_000;
+	private static final long SCHEMA_LOCK_RETRY_MILLIS = 200;
+	private static final String[] SQL_CREATE_PENDING_ORDER = {
+			"create table pending_order ( order_id bigint primary key, instrument varchar(12), action varchar(5), " + 
+					"units integer, stop_entry bigint, target_profit bigint, stop_loss bigint, trigger_distance_pips tinyint, " +
+					"status varchar(9) default 'PENDING' not null, created_at bigint, updated_at bigint )",
+			"create index pending_order_instrument_action on pending_order (instrument, action)",
+			"create index pending_order_status on pending_order (status)"};
+	
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	/**
+	 * Brings the table to {@link #SCHEMA_VERSION}. DDL is committed as it runs, so every step checks the
+	 * catalog before changing anything and a step cut short is finished by the next startup. Nodes
+	 * starting together take turns through a row of SCHEMA_LOCK.
+	 */
+	@PostConstruct
+	public void migrateSchema() {
+		jdbcTemplate.execute(SQL_CREATE_SCHEMA_VERSION);
+		jdbcTemplate.execute(SQL_CREATE_SCHEMA_LOCK);
+		lockSchema();
+		try {
+			Integer version = jdbcTemplate.queryForObject(SQL_SELECT_SCHEMA_VERSION, Integer.class);
+			if (version == null)
+				version = getUnversionedSchemaVersion();
+			
+			if (version == 0) {
+				jdbcTemplate.batchUpdate(SQL_CREATE_PENDING_ORDER);
+				jdbcTemplate.update(SQL_INSERT_SCHEMA_VERSION, SCHEMA_VERSION);
+				return;
+			}
+			for (; version < SCHEMA_VERSION; version++) {
+				if (version == 1)
+					migratePricesToTicks();
+				else
+					migrateToKeyedTable();
+				jdbcTemplate.update(SQL_INSERT_SCHEMA_VERSION, version + 1);
+				logger.info("Migrated pending orders to schema version {}", version + 1);
+			}
+		} finally {
+			jdbcTemplate.update(SQL_DELETE_SCHEMA_LOCK);
+		}
+	}
+	
+	private void lockSchema() {
+		long deadline = System.currentTimeMillis() + 2 * SCHEMA_LOCK_MILLIS;
+		while (true) {
+			jdbcTemplate.update(SQL_DELETE_EXPIRED_SCHEMA_LOCK);
+			try {
+				jdbcTemplate.update(SQL_INSERT_SCHEMA_LOCK, SCHEMA_LOCK_MILLIS);
+				return;
+			} catch (DuplicateKeyException e) {
+				if (System.currentTimeMillis() > deadline)
+					throw new IllegalStateException("Timed out waiting for another node to migrate the pending orders", e);
+			}
+			try {
+				Thread.sleep(SCHEMA_LOCK_RETRY_MILLIS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted waiting for another node to migrate the pending orders", e);
+			}
+		}
+	}
+	
+	/**
+	 * Tables created before SCHEMA_VERSION only had prices moved to ticks. A table left half way through
+	 * the move, with ticks columns beside the prices, is still at version 1.
+	 */
+	private int getUnversionedSchemaVersion() {
+		if (jdbcTemplate.queryForObject(SQL_SELECT_TABLE_COUNT, Integer.class) == 0)
+			return 0;
+		for (String column : PRICE_COLUMNS) {
+			if (!"BIGINT".equals(getColumnType(column)) || getColumnType(column + "_TICKS") != null)
+				return 1;
+		}
+		return 2;
+	}
+	
+	/**
+	 * Version 2, prices stored as ticks. Each price goes through a new column so a price already
+	 * converted is never multiplied again.
+	 */
+	private void migratePricesToTicks() {
+		for (String column : PRICE_COLUMNS) {
+			String ticksColumn = column + "_TICKS";
+			if ("BIGINT".equals(getColumnType(column)) && getColumnType(ticksColumn) == null)
+				continue;
+			if (getColumnType(ticksColumn) == null)
+				jdbcTemplate.execute("alter table pending_order add column " + ticksColumn + " bigint");
+			if (getColumnType(column) != null) {
+				jdbcTemplate.update("update pending_order set " + ticksColumn + "=round(" + column + "*" + Price.TICKS_PER_UNIT + 
+						",0) where " + ticksColumn + " is null");
+				jdbcTemplate.execute("alter table pending_order drop column " + column);
+			}
+			jdbcTemplate.execute("alter table pending_order alter column " + ticksColumn + " rename to " + column);
+		}
+	}
+	
+	/**
+	 * Version 3, keyed and indexed, with the status of orders instead of deleting them.
+	 */
+	private void migrateToKeyedTable() {
+		jdbcTemplate.execute("alter table pending_order alter column instrument set data type varchar(12)");
+		jdbcTemplate.update("update pending_order set instrument=trim(instrument) where instrument <> trim(instrument)");
+		if (jdbcTemplate.queryForObject(SQL_SELECT_PRIMARY_KEY_COUNT, Integer.class) == 0) {
+			removeUnkeyableOrders();
+			jdbcTemplate.execute("alter table pending_order add primary key (order_id)");
+		}
+		addColumnIfMissing("STATUS", "varchar(9) default 'PENDING' not null");
+		addColumnIfMissing("CREATED_AT", "bigint");
+		addColumnIfMissing("UPDATED_AT", "bigint");
+		jdbcTemplate.update("update pending_order set created_at=unix_millis(), updated_at=unix_millis() where created_at is null");
+		createIndexIfMissing("PENDING_ORDER_INSTRUMENT_ACTION", SQL_CREATE_PENDING_ORDER[1]);
+		createIndexIfMissing("PENDING_ORDER_STATUS", SQL_CREATE_PENDING_ORDER[2]);
+	}
+	
+	/**
+	 * The original table had no key, orders without an id or sharing one would keep the primary key from
+	 * being added. One order of each shared id is kept.
+	 */
+	private void removeUnkeyableOrders() {
+		int withoutId = jdbcTemplate.update(SQL_DELETE_ORDERS_WITHOUT_ID);
+		if (withoutId > 0)
+			logger.warn("Deleted {} pending orders without an id", withoutId);
+		for (Long orderId : jdbcTemplate.queryForList(SQL_SELECT_DUPLICATE_ORDER_IDS, Long.class)) {
+			int count = jdbcTemplate.queryForObject(SQL_SELECT_ORDER_COUNT, Integer.class, orderId);
+			jdbcTemplate.update(SQL_DELETE_DUPLICATE_ORDERS, orderId, count - 1);
+			logger.warn("Deleted {} pending orders sharing id {} with the one kept", count - 1, orderId);
+		}
+	}
+	
+	private String getColumnType(String column) {
+		List<String> type = jdbcTemplate.queryForList(SQL_SELECT_COLUMN_TYPE, String.class, column);
+		return type.isEmpty() ? null : type.get(0);
+	}
+	
+	private void addColumnIfMissing(String column, String definition) {
+		if (getColumnType(column) == null)
+			jdbcTemplate.execute("alter table pending_order add column " + column + " " + definition);
+	}
+	
+	private void createIndexIfMissing(String index, String sqlCreateIndex) {
+		if (jdbcTemplate.queryForObject(SQL_SELECT_INDEX_COUNT, Integer.class, index) == 0)
+			jdbcTemplate.execute(sqlCreateIndex);
+	}
+
+	@Override
+	public void createOrder(Order order) {
+		jdbcTemplate.update(SQL_INSERT_ORDER, getOrderValues(order));
+	}
+	
+	@Override
+	@Transactional
+	public void createOrders(Collection<Order> orders) {
+		List<Object[]> batchValues = new ArrayList<>(orders.size());
+		for (Order order : orders)
+			batchValues.add(getOrderValues(order));
+		jdbcTemplate.batchUpdate(SQL_INSERT_ORDER, batchValues);
+	}
+	
+	@Override
+	public Collection<Order> getOrders() {
+		return jdbcTemplate.query(SQL_SELECT_PENDING_ORDERS, getOrderRowMapper());
+	}
+
+	@Override
+	public long getLastOrderId() {
+		return jdbcTemplate.queryForObject(SQL_SELECT_LAST_ORDER_ID, Long.class);
+	}
+
+	/**
+	 * Moves the order out of PENDING in a single conditional update, so of two nodes sharing the table
+	 * only one gets to do it.
+	 */
+	@Override
+	public boolean removeOrder(long orderId, OrderStatus status) {
+		return jdbcTemplate.update(SQL_REMOVE_ORDER, status.name(), orderId) >= 1;
+	}
+
+	@Override
+	public void updateStatus(long orderId, OrderStatus status) {
+		jdbcTemplate.update(SQL_UPDATE_STATUS, status.name(), orderId);
+	}
+	
+	private Object[] getOrderValues(Order order) {
+		return new Object[] {order.getOrderId(), order.getInstrument(), order.getAction().toString(), 
+				order.getUnits(), order.getStopEntryTicks(), order.getTargetProfitTicks(), order.getStopLossTicks(), 
+				order.getTriggerDistancePips()};
+	}
+	
+	private RowMapper<Order> getOrderRowMapper() {
+		return (ResultSet rs, int rowNum) -> {
+			Order order = new Order();
+			order.setOrderId(rs.getLong("order_id"));
+			order.setInstrument(rs.getString("instrument"));
+			order.setAction(OrderAction.valueOf(rs.getString("action")));
+			order.setUnits(rs.getInt("units"));
+			order.setStopEntryTicks(rs.getLong("stop_entry"));
+			order.setTargetProfitTicks(rs.getLong("target_profit"));
+			order.setStopLossTicks(rs.getLong("stop_loss"));
+			order.setTriggerDistancePips(rs.getInt("trigger_distance_pips"));
+			return order;
+		};
+	}
+
+}
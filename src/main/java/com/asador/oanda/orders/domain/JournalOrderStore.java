@@ -0,0 +1,437 @@
+package com.asador.oanda.orders.domain;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Keeps pending orders in a memory-mapped, append-only journal of fixed-size binary records. Creating an
+ * order appends an order record and removing it appends a tombstone, so neither touches the rest of the
+ * file. Every record ends with a CRC32 and the journal is replayed up to the first record that does not
+ * check out, which drops whatever a crash left half written. The journal is compacted into a new file
+ * once dead records outnumber the live ones.
+ */
+@Repository
+@ConditionalOnProperty(name = "oanda.orderStore", havingValue = "journal")
+public class JournalOrderStore implements OrderStore {
+	private final Logger logger = LoggerFactory.getLogger(JournalOrderStore.class);
+
+	private static final int MAGIC = 0x4F464A33;	// "OFJ3", instruments of up to 12 characters
+	private static final int SHORT_INSTRUMENT_MAGIC = 0x4F464A32;	// "OFJ2", prices in ticks
+	private static final int LEGACY_MAGIC = 0x4F464A31;	// "OFJ1", prices as doubles
+	private static final int HEADER_SIZE = 16;
+	/** The greatest order id ever written, kept in the header as compaction drops removed orders */
+	private static final int LAST_ORDER_ID_OFFSET = 8;
+	static final int RECORD_SIZE = 64;
+	private static final int CRC_OFFSET = RECORD_SIZE - 4;
+	/** As wide as the JDBC store column, CFD names such as SPX500_USD are longer than currency pairs */
+	private static final int INSTRUMENT_SIZE = 12;
+	private static final int LEGACY_INSTRUMENT_SIZE = 8;
+	private static final int INITIAL_CAPACITY = HEADER_SIZE + 4096 * RECORD_SIZE;
+
+	private static final byte EMPTY_RECORD = 0;
+	private static final byte ORDER_RECORD = 1;
+	private static final byte TOMBSTONE_RECORD = 2;
+
+	private final Path journalPath;
+	private final boolean syncOnWrite;
+
+	@Autowired(required = false)
+	private ScheduledExecutorService watcherScheduler;
+
+	@Value("${oanda.journal.compactionIntervalSeconds:300}")
+	private long compactionIntervalSeconds;
+
+	private FileChannel channel;
+	private MappedByteBuffer journal;
+	private int writePosition;
+	private int deadRecords;
+	private long lastOrderId;
+	/** Magic of the journal as opened, journals in an older format are rewritten when opened */
+	private int format;
+	/** File offsets of the live order records, in journal order */
+	private final Map<Long, Integer> liveRecordOffsets = new LinkedHashMap<>();
+
+	private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+	private final CRC32 crc = new CRC32();
+
+	@Autowired
+	public JournalOrderStore(@Value("${oanda.journal.path}") String journalPath,
+			@Value("${oanda.journal.syncOnWrite:false}") boolean syncOnWrite) {
+		this.journalPath = Paths.get(journalPath);
+		this.syncOnWrite = syncOnWrite;
+	}
+
+	@PostConstruct
+	protected synchronized void init() {
+		try {
+			if (journalPath.getParent() != null)
+				Files.createDirectories(journalPath.getParent());
+			// a compaction that did not get to replace the journal leaves its work file behind
+			Files.deleteIfExists(compactionPath());
+			open();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot open order journal " + journalPath, e);
+		}
+
+		if (watcherScheduler != null && compactionIntervalSeconds > 0)
+			watcherScheduler.scheduleWithFixedDelay(this::compactIfNeeded, compactionIntervalSeconds,
+					compactionIntervalSeconds, TimeUnit.SECONDS);
+	}
+
+	@PreDestroy
+	protected synchronized void close() {
+		try {
+			journal.force();
+			channel.close();
+		} catch (IOException e) {
+			logger.error("Failed to close order journal {}", journalPath, e);
+		}
+	}
+
+	@Override
+	public synchronized void createOrder(Order order) {
+		appendOrder(order);
+		if (syncOnWrite)
+			journal.force();
+	}
+
+	/**
+	 * Encodes the whole batch before writing any of it, so an order which does not fit a record fails
+	 * the batch up front. The first record of the batch is written last: replay stops at the first blank
+	 * record, so a batch cut short is not recovered.
+	 */
+	@Override
+	public synchronized void createOrders(Collection<Order> orders) {
+		byte[] batch = new byte[orders.size() * RECORD_SIZE];
+		int batchOffset = 0;
+		for (Order order : orders) {
+			seal(encodeOrder(order)).get(batch, batchOffset, RECORD_SIZE);
+			batchOffset += RECORD_SIZE;
+		}
+
+		ensureCapacity(batch.length);
+		try {
+			for (batchOffset -= RECORD_SIZE; batchOffset >= 0; batchOffset -= RECORD_SIZE) {
+				journal.position(writePosition + batchOffset);
+				journal.put(batch, batchOffset, RECORD_SIZE);
+			}
+		} catch (RuntimeException e) {
+			for (int i = writePosition; i < writePosition + batch.length; i++)
+				journal.put(i, (byte) 0);
+			throw e;
+		}
+
+		for (Order order : orders) {
+			liveRecordOffsets.put(order.getOrderId(), writePosition);
+			writePosition += RECORD_SIZE;
+			advanceLastOrderId(order.getOrderId());
+		}
+		if (syncOnWrite)
+			journal.force();
+	}
+
+	private void appendOrder(Order order) {
+		liveRecordOffsets.put(order.getOrderId(), append(encodeOrder(order)));
+		advanceLastOrderId(order.getOrderId());
+	}
+
+	private void advanceLastOrderId(long orderId) {
+		if (orderId > lastOrderId) {
+			lastOrderId = orderId;
+			journal.putLong(LAST_ORDER_ID_OFFSET, orderId);
+		}
+	}
+
+	private ByteBuffer encodeOrder(Order order) {
+		record.clear();
+		record.put(ORDER_RECORD);
+		record.putLong(order.getOrderId());
+		byte[] instrument = order.getInstrument().getBytes(StandardCharsets.US_ASCII);
+		if (instrument.length > INSTRUMENT_SIZE)
+			throw new IllegalArgumentException("Instrument " + order.getInstrument() + " does not fit the journal record");
+		record.put(instrument);
+		record.position(record.position() + INSTRUMENT_SIZE - instrument.length);
+		record.put((byte) order.getAction().ordinal());
+		record.putLong(order.getUnits());
+		record.putLong(order.getStopEntryTicks());
+		record.putLong(order.getTargetProfitTicks());
+		record.putLong(order.getStopLossTicks());
+		record.putInt(order.getTriggerDistancePips());
+		return record;
+	}
+
+	@Override
+	public synchronized Collection<Order> getOrders() {
+		List<Order> orders = new ArrayList<>(liveRecordOffsets.size());
+		for (int offset : liveRecordOffsets.values())
+			orders.add(readOrder(offset));
+		return orders;
+	}
+
+	@Override
+	public synchronized long getLastOrderId() {
+		return lastOrderId;
+	}
+
+	/**
+	 * Appends a tombstone whatever the status, the journal only keeps the pending orders.
+	 */
+	@Override
+	public synchronized boolean removeOrder(long orderId, OrderStatus status) {
+		if (liveRecordOffsets.remove(orderId) == null)
+			return false;
+
+		record.clear();
+		record.put(TOMBSTONE_RECORD);
+		record.putLong(orderId);
+		append(record);
+		if (syncOnWrite)
+			journal.force();
+		// the order record and its tombstone are both garbage now
+		deadRecords += 2;
+		return true;
+	}
+
+	@Override
+	public void updateStatus(long orderId, OrderStatus status) {
+		// removed orders are not kept
+	}
+
+	public void compactIfNeeded() {
+		try {
+			synchronized (this) {
+				if (deadRecords > liveRecordOffsets.size())
+					compact();
+			}
+		} catch (Exception e) {
+			logger.error("Order journal compaction failed", e);
+		}
+	}
+
+	/**
+	 * Copies the live order records to a new journal and swaps it in with an atomic rename, so a crash at
+	 * any point leaves either the old or the new journal in place. Records are written in the current
+	 * format, whatever the format of the journal being compacted.
+	 */
+	synchronized void compact() throws IOException {
+		int liveRecords = liveRecordOffsets.size();
+		Path compactionPath = compactionPath();
+		try (FileChannel compactionChannel = FileChannel.open(compactionPath, StandardOpenOption.CREATE_NEW,
+				StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			MappedByteBuffer compacted = compactionChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+					capacityFor(liveRecords));
+			writeHeader(compacted);
+			int position = HEADER_SIZE;
+			for (int offset : liveRecordOffsets.values()) {
+				compacted.position(position);
+				compacted.put(seal(encodeOrder(readOrder(offset))));
+				position += RECORD_SIZE;
+			}
+			compacted.force();
+		}
+
+		journal.force();
+		// some platforms do not replace a file which is still open or mapped
+		channel.close();
+		try {
+			replaceJournal(compactionPath);
+		} catch (IOException | RuntimeException e) {
+			// the old journal was not touched, keep on using it
+			Files.deleteIfExists(compactionPath);
+			map();
+			throw e;
+		}
+		logger.info("Compacted order journal {}, {} live orders kept, {} dead records dropped", journalPath,
+				liveRecords, deadRecords);
+
+		map();
+	}
+
+	/**
+	 * Swaps the compacted journal in.
+	 */
+	void replaceJournal(Path compactionPath) throws IOException {
+		Files.move(compactionPath, journalPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	synchronized long getJournalSize() throws IOException {
+		return channel.size();
+	}
+
+	private void open() throws IOException {
+		map();
+		if (format != MAGIC) {
+			logger.info("Rewriting order journal {} in the current format", journalPath);
+			compact();
+		}
+	}
+
+	private void map() throws IOException {
+		channel = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		long size = channel.size();
+		if (size > Integer.MAX_VALUE)
+			throw new IllegalStateException("Order journal " + journalPath + " is too large to be mapped");
+		journal = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, INITIAL_CAPACITY));
+		if (size == 0)
+			writeHeader(journal);
+		format = journal.getInt(0);
+		if ((format != MAGIC && format != SHORT_INSTRUMENT_MAGIC && format != LEGACY_MAGIC)
+				|| journal.getInt(4) != RECORD_SIZE)
+			throw new IllegalStateException(journalPath + " is not an order journal");
+
+		recover();
+	}
+
+	private void recover() {
+		liveRecordOffsets.clear();
+		deadRecords = 0;
+		// older formats have no high-water mark, their records are all there is
+		lastOrderId = format == MAGIC ? journal.getLong(LAST_ORDER_ID_OFFSET) : 0;
+		int position = HEADER_SIZE;
+		for (; position + RECORD_SIZE <= journal.capacity(); position += RECORD_SIZE) {
+			byte type = journal.get(position);
+			if (type == EMPTY_RECORD || !isChecksumValid(position))
+				break;
+
+			long orderId = journal.getLong(position + 1);
+			lastOrderId = Math.max(lastOrderId, orderId);
+			if (type == ORDER_RECORD) {
+				liveRecordOffsets.put(orderId, position);
+			} else if (liveRecordOffsets.remove(orderId) != null) {
+				deadRecords += 2;
+			} else {
+				deadRecords++;
+			}
+		}
+		writePosition = position;
+
+		// records past a torn one may have reached the disk out of order, they must not come back
+		// once new records are appended over the torn one
+		if (!isBlank(writePosition)) {
+			logger.warn("Order journal {} was not closed cleanly, discarding records after offset {}",
+					journalPath, writePosition);
+			for (int i = writePosition; i < journal.capacity(); i++)
+				journal.put(i, (byte) 0);
+			journal.force();
+		}
+	}
+
+	private int append(ByteBuffer record) {
+		seal(record);
+		ensureCapacity(RECORD_SIZE);
+		int offset = writePosition;
+		journal.position(offset);
+		journal.put(record);
+		writePosition += RECORD_SIZE;
+		return offset;
+	}
+
+	private ByteBuffer seal(ByteBuffer record) {
+		record.position(CRC_OFFSET);
+		crc.reset();
+		crc.update(record.array(), 0, CRC_OFFSET);
+		record.putInt((int) crc.getValue());
+		record.flip();
+		return record;
+	}
+
+	private void ensureCapacity(int length) {
+		long capacity = journal.capacity();
+		if (writePosition + length <= capacity)
+			return;
+		while (writePosition + length > capacity)
+			capacity *= 2;
+		if (capacity > Integer.MAX_VALUE)
+			throw new IllegalStateException("Order journal " + journalPath + " is too large to be mapped");
+		try {
+			journal.force();
+			journal = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot grow order journal " + journalPath, e);
+		}
+	}
+
+	private Order readOrder(int offset) {
+		Order order = new Order();
+		order.setOrderId(journal.getLong(offset + 1));
+		int instrumentSize = format == MAGIC ? INSTRUMENT_SIZE : LEGACY_INSTRUMENT_SIZE;
+		byte[] instrument = new byte[instrumentSize];
+		int length = 0;
+		for (; length < instrumentSize && journal.get(offset + 9 + length) != 0; length++)
+			instrument[length] = journal.get(offset + 9 + length);
+		order.setInstrument(new String(instrument, 0, length, StandardCharsets.US_ASCII));
+		// the fields after the instrument move with its size
+		int fields = offset + 9 + instrumentSize;
+		order.setAction(OrderAction.values()[journal.get(fields)]);
+		order.setUnits(journal.getLong(fields + 1));
+		if (format == LEGACY_MAGIC) {
+			order.setStopEntry(journal.getDouble(fields + 9));
+			order.setTargetProfit(journal.getDouble(fields + 17));
+			order.setStopLoss(journal.getDouble(fields + 25));
+		} else {
+			order.setStopEntryTicks(journal.getLong(fields + 9));
+			order.setTargetProfitTicks(journal.getLong(fields + 17));
+			order.setStopLossTicks(journal.getLong(fields + 25));
+		}
+		order.setTriggerDistancePips(journal.getInt(fields + 33));
+		return order;
+	}
+
+	private boolean isChecksumValid(int offset) {
+		byte[] bytes = new byte[CRC_OFFSET];
+		for (int i = 0; i < CRC_OFFSET; i++)
+			bytes[i] = journal.get(offset + i);
+		crc.reset();
+		crc.update(bytes, 0, CRC_OFFSET);
+		return (int) crc.getValue() == journal.getInt(offset + CRC_OFFSET);
+	}
+
+	private boolean isBlank(int offset) {
+		for (int i = offset; i < journal.capacity(); i++)
+			if (journal.get(i) != 0)
+				return false;
+		return true;
+	}
+
+	private void writeHeader(MappedByteBuffer buffer) {
+		buffer.putInt(0, MAGIC);
+		buffer.putInt(4, RECORD_SIZE);
+		buffer.putLong(LAST_ORDER_ID_OFFSET, lastOrderId);
+	}
+
+	private Path compactionPath() {
+		return journalPath.resolveSibling(journalPath.getFileName() + ".compact");
+	}
+
+	private static long capacityFor(int records) {
+		return Math.max(INITIAL_CAPACITY, HEADER_SIZE + 2L * records * RECORD_SIZE);
+	}
+}
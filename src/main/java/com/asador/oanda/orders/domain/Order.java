@@ -1,14 +1,18 @@
 package com.asador.oanda.orders.domain;
 
+import com.asador.oanda.pricing.Price;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 public class Order {
 
 	private long orderId;
 	private String instrument;
 	private OrderAction action;
 	private long units;
-	private double stopEntry;
-	private double targetProfit;
-	private double stopLoss;
+	/** Prices in {@link Price} ticks, the double accessors are for the REST API */
+	private long stopEntryTicks;
+	private long targetProfitTicks;
+	private long stopLossTicks;
 	private int triggerDistancePips;	//this must be a positive number
 	
 	public long getOrderId() {
@@ -36,22 +40,46 @@ public class Order {
 		this.units = units;
 	}
 	public double getStopEntry() {
-		return stopEntry;
+		return Price.toDouble(stopEntryTicks);
 	}
 	public void setStopEntry(double stopEntry) {
-		this.stopEntry = stopEntry;
+		this.stopEntryTicks = Price.toTicks(stopEntry);
+	}
+	@JsonIgnore
+	public long getStopEntryTicks() {
+		return stopEntryTicks;
+	}
+	@JsonIgnore
+	public void setStopEntryTicks(long stopEntryTicks) {
+		this.stopEntryTicks = stopEntryTicks;
 	}
 	public double getTargetProfit() {
-		return targetProfit;
+		return Price.toDouble(targetProfitTicks);
 	}
 	public void setTargetProfit(double targetProfit) {
-		this.targetProfit = targetProfit;
+		this.targetProfitTicks = Price.toTicks(targetProfit);
+	}
+	@JsonIgnore
+	public long getTargetProfitTicks() {
+		return targetProfitTicks;
+	}
+	@JsonIgnore
+	public void setTargetProfitTicks(long targetProfitTicks) {
+		this.targetProfitTicks = targetProfitTicks;
 	}
 	public double getStopLoss() {
-		return stopLoss;
+		return Price.toDouble(stopLossTicks);
 	}
 	public void setStopLoss(double stopLoss) {
-		this.stopLoss = stopLoss;
+		this.stopLossTicks = Price.toTicks(stopLoss);
+	}
+	@JsonIgnore
+	public long getStopLossTicks() {
+		return stopLossTicks;
+	}
+	@JsonIgnore
+	public void setStopLossTicks(long stopLossTicks) {
+		this.stopLossTicks = stopLossTicks;
 	}
 	public int getTriggerDistancePips() {
 		return triggerDistancePips;
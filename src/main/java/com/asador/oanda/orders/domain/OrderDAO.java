@@ -1,64 +1,215 @@
 package com.asador.oanda.orders.domain;
 
-import java.sql.ResultSet;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import javax.annotation.PostConstruct;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.dao.EmptyResultDataAccessException;
-import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
 
+/**
+ * Keeps the pending orders in memory and writes every change through to the {@link OrderStore}. The
+ * store is only read at startup, or on {@link #refresh()} when the store is shared. Orders are also
+ * indexed by instrument and action so looking for a similar order does not go through every pending
+ * order.
+ * <p>
+ * Every change bumps a version, so callers can tell whether the pending orders changed since they
+ * last looked without going through them.
+ */
 @Repository
 public class OrderDAO {
 	
-	private static final String SQL_INSERT_ORDER="insert into pending_order (order_id, instrument, action, units, stop_entry, target_profit, stop_loss, trigger_distance_pips) values (?,?,?,?,?,?,?,?)";
-	private static final String SQL_SELECT_ALL_ORDERS="select * from pending_order";
-	private static final String SQL_DELETE_ORDER="delete from pending_order where order_id=?";
-	private static final String SQL_SELECT_ORDER="select * from pending_order where order_id=?";
+	@Autowired
+	private OrderStore orderStore;
 	
 	@Autowired
-	private JdbcTemplate jdbcTemplate;
+	private OrderIdGenerator orderIdGenerator;
+	
+	/** Sorted by order id, which pages of pending orders are keyed on. Replaced as a whole on reload. */
+	private volatile ConcurrentSkipListMap<Long, Order> orders = new ConcurrentSkipListMap<>();
+	private volatile Map<OrderAction, Map<String, Set<Long>>> orderIdsByActionAndInstrument = newOrderIndex();
+	/** Tells this instance apart from others and from before a restart, where the version starts over */
+	private final String versionPrefix = Long.toHexString(System.currentTimeMillis()) + "-";
+	private final AtomicLong version = new AtomicLong();
+	
+	/**
+	 * Loads the pending orders into new maps and swaps them in, so readers which do not take the lock
+	 * see either the old or the new orders, never a half built cache.
+	 */
+	@PostConstruct
+	protected synchronized void init() {
+		// orders no longer pending keep their ids in the store
+		orderIdGenerator.advancePast(orderStore.getLastOrderId());
+		ConcurrentSkipListMap<Long, Order> loadedOrders = new ConcurrentSkipListMap<>();
+		Map<OrderAction, Map<String, Set<Long>>> loadedIndex = newOrderIndex();
+		for (Order order : orderStore.getOrders())
+			cacheOrder(loadedOrders, loadedIndex, order);
+		// the cluster reloads on every heartbeat, the version must only move when the orders did
+		if (loadedOrders.keySet().equals(orders.keySet()))
+			return;
+		
+		orders = loadedOrders;
+		orderIdsByActionAndInstrument = loadedIndex;
+		version.incrementAndGet();
+	}
+	
+	private static Map<OrderAction, Map<String, Set<Long>>> newOrderIndex() {
+		Map<OrderAction, Map<String, Set<Long>>> index = new EnumMap<>(OrderAction.class);
+		for (OrderAction action : OrderAction.values())
+			index.put(action, new HashMap<>());
+		return index;
+	}
 
-	public long createOrder(Order order) {
-		long orderId = System.nanoTime();
+	/**
+	 * Reloads the pending orders from the store, to see the orders other instances sharing the store
+	 * created or removed.
+	 */
+	public synchronized Collection<Order> refresh() {
+		init();
+		return getOrders();
+	}
+
+	public synchronized long createOrder(Order order) {
+		long orderId = orderIdGenerator.nextId();
 		order.setOrderId(orderId);
-		jdbcTemplate.update(SQL_INSERT_ORDER, order.getOrderId(), order.getInstrument(), order.getAction().toString(), 
-				order.getUnits(), order.getStopEntry(), order.getTargetProfit(), order.getStopLoss(), 
-				order.getTriggerDistancePips());
+		orderStore.createOrder(order);
+		cacheOrder(order);
+		version.incrementAndGet();
 		
 		return orderId;
 	}
 	
+	/**
+	 * Stores all the orders in one go, either all of them are created or none is.
+	 */
+	public synchronized void createOrders(List<Order> newOrders) {
+		for (Order order : newOrders)
+			order.setOrderId(orderIdGenerator.nextId());
+		orderStore.createOrders(newOrders);
+		for (Order order : newOrders)
+			cacheOrder(order);
+		version.incrementAndGet();
+	}
+	
+	/**
+	 * Creates the order unless an order of the same instrument and action is pending, checked and
+	 * created under the same lock so two similar orders cannot both get in.
+	 * 
+	 * @return the id of the new order, which is also set on it, or of the pending order it duplicates
+	 */
+	public synchronized long createOrderIfAbsent(Order order) {
+		Set<Long> orderIds = orderIdsByActionAndInstrument.get(order.getAction()).get(order.getInstrument());
+		if (orderIds != null && !orderIds.isEmpty())
+			return orderIds.iterator().next();
+		return createOrder(order);
+	}
+	
+	/**
+	 * Stores in one go the orders which duplicate neither a pending order nor an earlier order of the
+	 * batch, see {@link #createOrderIfAbsent(Order)}.
+	 * 
+	 * @return for each order, in batch order, the id of the new order or of the order it duplicates
+	 */
+	public synchronized List<Long> createOrdersIfAbsent(List<Order> newOrders) {
+		List<Order> absentOrders = new ArrayList<>(newOrders.size());
+		Map<String, Order> batchOrders = new HashMap<>();
+		for (Order order : newOrders) {
+			if (!hasOrder(order.getInstrument(), order.getAction()) &&
+					batchOrders.putIfAbsent(order.getAction() + " " + order.getInstrument(), order) == null)
+				absentOrders.add(order);
+		}
+		if (!absentOrders.isEmpty())
+			createOrders(absentOrders);
+		
+		List<Long> orderIds = new ArrayList<>(newOrders.size());
+		for (Order order : newOrders) {
+			Order batchOrder = batchOrders.get(order.getAction() + " " + order.getInstrument());
+			orderIds.add(batchOrder != null ? batchOrder.getOrderId() :
+					orderIdsByActionAndInstrument.get(order.getAction()).get(order.getInstrument()).iterator().next());
+		}
+		return orderIds;
+	}
+	
 	public Collection<Order> getOrders() {
-		return jdbcTemplate.query(SQL_SELECT_ALL_ORDERS, getOrderRowMapper());
+		return new ArrayList<>(orders.values());
+	}
+
+	/**
+	 * Lists pending orders in order id order without copying them, for callers writing them out as
+	 * they go. The view is weakly consistent, changes made while it is iterated may or may not show.
+	 * 
+	 * @param instrument only orders of this instrument, or all instruments if null
+	 * @param action only orders of this action, or both actions if null
+	 * @param afterOrderId only orders with a greater id, the last order id of the previous page
+	 * @param limit the most orders listed, or no limit if 0
+	 */
+	public Iterable<Order> getOrders(String instrument, OrderAction action, long afterOrderId, int limit) {
+		ConcurrentSkipListMap<Long, Order> orders = this.orders;
+		return () -> {
+			Stream<Order> page = orders.tailMap(afterOrderId, false).values().stream()
+					.filter(order -> instrument == null || instrument.equals(order.getInstrument()))
+					.filter(order -> action == null || action == order.getAction());
+			return (limit > 0 ? page.limit(limit) : page).iterator();
+		};
+	}
+
+	/**
+	 * Changes whenever an order is created or removed. Read it before the orders it stands for, as it
+	 * is only bumped once a change can be seen.
+	 */
+	public String getVersion() {
+		return versionPrefix + version.get();
 	}
 
 	public Order getOrder(long orderId) {
-		try {
-			return jdbcTemplate.queryForObject(SQL_SELECT_ORDER, getOrderRowMapper(), orderId);
-		} catch (EmptyResultDataAccessException e) {
-			return null;
+		return orders.get(orderId);
+	}
+	
+	public synchronized boolean hasOrder(String instrument, OrderAction action) {
+		Set<Long> orderIds = orderIdsByActionAndInstrument.get(action).get(instrument);
+		return orderIds != null && !orderIds.isEmpty();
+	}
+
+	/**
+	 * Takes an order out of the pending orders, see {@link OrderStore#removeOrder(long, OrderStatus)}.
+	 */
+	public synchronized boolean removeOrder(long orderId, OrderStatus status) {
+		boolean removed = orderStore.removeOrder(orderId, status);
+		Order order = orders.remove(orderId);
+		if (order != null) {
+			Map<String, Set<Long>> orderIdsByInstrument = orderIdsByActionAndInstrument.get(order.getAction());
+			Set<Long> orderIds = orderIdsByInstrument.get(order.getInstrument());
+			orderIds.remove(orderId);
+			if (orderIds.isEmpty())
+				orderIdsByInstrument.remove(order.getInstrument());
+			version.incrementAndGet();
 		}
+		return removed;
 	}
 
-	public boolean removeOrder(long orderId) {
-		return jdbcTemplate.update(SQL_DELETE_ORDER, orderId) >= 1;
+	public void updateStatus(long orderId, OrderStatus status) {
+		orderStore.updateStatus(orderId, status);
 	}
 	
-	private RowMapper<Order> getOrderRowMapper() {
-		return (ResultSet rs, int rowNum) -> {
-			Order order = new Order();
-			order.setOrderId(rs.getLong("order_id"));
-			order.setInstrument(rs.getString("instrument"));
-			order.setAction(OrderAction.valueOf(rs.getString("action")));
-			order.setUnits(rs.getInt("units"));
-			order.setStopEntry(rs.getDouble("stop_entry"));
-			order.setTargetProfit(rs.getDouble("target_profit"));
-			order.setStopLoss(rs.getDouble("stop_loss"));
-			order.setTriggerDistancePips(rs.getInt("trigger_distance_pips"));
-			return order;
-		};
+	private void cacheOrder(Order order) {
+		cacheOrder(orders, orderIdsByActionAndInstrument, order);
+	}
+	
+	private static void cacheOrder(Map<Long, Order> orders, Map<OrderAction, Map<String, Set<Long>>> index, Order order) {
+		orders.put(order.getOrderId(), order);
+		index.get(order.getAction())
+				.computeIfAbsent(order.getInstrument(), instrument -> new HashSet<>())
+				.add(order.getOrderId());
 	}
 
 }
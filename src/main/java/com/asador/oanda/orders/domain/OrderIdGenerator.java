@@ -0,0 +1,60 @@
+package com.asador.oanda.orders.domain;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hands out time-ordered order ids made of the milliseconds since 2018-01-01 (41 bits), the node id
+ * (10 bits) and a sequence within the millisecond (12 bits), so instances with different node ids never
+ * collide. The last timestamp and sequence are advanced with a compare-and-set. When the sequence of a
+ * millisecond is used up, or the clock goes backwards, ids carry on from the last timestamp instead of
+ * waiting for the clock, which keeps them unique and increasing.
+ */
+@Component
+public class OrderIdGenerator {
+
+	static final long EPOCH = 1514764800000L;	// 2018-01-01T00:00:00Z
+	private static final int NODE_BITS = 10;
+	private static final int SEQUENCE_BITS = 12;
+	static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+
+	private final long nodeId;
+	private final LongSupplier clock;
+	/** Last timestamp handed out, shifted left by the sequence bits, plus the last sequence */
+	private final AtomicLong lastTimeAndSequence = new AtomicLong();
+
+	@Autowired
+	public OrderIdGenerator(@Value("${oanda.nodeId:0}") int nodeId) {
+		this(nodeId, System::currentTimeMillis);
+	}
+
+	OrderIdGenerator(int nodeId, LongSupplier clock) {
+		if (nodeId < 0 || nodeId > MAX_NODE_ID)
+			throw new IllegalArgumentException("Node id must be between 0 and " + MAX_NODE_ID);
+		this.nodeId = nodeId;
+		this.clock = clock;
+	}
+
+	public long nextId() {
+		long now = (clock.getAsLong() - EPOCH) << SEQUENCE_BITS;
+		long timeAndSequence = lastTimeAndSequence.updateAndGet(last -> Math.max(now, last + 1));
+		long timestamp = timeAndSequence >>> SEQUENCE_BITS;
+		long sequence = timeAndSequence & ((1 << SEQUENCE_BITS) - 1);
+		return (timestamp << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | sequence;
+	}
+
+	/**
+	 * Makes sure the next ids are greater than an id handed out before, e.g. by a previous run whose
+	 * clock was ahead of this one.
+	 */
+	public void advancePast(long orderId) {
+		long timestamp = orderId >>> (NODE_BITS + SEQUENCE_BITS);
+		long sequence = orderId & ((1 << SEQUENCE_BITS) - 1);
+		long timeAndSequence = (timestamp << SEQUENCE_BITS) | sequence;
+		lastTimeAndSequence.accumulateAndGet(timeAndSequence, Math::max);
+	}
+}
@@ -0,0 +1,9 @@
+package com.asador.oanda.orders.domain;
+
+/**
+ * Where an order is in its life. Only PENDING orders are watched, a triggered order ends up PLACED or
+ * FAILED once the placement is done.
+ */
+public enum OrderStatus {
+	PENDING, TRIGGERED, PLACED, CANCELLED, FAILED;
+}
@@ -0,0 +1,41 @@
+package com.asador.oanda.orders.domain;
+
+import java.util.Collection;
+
+/**
+ * Durable storage of pending orders sitting behind {@link OrderDAO}.
+ */
+public interface OrderStore {
+
+	void createOrder(Order order);
+
+	/**
+	 * Stores all the orders or none of them.
+	 */
+	void createOrders(Collection<Order> orders);
+
+	/**
+	 * @return the orders still PENDING
+	 */
+	Collection<Order> getOrders();
+
+	/**
+	 * @return the greatest id of the orders kept, pending or not, 0 if there are none
+	 */
+	long getLastOrderId();
+
+	/**
+	 * Ends the pending state of an order. Only one caller can do it for a given order, which makes it
+	 * the way to claim an order.
+	 *
+	 * @param status what became of the order, anything but PENDING
+	 * @return false if the order was not pending
+	 */
+	boolean removeOrder(long orderId, OrderStatus status);
+
+	/**
+	 * Records the outcome of an order no longer pending, such as the placement of a TRIGGERED order.
+	 * Stores which do not keep the history of orders ignore it.
+	 */
+	void updateStatus(long orderId, OrderStatus status);
+}
@@ -0,0 +1,140 @@
+package com.asador.oanda.pricing;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.asador.oanda.api.OandaApiGuard;
+import com.oanda.v20.Context;
+import com.oanda.v20.instrument.CandlestickGranularity;
+import com.oanda.v20.instrument.InstrumentCandlesRequest;
+import com.oanda.v20.instrument.InstrumentCandlesResponse;
+import com.oanda.v20.primitives.InstrumentName;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Polls the most recent M1 mid candle once a second, with a single scheduled poll per instrument that
+ * fans each price out to every listener of that instrument. The poll is cancelled once the last
+ * listener unsubscribes, and skipped while {@link OandaApiGuard} has paused the instrument.
+ * <p>
+ * A failed poll is not retried on the spot, the scheduler threads are shared by every instrument. The
+ * next poll a second later is the retry, and the circuit breakers back off from longer outages.
+ */
+@Component
+@ConditionalOnProperty(name = "oanda.priceSource", havingValue = "polling", matchIfMissing = true)
+public class PollingPriceFeed implements PriceFeed {
+	private final Logger logger = LoggerFactory.getLogger(PollingPriceFeed.class);
+
+	@Autowired
+	private Context oandaCtx;
+
+	@Autowired
+	private ScheduledExecutorService watcherScheduler;
+
+	@Autowired
+	private OandaApiGuard apiGuard;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	private Map<String, InstrumentPoller> pollers = new HashMap<>();
+	private Counter retryCounter;
+
+	@PostConstruct
+	public void init() {
+		retryCounter = meterRegistry.counter("oanda.api.retries");
+	}
+
+	@Override
+	public synchronized void subscribe(String instrument, PriceListener listener) {
+		InstrumentPoller poller = pollers.get(instrument);
+		if (poller == null) {
+			poller = new InstrumentPoller(instrument);
+			pollers.put(instrument, poller);
+			poller.schedule = watcherScheduler.scheduleWithFixedDelay(poller, 0, 1, TimeUnit.SECONDS);
+			logger.info("Started polling {} price", instrument);
+		}
+		poller.listeners.add(listener);
+	}
+
+	@Override
+	public synchronized void unsubscribe(String instrument, PriceListener listener) {
+		InstrumentPoller poller = pollers.get(instrument);
+		if (poller != null) {
+			poller.listeners.remove(listener);
+			if (poller.listeners.isEmpty()) {
+				pollers.remove(instrument);
+				poller.schedule.cancel(false);
+				logger.info("Stopped polling {} price as no order is watching it", instrument);
+			}
+		}
+	}
+
+	private synchronized boolean isPollingRequired(InstrumentPoller poller) {
+		return pollers.get(poller.instrument) == poller;
+	}
+
+	private class InstrumentPoller implements Runnable {
+		private final String instrument;
+		private final Set<PriceListener> listeners = new CopyOnWriteArraySet<>();
+		private final InstrumentCandlesRequest request;
+		private final Timer fetchTimer;
+		private ScheduledFuture<?> schedule;
+
+		InstrumentPoller(String instrument) {
+			this.instrument = instrument;
+			request = new InstrumentCandlesRequest(new InstrumentName(instrument));
+			request.setCount(1L);
+			request.setPrice("M");
+			request.setGranularity(CandlestickGranularity.M1);
+			fetchTimer = Timer.builder("oanda.price.fetch").tag("instrument", instrument)
+					.description("OANDA candle request latency, per attempt")
+					.publishPercentileHistogram()
+					.register(meterRegistry);
+		}
+
+		@Override
+		public void run() {
+			if (!isPollingRequired(this) || !apiGuard.isPricingAllowed(instrument))
+				return;
+
+			try {
+				apiGuard.acquirePricingPermit();
+				InstrumentCandlesResponse response;
+				long fetchStart = System.nanoTime();
+				try {
+					response = oandaCtx.instrument.candles(request);
+				} finally {
+					fetchTimer.record(System.nanoTime() - fetchStart, TimeUnit.NANOSECONDS);
+				}
+				apiGuard.recordSuccess(instrument);
+				double price = response.getCandles().get(0).getMid().getC().doubleValue();
+				for (PriceListener listener : listeners)
+					listener.onPrice(instrument, price);
+			} catch (Exception e) {
+				apiGuard.recordFailure(instrument, e);
+				// a scheduled task which throws is never run again
+				if (OandaApiGuard.isTransientFailure(e)) {
+					retryCounter.increment();
+					logger.warn("Failed to get {} price, polling it again in a second: {}", instrument, e.toString());
+				} else
+					logger.error("Failed to get " + instrument + " price", e);
+			}
+		}
+	}
+}
@@ -0,0 +1,28 @@
+package com.asador.oanda.pricing;
+
+import java.math.BigDecimal;
+
+/**
+ * Prices are held as a whole number of ticks of a millionth, finer than any OANDA instrument is
+ * quoted, so every valid price is exact and comparing or offsetting prices is plain long arithmetic.
+ */
+public final class Price {
+
+	public static final int DECIMALS = 6;
+	public static final long TICKS_PER_UNIT = 1_000_000L;
+
+	private Price() {
+	}
+
+	public static long toTicks(double price) {
+		return Math.round(price * TICKS_PER_UNIT);
+	}
+
+	public static double toDouble(long ticks) {
+		return (double) ticks / TICKS_PER_UNIT;
+	}
+
+	public static BigDecimal toDecimal(long ticks) {
+		return BigDecimal.valueOf(ticks, DECIMALS).stripTrailingZeros();
+	}
+}
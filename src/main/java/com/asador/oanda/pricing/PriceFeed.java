@@ -0,0 +1,12 @@
+package com.asador.oanda.pricing;
+
+/**
+ * Source of instrument prices shared by all pending orders. Only one price subscription is kept
+ * per instrument no matter how many listeners are attached to it.
+ */
+public interface PriceFeed {
+
+	void subscribe(String instrument, PriceListener listener);
+
+	void unsubscribe(String instrument, PriceListener listener);
+}
@@ -0,0 +1,6 @@
+package com.asador.oanda.pricing;
+
+public interface PriceListener {
+
+	void onPrice(String instrument, double price);
+}
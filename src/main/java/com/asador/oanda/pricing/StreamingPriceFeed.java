@@ -0,0 +1,217 @@
+package com.asador.oanda.pricing;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Pushes prices from the OANDA v20 pricing stream endpoint. A single connection streams every
+ * subscribed instrument and is re-opened whenever a new instrument is subscribed, the server closes
+ * it or no price nor heartbeat arrives within the heartbeat timeout.
+ */
+@Component
+@ConditionalOnProperty(name = "oanda.priceSource", havingValue = "streaming")
+public class StreamingPriceFeed implements PriceFeed {
+	private final Logger logger = LoggerFactory.getLogger(StreamingPriceFeed.class);
+
+	private static final int MAX_RECONNECT_DELAY_SECONDS = 30;
+
+	private final String streamEndpoint;
+	private final String accountId;
+	private final String accessToken;
+	private final int heartbeatTimeoutSeconds;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final ExecutorService executor;
+	private final Map<String, Set<PriceListener>> listeners = new ConcurrentHashMap<>();
+
+	private boolean streaming;
+	private volatile Set<String> streamedInstruments = Collections.emptySet();
+	private volatile boolean resubscribeRequired;
+	private volatile HttpURLConnection connection;
+
+	@Autowired
+	public StreamingPriceFeed(@Value("${oanda.streamEndpoint}") String streamEndpoint,
+			@Value("${oanda.accountId}") String accountId,
+			@Value("${oanda.accessToken}") String accessToken,
+			@Value("${oanda.stream.heartbeatTimeoutSeconds:10}") int heartbeatTimeoutSeconds) {
+		this.streamEndpoint = streamEndpoint;
+		this.accountId = accountId;
+		this.accessToken = accessToken;
+		this.heartbeatTimeoutSeconds = heartbeatTimeoutSeconds;
+
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("price-stream-");
+		threadFactory.setDaemon(true);
+		executor = Executors.newSingleThreadExecutor(threadFactory);
+	}
+
+	@Override
+	public synchronized void subscribe(String instrument, PriceListener listener) {
+		listeners.computeIfAbsent(instrument, key -> new CopyOnWriteArraySet<>()).add(listener);
+		if (!streaming) {
+			streaming = true;
+			executor.execute(this::streamPrices);
+		} else if (!streamedInstruments.contains(instrument)) {
+			resubscribe();
+		}
+	}
+
+	@Override
+	public synchronized void unsubscribe(String instrument, PriceListener listener) {
+		Set<PriceListener> instrumentListeners = listeners.get(instrument);
+		if (instrumentListeners != null) {
+			instrumentListeners.remove(listener);
+			if (instrumentListeners.isEmpty())
+				listeners.remove(instrument);
+		}
+		if (listeners.isEmpty())
+			resubscribe();
+	}
+
+	private synchronized boolean isStreamingRequired() {
+		if (listeners.isEmpty()) {
+			streaming = false;
+			return false;
+		}
+		return true;
+	}
+
+	private void resubscribe() {
+		resubscribeRequired = true;
+		HttpURLConnection currentConnection = connection;
+		if (currentConnection != null)
+			currentConnection.disconnect();
+	}
+
+	/**
+	 * Stops streaming for good, the connection is dropped as reading it does not respond to interrupts.
+	 */
+	@PreDestroy
+	protected void shutdown() {
+		executor.shutdownNow();
+		HttpURLConnection currentConnection = connection;
+		if (currentConnection != null)
+			currentConnection.disconnect();
+	}
+
+	private void streamPrices() {
+		int reconnectDelay = 1;
+		while (isStreamingRequired()) {
+			if (Thread.currentThread().isInterrupted()) {
+				logger.info("Stopped {} price stream on shutdown", streamedInstruments);
+				return;
+			}
+			try {
+				openStream();
+				reconnectDelay = 1;
+			} catch (IOException | RuntimeException e) {
+				if (resubscribeRequired || !isStreamingRequired())
+					continue;
+				logger.warn("Price stream for {} failed, reconnecting in {} seconds", streamedInstruments,
+						reconnectDelay, e);
+				if (!delay(reconnectDelay))
+					continue;
+				reconnectDelay = Math.min(reconnectDelay * 2, MAX_RECONNECT_DELAY_SECONDS);
+			}
+		}
+		streamedInstruments = Collections.emptySet();
+		logger.info("Stopped price stream as no order is watching any instrument");
+	}
+
+	private void openStream() throws IOException {
+		resubscribeRequired = false;
+		Set<String> instruments = new TreeSet<>(listeners.keySet());
+		if (instruments.isEmpty())
+			return;
+		streamedInstruments = instruments;
+
+		URL url = new URL(streamEndpoint + "/v3/accounts/" + accountId + "/pricing/stream?instruments=" +
+				String.join(",", instruments));
+		HttpURLConnection streamConnection = (HttpURLConnection) url.openConnection();
+		streamConnection.setRequestProperty("Authorization", "Bearer " + accessToken);
+		streamConnection.setConnectTimeout(heartbeatTimeoutSeconds * 1000);
+		streamConnection.setReadTimeout(heartbeatTimeoutSeconds * 1000);
+		connection = streamConnection;
+
+		try {
+			// shutdown may have missed the connection
+			if (resubscribeRequired || Thread.currentThread().isInterrupted())
+				return;
+			if (streamConnection.getResponseCode() != HttpURLConnection.HTTP_OK)
+				throw new IOException("Price stream responded with HTTP " + streamConnection.getResponseCode());
+
+			logger.info("Started streaming {} prices", instruments);
+			try (BufferedReader reader = new BufferedReader(
+					new InputStreamReader(streamConnection.getInputStream(), StandardCharsets.UTF_8))) {
+				String line;
+				while (!resubscribeRequired && (line = reader.readLine()) != null) {
+					if (!line.isEmpty())
+						handleMessage(line);
+				}
+			}
+			if (!resubscribeRequired)
+				throw new IOException("Price stream closed by server");
+		} finally {
+			connection = null;
+			streamConnection.disconnect();
+		}
+	}
+
+	void handleMessage(String message) throws IOException {
+		JsonNode node = objectMapper.readTree(message);
+		String type = node.path("type").asText();
+		if ("HEARTBEAT".equals(type)) {
+			logger.debug("Price stream heartbeat at {}", node.path("time").asText());
+		} else if ("PRICE".equals(type)) {
+			JsonNode bids = node.path("bids");
+			JsonNode asks = node.path("asks");
+			if (bids.size() == 0 || asks.size() == 0)
+				return;
+
+			String instrument = node.path("instrument").asText();
+			double price = (bids.get(0).path("price").asDouble() + asks.get(0).path("price").asDouble()) / 2;
+			Set<PriceListener> instrumentListeners = listeners.get(instrument);
+			if (instrumentListeners != null) {
+				for (PriceListener listener : instrumentListeners)
+					listener.onPrice(instrument, price);
+			}
+		}
+	}
+
+	/**
+	 * @return false if interrupted, with the interrupt flag kept for the stream loop to stop
+	 */
+	private boolean delay(int seconds) {
+		try {
+			Thread.sleep(seconds * 1000L);
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+}
@@ -1,9 +1,8 @@
-CREATE TABLE IF NOT EXISTS PENDING_ORDER ( ORDER_ID BIGINT,
-	INSTRUMENT CHAR(7),
-	ACTION VARCHAR(5),
-	UNITS INTEGER,
-	STOP_ENTRY FLOAT,
-	TARGET_PROFIT FLOAT,
-	STOP_LOSS FLOAT,
-	TRIGGER_DISTANCE_PIPS TINYINT );
-	
\ No newline at end of file
+-- PENDING_ORDER is created and migrated by JdbcOrderStore
+
+CREATE TABLE IF NOT EXISTS CLUSTER_NODE ( NODE_ID INTEGER PRIMARY KEY,
+	HEARTBEAT_AT BIGINT );
+
+CREATE TABLE IF NOT EXISTS PARTITION_LEASE ( PARTITION_ID INTEGER PRIMARY KEY,
+	OWNER INTEGER,
+	EXPIRES_AT BIGINT );
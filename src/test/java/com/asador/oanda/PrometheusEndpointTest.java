@@ -0,0 +1,33 @@
+package com.asador.oanda;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+public class PrometheusEndpointTest {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Test
+	public void prometheus_ShouldExposeOrderWatchMetrics() throws Exception {
+		mockMvc.perform(get("/actuator/prometheus"))
+				.andExpect(status().isOk())
+				.andExpect(content().string(containsString("oanda_orders_watched")))
+				.andExpect(content().string(containsString("oanda_placement_queue_depth")))
+				.andExpect(content().string(containsString("oanda_order_trigger_to_created_seconds")))
+				.andExpect(content().string(containsString("oanda_api_retries_total")));
+	}
+}
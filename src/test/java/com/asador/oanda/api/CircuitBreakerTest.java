@@ -0,0 +1,79 @@
+package com.asador.oanda.api;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.asador.oanda.api.CircuitBreaker.State;
+
+public class CircuitBreakerTest {
+
+	private AtomicLong clock = new AtomicLong();
+	private CircuitBreaker breaker = new CircuitBreaker(3, 1000, 8000, clock::get);
+
+	private void advanceMillis(long millis) {
+		clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+	}
+
+	@Test
+	public void recordFailure_WhenBelowThreshold_ShouldStayClosed() {
+		breaker.recordFailure();
+		breaker.recordFailure();
+
+		Assert.assertEquals(State.CLOSED, breaker.getState());
+		Assert.assertTrue(breaker.allowRequest());
+	}
+
+	@Test
+	public void recordFailure_WhenThresholdReached_ShouldRejectRequestsDuringPause() {
+		for (int i = 0; i < 3; i++)
+			breaker.recordFailure();
+
+		Assert.assertEquals(State.OPEN, breaker.getState());
+		Assert.assertFalse(breaker.allowRequest());
+		advanceMillis(400);
+		Assert.assertFalse("Pause must last at least half of its length", breaker.allowRequest());
+	}
+
+	@Test
+	public void allowRequest_WhenPauseOver_ShouldLetSingleProbeThrough() {
+		for (int i = 0; i < 3; i++)
+			breaker.recordFailure();
+		advanceMillis(1000);
+
+		Assert.assertTrue(breaker.allowRequest());
+		Assert.assertEquals(State.HALF_OPEN, breaker.getState());
+		Assert.assertFalse("Only one probe at a time", breaker.allowRequest());
+
+		breaker.recordSuccess();
+		Assert.assertEquals(State.CLOSED, breaker.getState());
+		Assert.assertTrue(breaker.allowRequest());
+	}
+
+	@Test
+	public void recordFailure_WhenProbeFails_ShouldPauseLonger() {
+		for (int i = 0; i < 3; i++)
+			breaker.recordFailure();
+		advanceMillis(1000);
+		breaker.allowRequest();
+
+		breaker.recordFailure();
+
+		Assert.assertEquals(State.OPEN, breaker.getState());
+		advanceMillis(999);
+		Assert.assertFalse("Second pause must be between 1 and 2 seconds", breaker.allowRequest());
+		advanceMillis(1001);
+		Assert.assertTrue(breaker.allowRequest());
+	}
+
+	@Test
+	public void recordFailure_WhenProbesKeepFailing_ShouldNotPauseLongerThanMaximum() {
+		for (int i = 0; i < 20; i++) {
+			breaker.recordFailure();
+			advanceMillis(8000);
+			Assert.assertTrue(breaker.allowRequest());
+		}
+	}
+}
@@ -0,0 +1,48 @@
+package com.asador.oanda.api;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.asador.oanda.api.CircuitBreaker.State;
+import com.oanda.v20.ExecuteException;
+import com.oanda.v20.RequestException;
+
+public class OandaApiGuardTest {
+
+	private AtomicLong clock = new AtomicLong();
+	private OandaApiGuard apiGuard = new OandaApiGuard(20, 5, 1, 1, 1, clock::get);
+
+	private void advanceMillis(long millis) {
+		clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+	}
+
+	@Test
+	public void isPricingAllowed_WhenAccountPausedAndInstrumentReadyToProbe_ShouldKeepTheInstrumentProbe() {
+		apiGuard.recordFailure("EUR_USD", new RequestException(400) {});
+		advanceMillis(1000);
+		apiGuard.recordFailure(null, new ExecuteException(new Exception("Unit test connection failure")));
+
+		Assert.assertFalse(apiGuard.isPricingAllowed("EUR_USD"));
+		Assert.assertEquals("Instrument probe must not be spent while the account is paused",
+				State.OPEN, apiGuard.getInstrumentStates().get("EUR_USD"));
+
+		advanceMillis(1000);
+		Assert.assertTrue(apiGuard.isPricingAllowed("EUR_USD"));
+		Assert.assertEquals(State.HALF_OPEN, apiGuard.getAccountState());
+		Assert.assertEquals(State.HALF_OPEN, apiGuard.getInstrumentStates().get("EUR_USD"));
+	}
+
+	@Test
+	public void isPricingAllowed_WhenInstrumentPaused_ShouldKeepTheAccountProbe() {
+		apiGuard.recordFailure(null, new ExecuteException(new Exception("Unit test connection failure")));
+		advanceMillis(1000);
+		apiGuard.recordFailure("EUR_USD", new RequestException(400) {});
+
+		Assert.assertFalse(apiGuard.isPricingAllowed("EUR_USD"));
+		Assert.assertEquals(State.OPEN, apiGuard.getAccountState());
+		Assert.assertTrue("Other instruments must still get the account probe", apiGuard.isPricingAllowed("GBP_USD"));
+	}
+}
@@ -0,0 +1,44 @@
+package com.asador.oanda.api;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TokenBucketTest {
+
+	private AtomicLong clock = new AtomicLong();
+
+	@Test
+	public void reserve_WhenBucketFull_ShouldServeBurstWithoutWaiting() {
+		TokenBucket bucket = new TokenBucket(5, clock::get);
+
+		for (int i = 0; i < 5; i++)
+			Assert.assertEquals(0, bucket.reserve());
+	}
+
+	@Test
+	public void reserve_WhenBucketEmpty_ShouldMakeCallersWaitInTurn() {
+		TokenBucket bucket = new TokenBucket(10, clock::get);
+		for (int i = 0; i < 10; i++)
+			bucket.reserve();
+
+		Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(100), bucket.reserve());
+		Assert.assertEquals("Next caller must wait for the token after the reserved one",
+				TimeUnit.MILLISECONDS.toNanos(200), bucket.reserve());
+	}
+
+	@Test
+	public void reserve_WhenTimePassed_ShouldRefillUpToCapacity() {
+		TokenBucket bucket = new TokenBucket(10, clock::get);
+		for (int i = 0; i < 10; i++)
+			bucket.reserve();
+
+		clock.addAndGet(TimeUnit.SECONDS.toNanos(60));
+
+		for (int i = 0; i < 10; i++)
+			Assert.assertEquals(0, bucket.reserve());
+		Assert.assertTrue("Tokens must not pile up beyond capacity", bucket.reserve() > 0);
+	}
+}
@@ -0,0 +1,124 @@
+package com.asador.oanda.cluster;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+/**
+ * Two nodes sharing one in-memory database, with heartbeats driven by the tests.
+ */
+public class ClusterCoordinatorTest {
+
+	private static final int PARTITIONS = 16;
+	private static final long LEASE_MILLIS = 300;
+	private static final String[] INSTRUMENTS = {"EUR_USD", "GBP_USD", "USD_CAD", "USD_CHF", "AUD_USD",
+			"NZD_USD", "EUR_GBP", "EUR_CHF", "USD_JPY", "EUR_JPY", "XAU_USD", "XAG_USD"};
+
+	private JdbcTemplate jdbcTemplate;
+
+	@Before
+	public void setup() {
+		DriverManagerDataSource dataSource = new DriverManagerDataSource(
+				"jdbc:hsqldb:mem:cluster" + System.nanoTime(), "sa", "");
+		new ResourceDatabasePopulator(new ClassPathResource("schema-hsqldb.sql")).execute(dataSource);
+		jdbcTemplate = new JdbcTemplate(dataSource);
+	}
+
+	private ClusterCoordinator createNode(int nodeId) {
+		return new ClusterCoordinator(jdbcTemplate, true, "jdbc", nodeId, PARTITIONS, 100, LEASE_MILLIS);
+	}
+
+	private void assertEveryInstrumentOwnedOnce(ClusterCoordinator... nodes) {
+		for (String instrument : INSTRUMENTS) {
+			int owners = 0;
+			for (ClusterCoordinator node : nodes) {
+				if (node.ownsInstrument(instrument))
+					owners++;
+			}
+			Assert.assertEquals(instrument + " must be owned by exactly one node", 1, owners);
+		}
+	}
+
+	@Test
+	public void ownsInstrument_WhenClusteringDisabled_ShouldOwnEveryInstrument() {
+		ClusterCoordinator node = new ClusterCoordinator(jdbcTemplate, false, "journal", 0, PARTITIONS, 100, LEASE_MILLIS);
+
+		for (String instrument : INSTRUMENTS)
+			Assert.assertTrue(node.ownsInstrument(instrument));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void constructor_WhenClusteringWithJournalStore_ShouldThrowException() {
+		new ClusterCoordinator(jdbcTemplate, true, "journal", 0, PARTITIONS, 100, LEASE_MILLIS);
+	}
+
+	@Test
+	public void join_WhenSingleNode_ShouldOwnEveryPartition() {
+		ClusterCoordinator node = createNode(1);
+
+		node.join();
+
+		Assert.assertEquals(PARTITIONS, node.getOwnedPartitions().size());
+		assertEveryInstrumentOwnedOnce(node);
+	}
+
+	@Test
+	public void heartbeat_WhenNodeJoins_ShouldSplitPartitionsEvenly() {
+		ClusterCoordinator first = createNode(1);
+		ClusterCoordinator second = createNode(2);
+		first.join();
+
+		second.join();
+		first.heartbeat();
+		second.heartbeat();
+
+		Assert.assertEquals(PARTITIONS / 2, first.getOwnedPartitions().size());
+		Assert.assertEquals(PARTITIONS / 2, second.getOwnedPartitions().size());
+		Set<Integer> owned = new HashSet<>(first.getOwnedPartitions());
+		owned.addAll(second.getOwnedPartitions());
+		Assert.assertEquals("Partitions must not be owned twice", PARTITIONS, owned.size());
+		assertEveryInstrumentOwnedOnce(first, second);
+	}
+
+	@Test
+	public void heartbeat_WhenNodeStopsHeartbeating_ShouldMovePartitionsOnceLeasesExpire() throws Exception {
+		ClusterCoordinator first = createNode(1);
+		ClusterCoordinator second = createNode(2);
+		first.join();
+		second.join();
+		first.heartbeat();
+		second.heartbeat();
+
+		first.heartbeat();
+		Assert.assertEquals("Live leases must not move", PARTITIONS / 2, first.getOwnedPartitions().size());
+
+		Thread.sleep(LEASE_MILLIS + 50);
+		first.heartbeat();
+
+		Assert.assertEquals(PARTITIONS, first.getOwnedPartitions().size());
+	}
+
+	@Test
+	public void shutdown_ShouldHandPartitionsOverWithoutWaitingForLeases() {
+		ClusterCoordinator first = createNode(1);
+		ClusterCoordinator second = createNode(2);
+		first.join();
+		second.join();
+		first.heartbeat();
+		second.heartbeat();
+
+		second.shutdown();
+		first.heartbeat();
+
+		Assert.assertEquals(PARTITIONS, first.getOwnedPartitions().size());
+		Assert.assertTrue(second.getOwnedPartitions().isEmpty());
+		assertEveryInstrumentOwnedOnce(first, second);
+	}
+}
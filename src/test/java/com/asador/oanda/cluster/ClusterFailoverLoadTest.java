@@ -0,0 +1,128 @@
+package com.asador.oanda.cluster;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.asador.oanda.Application;
+import com.asador.oanda.fake.FakeOandaServer;
+import com.asador.oanda.orders.BatchOrderResult;
+import com.asador.oanda.orders.OrderManager;
+import com.asador.oanda.orders.domain.Order;
+import com.asador.oanda.orders.domain.OrderAction;
+
+/**
+ * Runs two clustered instances sharing one database against a {@link FakeOandaServer}, creates orders
+ * on the first one, stops the second one while prices swing through the orders and checks that every
+ * order is placed exactly once. Excluded from the default build, run it with
+ * -Dtest=ClusterFailoverLoadTest.
+ */
+public class ClusterFailoverLoadTest {
+	private static final Logger logger = LoggerFactory.getLogger(ClusterFailoverLoadTest.class);
+
+	private static final String[] INSTRUMENTS = {"EUR_USD", "GBP_USD", "USD_CAD", "USD_CHF", "AUD_USD",
+			"NZD_USD", "EUR_GBP", "EUR_CHF", "EUR_CAD", "EUR_AUD", "GBP_CHF", "GBP_CAD", "GBP_AUD", "AUD_CAD",
+			"AUD_CHF", "AUD_NZD", "NZD_CAD", "CAD_CHF", "USD_JPY", "EUR_JPY"};
+
+	private FakeOandaServer server;
+	private ConfigurableApplicationContext first;
+	private ConfigurableApplicationContext second;
+
+	@Before
+	public void setup() throws Exception {
+		server = new FakeOandaServer(8).setLatencyMillis(5).setSwing(50, 10_000);
+		first = startNode(1);
+		second = startNode(2);
+	}
+
+	@After
+	public void tearDown() {
+		if (second != null)
+			second.close();
+		if (first != null)
+			first.close();
+		server.close();
+	}
+
+	private ConfigurableApplicationContext startNode(int nodeId) {
+		return new SpringApplicationBuilder(Application.class)
+				.web(WebApplicationType.NONE)
+				.run("--spring.datasource.url=jdbc:hsqldb:mem:cluster-failover",
+						// both nodes run in this JVM and would register the same MBeans
+						"--spring.jmx.enabled=false",
+						"--oanda.accountId=101-004-1234567-001",
+						"--oanda.restEndpoint=" + server.getUrl(),
+						"--oanda.streamEndpoint=" + server.getUrl(),
+						"--oanda.nodeId=" + nodeId,
+						"--oanda.cluster.enabled=true",
+						"--oanda.cluster.partitions=16",
+						"--oanda.cluster.heartbeatMillis=200",
+						"--oanda.cluster.leaseMillis=1000",
+						"--oanda.api.orderRequestsPerSecond=100",
+						"--oanda.api.pricingRequestsPerSecond=100",
+						"--logging.level.com.asador.oanda=WARN",
+						"--logging.level.com.asador.oanda.cluster=INFO");
+	}
+
+	private List<Order> createOrders() {
+		List<Order> orders = new ArrayList<>();
+		for (int i = 0; i < INSTRUMENTS.length * 2; i++) {
+			String instrument = INSTRUMENTS[i / 2];
+			double pipSize = server.getPipSize(instrument);
+			double stopEntry = server.getBasePrice(instrument) + ((i * 7) % 61 - 30) * pipSize;
+			Order order = new Order();
+			order.setInstrument(instrument);
+			order.setAction(i % 2 == 0 ? OrderAction.BUY : OrderAction.SELL);
+			order.setStopEntry(stopEntry);
+			order.setTargetProfit(stopEntry + (order.getAction() == OrderAction.BUY ? 100 : -100) * pipSize);
+			order.setStopLoss(stopEntry - (order.getAction() == OrderAction.BUY ? 50 : -50) * pipSize);
+			order.setUnits(1000);
+			order.setTriggerDistancePips(3);
+			orders.add(order);
+		}
+		return orders;
+	}
+
+	@Test
+	public void failover_WhenNodeStopsWhilePricesMove_ShouldPlaceEveryOrderExactlyOnce() throws Exception {
+		ClusterCoordinator firstCoordinator = first.getBean(ClusterCoordinator.class);
+		ClusterCoordinator secondCoordinator = second.getBean(ClusterCoordinator.class);
+		for (int i = 0; i < 50 && firstCoordinator.getOwnedPartitions().size() != 8; i++)
+			TimeUnit.MILLISECONDS.sleep(100);
+		Assert.assertEquals("Partitions must be split between the nodes", 8, firstCoordinator.getOwnedPartitions().size());
+		Assert.assertEquals(8, secondCoordinator.getOwnedPartitions().size());
+
+		List<Order> orders = createOrders();
+		for (BatchOrderResult result : first.getBean(OrderManager.class).createStopOrders(orders))
+			Assert.assertEquals(BatchOrderResult.Status.CREATED, result.getStatus());
+
+		TimeUnit.SECONDS.sleep(2);
+		long failoverStart = System.nanoTime();
+		second.close();
+		for (int i = 0; i < 100 && firstCoordinator.getOwnedPartitions().size() != 16; i++)
+			TimeUnit.MILLISECONDS.sleep(50);
+		long failoverMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - failoverStart);
+		Assert.assertEquals("Partitions of the stopped node must move", 16, firstCoordinator.getOwnedPartitions().size());
+
+		JdbcTemplate jdbcTemplate = first.getBean(JdbcTemplate.class);
+		for (int i = 0; i < 300 && jdbcTemplate.queryForObject("select count(*) from pending_order where status='PENDING'", Integer.class) > 0; i++)
+			TimeUnit.MILLISECONDS.sleep(100);
+
+		logger.warn("{} orders, partitions moved in {} ms, server created {} orders", orders.size(), failoverMillis,
+				server.getOrdersCreated());
+		Assert.assertEquals("Every order must be triggered", 0,
+				jdbcTemplate.queryForObject("select count(*) from pending_order where status='PENDING'", Integer.class).intValue());
+		Assert.assertEquals("Every order must be placed exactly once", orders.size(), server.getOrdersCreated());
+	}
+}
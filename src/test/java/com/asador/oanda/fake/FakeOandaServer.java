@@ -0,0 +1,329 @@
+package com.asador.oanda.fake;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Stand-in for the OANDA v20 REST and streaming APIs, good enough for a {@link com.oanda.v20.Context}
+ * and {@link com.asador.oanda.pricing.StreamingPriceFeed} pointed at it. It serves candles, pricing,
+ * the pricing stream, order creation and the account instruments, with a configurable latency and
+ * share of 5xx and 429 responses.
+ * <p>
+ * Prices swing around a base price of each instrument as a sine wave, so every order close enough to
+ * the base price triggers once in a period.
+ */
+public class FakeOandaServer implements Closeable {
+
+	private static final String INSTRUMENTS_PATH = "/v3/instruments/";
+	private static final String ACCOUNTS_PATH = "/v3/accounts/";
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final long startMillis = System.currentTimeMillis();
+	private final Map<String, Double> basePrices = new ConcurrentHashMap<>();
+
+	private volatile long latencyMillis;
+	private volatile double errorRate;
+	private volatile double throttleRate;
+	private volatile double swingPips = 50;
+	private volatile long swingPeriodMillis = 20_000;
+	private volatile long streamIntervalMillis = 250;
+	private volatile boolean closed;
+
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong errors = new AtomicLong();
+	private final AtomicLong throttled = new AtomicLong();
+	private final AtomicLong ordersCreated = new AtomicLong();
+	private final AtomicLong lastTransactionId = new AtomicLong();
+
+	public FakeOandaServer(int threads) throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 1024);
+		executor = Executors.newFixedThreadPool(threads);
+		server.setExecutor(executor);
+		server.createContext(INSTRUMENTS_PATH, this::serveInstrument);
+		server.createContext(ACCOUNTS_PATH, this::serveAccount);
+		server.start();
+	}
+
+	public String getUrl() {
+		return "http://localhost:" + server.getAddress().getPort();
+	}
+
+	public FakeOandaServer setLatencyMillis(long latencyMillis) {
+		this.latencyMillis = latencyMillis;
+		return this;
+	}
+
+	/**
+	 * @param errorRate share of requests answered with a 503
+	 */
+	public FakeOandaServer setErrorRate(double errorRate) {
+		this.errorRate = errorRate;
+		return this;
+	}
+
+	/**
+	 * @param throttleRate share of requests answered with a 429
+	 */
+	public FakeOandaServer setThrottleRate(double throttleRate) {
+		this.throttleRate = throttleRate;
+		return this;
+	}
+
+	public FakeOandaServer setSwing(double swingPips, long swingPeriodMillis) {
+		this.swingPips = swingPips;
+		this.swingPeriodMillis = swingPeriodMillis;
+		return this;
+	}
+
+	public FakeOandaServer setStreamIntervalMillis(long streamIntervalMillis) {
+		this.streamIntervalMillis = streamIntervalMillis;
+		return this;
+	}
+
+	public FakeOandaServer setBasePrice(String instrument, double price) {
+		basePrices.put(instrument, price);
+		return this;
+	}
+
+	public double getBasePrice(String instrument) {
+		return basePrices.computeIfAbsent(instrument, name -> name.contains("_JPY") ? 110.0 :
+				name.startsWith("XAU_") ? 1300.0 : 1.2);
+	}
+
+	public double getPipSize(String instrument) {
+		return instrument.contains("_JPY") || instrument.startsWith("XAU_") ? 0.01 : 0.0001;
+	}
+
+	public long getRequests() {
+		return requests.get();
+	}
+	public long getErrors() {
+		return errors.get();
+	}
+	public long getThrottled() {
+		return throttled.get();
+	}
+	public long getOrdersCreated() {
+		return ordersCreated.get();
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	/**
+	 * @return the current price of an instrument, rounded to the instrument precision
+	 */
+	public String getPrice(String instrument) {
+		double pipSize = getPipSize(instrument);
+		double phase = 2 * Math.PI * (System.currentTimeMillis() - startMillis) / swingPeriodMillis;
+		double price = getBasePrice(instrument) + swingPips * pipSize * Math.sin(phase);
+		int decimals = pipSize == 0.01 ? 3 : 5;
+		return BigDecimal.valueOf(price).setScale(decimals, RoundingMode.HALF_UP).toPlainString();
+	}
+
+	private void serveInstrument(HttpExchange exchange) throws IOException {
+		// /v3/instruments/{instrument}/candles
+		String[] path = exchange.getRequestURI().getPath().substring(INSTRUMENTS_PATH.length()).split("/");
+		if (!admit(exchange))
+			return;
+		if (path.length != 2 || !"candles".equals(path[1])) {
+			sendError(exchange, 404, "Not found");
+			return;
+		}
+
+		String instrument = path[0];
+		String price = getPrice(instrument);
+		ObjectNode response = objectMapper.createObjectNode();
+		response.put("instrument", instrument);
+		response.put("granularity", "M1");
+		ObjectNode candle = response.putArray("candles").addObject();
+		candle.put("complete", false);
+		candle.put("volume", 1);
+		candle.put("time", Instant.now().toString());
+		candle.putObject("mid").put("o", price).put("h", price).put("l", price).put("c", price);
+		send(exchange, 200, response);
+	}
+
+	private void serveAccount(HttpExchange exchange) throws IOException {
+		// /v3/accounts/{accountId}/{resource}
+		String[] path = exchange.getRequestURI().getPath().substring(ACCOUNTS_PATH.length()).split("/", 2);
+		String resource = path.length == 2 ? path[1] : "";
+		if ("pricing/stream".equals(resource)) {
+			servePricingStream(exchange);
+			return;
+		}
+		if (!admit(exchange))
+			return;
+
+		if ("pricing".equals(resource)) {
+			ObjectNode response = objectMapper.createObjectNode();
+			ArrayNode prices = response.putArray("prices");
+			for (String instrument : getInstrumentsParameter(exchange))
+				prices.add(createPrice(instrument));
+			response.put("time", Instant.now().toString());
+			send(exchange, 200, response);
+		} else if ("orders".equals(resource) && "POST".equals(exchange.getRequestMethod())) {
+			serveOrderCreate(exchange, path[0]);
+		} else if ("instruments".equals(resource)) {
+			byte[] instruments;
+			try {
+				instruments = Files.readAllBytes(Paths.get(getClass().getResource("/account-instruments.json").toURI()));
+			} catch (Exception e) {
+				throw new IOException(e);
+			}
+			exchange.getResponseHeaders().set("Content-Type", "application/json");
+			exchange.sendResponseHeaders(200, instruments.length);
+			try (OutputStream body = exchange.getResponseBody()) {
+				body.write(instruments);
+			}
+		} else {
+			sendError(exchange, 404, "Not found");
+		}
+	}
+
+	private void serveOrderCreate(HttpExchange exchange, String accountId) throws IOException {
+		JsonNode order;
+		try (InputStream body = exchange.getRequestBody()) {
+			order = objectMapper.readTree(body).path("order");
+		}
+		String transactionId = String.valueOf(lastTransactionId.incrementAndGet());
+		ObjectNode response = objectMapper.createObjectNode();
+		ObjectNode transaction = response.putObject("orderCreateTransaction");
+		transaction.put("id", transactionId);
+		transaction.put("time", Instant.now().toString());
+		transaction.put("accountID", accountId);
+		transaction.put("batchID", transactionId);
+		transaction.put("type", order.path("type").asText("STOP") + "_ORDER");
+		transaction.put("instrument", order.path("instrument").asText());
+		transaction.put("units", order.path("units").asText());
+		transaction.put("price", order.path("price").asText());
+		transaction.put("timeInForce", order.path("timeInForce").asText());
+		transaction.put("reason", "CLIENT_ORDER");
+		response.putArray("relatedTransactionIDs").add(transactionId);
+		response.put("lastTransactionID", transactionId);
+		ordersCreated.incrementAndGet();
+		send(exchange, 201, response);
+	}
+
+	private void servePricingStream(HttpExchange exchange) throws IOException {
+		String[] instruments = getInstrumentsParameter(exchange);
+		// zero response length makes the server reply with a chunked body, just like OANDA
+		exchange.sendResponseHeaders(200, 0);
+		try (OutputStream body = exchange.getResponseBody()) {
+			long lastHeartbeat = 0;
+			while (!closed) {
+				for (String instrument : instruments)
+					body.write((objectMapper.writeValueAsString(createPrice(instrument)) + "\n")
+							.getBytes(StandardCharsets.UTF_8));
+				if (System.currentTimeMillis() - lastHeartbeat >= 5000) {
+					body.write(("{\"type\":\"HEARTBEAT\",\"time\":\"" + Instant.now() + "\"}\n")
+							.getBytes(StandardCharsets.UTF_8));
+					lastHeartbeat = System.currentTimeMillis();
+				}
+				body.flush();
+				TimeUnit.MILLISECONDS.sleep(streamIntervalMillis);
+			}
+		} catch (IOException | InterruptedException e) {
+			// the client went away
+		}
+	}
+
+	private ObjectNode createPrice(String instrument) {
+		String price = getPrice(instrument);
+		ObjectNode node = objectMapper.createObjectNode();
+		node.put("type", "PRICE");
+		node.put("instrument", instrument);
+		node.put("time", Instant.now().toString());
+		node.put("tradeable", true);
+		node.putArray("bids").addObject().put("price", price).put("liquidity", 10000000);
+		node.putArray("asks").addObject().put("price", price).put("liquidity", 10000000);
+		node.put("closeoutBid", price);
+		node.put("closeoutAsk", price);
+		return node;
+	}
+
+	/**
+	 * Waits for the configured latency and answers with an injected failure if it is the turn of one.
+	 *
+	 * @return false if the request has been answered already
+	 */
+	private boolean admit(HttpExchange exchange) throws IOException {
+		requests.incrementAndGet();
+		if (latencyMillis > 0) {
+			try {
+				TimeUnit.MILLISECONDS.sleep(latencyMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		double dice = ThreadLocalRandom.current().nextDouble();
+		if (dice < throttleRate) {
+			throttled.incrementAndGet();
+			sendError(exchange, 429, "Requests are being throttled");
+			return false;
+		}
+		if (dice < throttleRate + errorRate) {
+			errors.incrementAndGet();
+			sendError(exchange, 503, "Service unavailable");
+			return false;
+		}
+		return true;
+	}
+
+	private String[] getInstrumentsParameter(HttpExchange exchange) throws IOException {
+		String query = exchange.getRequestURI().getRawQuery();
+		if (query != null) {
+			for (String parameter : query.split("&")) {
+				if (parameter.startsWith("instruments="))
+					return URLDecoder.decode(parameter.substring("instruments=".length()), "UTF-8").split(",");
+			}
+		}
+		return new String[0];
+	}
+
+	private void sendError(HttpExchange exchange, int status, String message) throws IOException {
+		ObjectNode response = objectMapper.createObjectNode();
+		response.put("errorMessage", message);
+		send(exchange, status, response);
+	}
+
+	private void send(HttpExchange exchange, int status, JsonNode response) throws IOException {
+		byte[] body = objectMapper.writeValueAsBytes(response);
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(status, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+}
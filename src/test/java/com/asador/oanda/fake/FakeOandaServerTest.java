@@ -0,0 +1,77 @@
+package com.asador.oanda.fake;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.oanda.v20.Context;
+import com.oanda.v20.ContextBuilder;
+import com.oanda.v20.RequestException;
+import com.oanda.v20.account.AccountID;
+import com.oanda.v20.instrument.CandlestickGranularity;
+import com.oanda.v20.instrument.InstrumentCandlesRequest;
+import com.oanda.v20.order.OrderCreateRequest;
+import com.oanda.v20.order.OrderCreateResponse;
+import com.oanda.v20.order.StopOrderRequest;
+import com.oanda.v20.primitives.InstrumentName;
+
+/**
+ * Makes sure the fake server talks close enough to v20 for the OANDA client library.
+ */
+public class FakeOandaServerTest {
+
+	private static final AccountID ACCOUNT_ID = new AccountID("101-004-1234567-001");
+
+	private FakeOandaServer server;
+	private Context oandaCtx;
+
+	@Before
+	public void setup() throws Exception {
+		server = new FakeOandaServer(4);
+		oandaCtx = new ContextBuilder(server.getUrl()).setApplication("").setToken("test-token").build();
+	}
+
+	@After
+	public void tearDown() {
+		server.close();
+	}
+
+	@Test
+	public void candles_ShouldReturnCurrentPriceOfInstrument() throws Exception {
+		InstrumentCandlesRequest request = new InstrumentCandlesRequest(new InstrumentName("USD_JPY"));
+		request.setCount(1L);
+		request.setPrice("M");
+		request.setGranularity(CandlestickGranularity.M1);
+
+		double price = oandaCtx.instrument.candles(request).getCandles().get(0).getMid().getC().doubleValue();
+
+		Assert.assertEquals(110.0, price, 0.5 + 1e-9);
+	}
+
+	@Test
+	public void createOrder_ShouldReturnOrderCreateTransaction() throws Exception {
+		OrderCreateRequest request = new OrderCreateRequest(ACCOUNT_ID);
+		request.setOrder(new StopOrderRequest().setInstrument("EUR_USD").setUnits(1000).setPrice(1.2));
+
+		OrderCreateResponse response = oandaCtx.order.create(request);
+
+		Assert.assertNotNull(response.getOrderCreateTransaction().getId());
+		Assert.assertEquals(1, server.getOrdersCreated());
+	}
+
+	@Test
+	public void createOrder_WhenThrottled_ShouldFailWith429() throws Exception {
+		server.setThrottleRate(1);
+		OrderCreateRequest request = new OrderCreateRequest(ACCOUNT_ID);
+		request.setOrder(new StopOrderRequest().setInstrument("EUR_USD").setUnits(1000).setPrice(1.2));
+
+		try {
+			oandaCtx.order.create(request);
+			Assert.fail("Throttled request must fail");
+		} catch (RequestException e) {
+			Assert.assertEquals(429, e.getStatus());
+		}
+		Assert.assertEquals(0, server.getOrdersCreated());
+	}
+}
@@ -0,0 +1,96 @@
+package com.asador.oanda.instruments;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.asador.oanda.pricing.Price;
+import com.oanda.v20.Context;
+import com.oanda.v20.account.AccountContext;
+import com.oanda.v20.account.AccountID;
+import com.oanda.v20.account.AccountInstrumentsResponse;
+import com.oanda.v20.primitives.Instrument;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class InstrumentCatalogTest {
+
+	@Autowired
+	private InstrumentCatalog instrumentCatalog;
+
+	@Autowired
+	private Context oandaCtx;
+
+	@After
+	public void tearDown() {
+		ReflectionTestUtils.setField(instrumentCatalog, "instrumentsFile", "classpath:account-instruments.json");
+		instrumentCatalog.refresh();
+	}
+
+	@Test
+	public void get_ShouldServePipLocationOfStubbedInstruments() {
+		Assert.assertEquals(-4, instrumentCatalog.get("EUR_USD").getPipLocation());
+		Assert.assertEquals(-2, instrumentCatalog.get("USD_JPY").getPipLocation());
+		Assert.assertEquals("Metals do not follow the currency pair pip sizes", 0.01,
+				instrumentCatalog.get("XAU_USD").getPipSize(), 1e-12);
+		Assert.assertEquals(1, instrumentCatalog.get("SPX500_USD").getPipSize(), 0);
+		Assert.assertEquals(Price.toTicks(20), instrumentCatalog.get("XAU_USD").pipsToTicks(2000));
+	}
+
+	@Test
+	public void isTradeable_WhenInstrumentNotInAccount_ShouldBeFalse() {
+		Assert.assertTrue(instrumentCatalog.isTradeable("GBP_USD"));
+		Assert.assertFalse(instrumentCatalog.isTradeable("ABC_XYZ"));
+		Assert.assertEquals("Unknown instruments must fall back to the currency pair pip size", -4,
+				instrumentCatalog.get("ABC_XYZ").getPipLocation());
+	}
+
+	@Test
+	public void refresh_WhenNoFile_ShouldLoadAccountInstrumentsFromOanda() throws Exception {
+		Instrument instrument = new Instrument().setName("BCO_USD").setPipLocation(-2L).setDisplayPrecision(3L)
+				.setMinimumTradeSize("1");
+		AccountInstrumentsResponse response = mock(AccountInstrumentsResponse.class);
+		when(response.getInstruments()).thenReturn(Arrays.asList(instrument));
+		AccountContext accountContextMock = mock(AccountContext.class);
+		when(accountContextMock.instruments(any(AccountID.class))).thenReturn(response);
+		oandaCtx.account = accountContextMock;
+		ReflectionTestUtils.setField(instrumentCatalog, "instrumentsFile", "");
+
+		instrumentCatalog.refresh();
+
+		Assert.assertTrue(instrumentCatalog.isTradeable("BCO_USD"));
+		Assert.assertFalse(instrumentCatalog.isTradeable("EUR_USD"));
+		Assert.assertEquals(3, instrumentCatalog.get("BCO_USD").getDisplayPrecision());
+	}
+
+	@Test
+	public void refresh_WhenOandaFails_ShouldKeepKnownInstruments() throws Exception {
+		AccountContext accountContextMock = mock(AccountContext.class);
+		when(accountContextMock.instruments(any(AccountID.class))).thenThrow(new RuntimeException("Connection reset"));
+		oandaCtx.account = accountContextMock;
+		ReflectionTestUtils.setField(instrumentCatalog, "instrumentsFile", "");
+
+		instrumentCatalog.refresh();
+
+		Assert.assertTrue(instrumentCatalog.isTradeable("XAU_USD"));
+		Assert.assertEquals(-2, instrumentCatalog.get("XAU_USD").getPipLocation());
+	}
+
+	@Test
+	public void isPriceWithinPrecision_ShouldRejectPricesWithMoreDecimalsThanDisplayed() {
+		InstrumentMetadata eurusd = instrumentCatalog.get("EUR_USD");
+		Assert.assertTrue(eurusd.isPriceWithinPrecision(Price.toTicks(1.23456)));
+		Assert.assertFalse(eurusd.isPriceWithinPrecision(Price.toTicks(1.234567)));
+	}
+}
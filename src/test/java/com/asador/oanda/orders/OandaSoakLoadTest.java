@@ -0,0 +1,147 @@
+package com.asador.oanda.orders;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.util.TestPropertyValues;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.asador.oanda.fake.FakeOandaServer;
+import com.asador.oanda.orders.domain.Order;
+import com.asador.oanda.orders.domain.OrderAction;
+import com.asador.oanda.orders.domain.OrderDAO;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+
+/**
+ * Points the real OANDA client at a {@link FakeOandaServer} with latency, 5xx and 429 responses, has
+ * 10k pending orders trigger as the fake prices swing, and reports the placement throughput, latency
+ * percentiles and resource usage. Excluded from the default build, run it with
+ * -Dtest=OandaSoakLoadTest and tune it with -Dsoak.orders, -Dsoak.latencyMillis, -Dsoak.errorRate,
+ * -Dsoak.throttleRate and -Dsoak.priceSource (polling or streaming).
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ContextConfiguration(initializers = OandaSoakLoadTest.FakeOandaInitializer.class)
+public class OandaSoakLoadTest {
+	private static final Logger logger = LoggerFactory.getLogger(OandaSoakLoadTest.class);
+
+	private static final int ORDER_COUNT = Integer.getInteger("soak.orders", 10_000);
+	private static final String[] INSTRUMENTS = {"EUR_USD", "GBP_USD", "USD_CAD", "USD_CHF", "AUD_USD",
+			"NZD_USD", "EUR_GBP", "EUR_CHF", "EUR_CAD", "EUR_AUD", "GBP_CHF", "GBP_CAD", "GBP_AUD", "AUD_CAD",
+			"AUD_CHF", "AUD_NZD", "NZD_CAD", "CAD_CHF", "USD_JPY", "EUR_JPY"};
+
+	private static FakeOandaServer server;
+
+	@Autowired
+	private OrderManager orderManager;
+
+	@Autowired
+	private OrderDAO orderDao;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	static class FakeOandaInitializer implements ApplicationContextInitializer<ConfigurableApplicationContext> {
+
+		@Override
+		public void initialize(ConfigurableApplicationContext context) {
+			try {
+				server = new FakeOandaServer(32)
+						.setLatencyMillis(Long.getLong("soak.latencyMillis", 20))
+						.setErrorRate(Double.parseDouble(System.getProperty("soak.errorRate", "0.01")))
+						.setThrottleRate(Double.parseDouble(System.getProperty("soak.throttleRate", "0.01")))
+						.setSwing(50, 20_000);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			TestPropertyValues.of(
+					"oanda.accountId=101-004-1234567-001",
+					"oanda.restEndpoint=" + server.getUrl(),
+					"oanda.streamEndpoint=" + server.getUrl(),
+					"oanda.priceSource=" + System.getProperty("soak.priceSource", "polling"),
+					"oanda.api.orderRequestsPerSecond=500",
+					"oanda.api.pricingRequestsPerSecond=100",
+					"logging.level.com.asador.oanda=WARN").applyTo(context);
+		}
+	}
+
+	@AfterClass
+	public static void stopServer() {
+		server.close();
+	}
+
+	@Test
+	public void soak_When10kOrdersTriggerAgainstFakeOanda_ShouldPlaceThemAll() throws Exception {
+		Random random = new Random(42);
+		List<Order> orders = new ArrayList<>(ORDER_COUNT);
+		for (int i = 0; i < ORDER_COUNT; i++) {
+			String instrument = INSTRUMENTS[i % INSTRUMENTS.length];
+			double pipSize = server.getPipSize(instrument);
+			double stopEntry = server.getBasePrice(instrument) + (random.nextInt(81) - 40) * pipSize;
+			Order order = new Order();
+			order.setInstrument(instrument);
+			order.setAction(i % 2 == 0 ? OrderAction.BUY : OrderAction.SELL);
+			order.setStopEntry(stopEntry);
+			order.setTargetProfit(stopEntry + (order.getAction() == OrderAction.BUY ? 100 : -100) * pipSize);
+			order.setStopLoss(stopEntry - (order.getAction() == OrderAction.BUY ? 50 : -50) * pipSize);
+			order.setUnits(1000);
+			order.setTriggerDistancePips(3);
+			orders.add(order);
+		}
+
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		com.sun.management.OperatingSystemMXBean os =
+				(com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+		long cpuBefore = os.getProcessCpuTime();
+		long start = System.nanoTime();
+
+		orderDao.createOrders(orders);
+		orderManager.createOrderWatches(orders);
+		for (int i = 0; i < 1800 && orderManager.getActiveWatchCount() > 0; i++)
+			TimeUnit.MILLISECONDS.sleep(100);
+		long elapsedNanos = System.nanoTime() - start;
+
+		Timer triggerToCreated = meterRegistry.get("oanda.order.trigger.to.created").timer();
+		StringBuilder percentiles = new StringBuilder();
+		for (ValueAtPercentile percentile : triggerToCreated.takeSnapshot().percentileValues())
+			percentiles.append(String.format(" p%.0f=%.1fms", percentile.percentile() * 100,
+					percentile.value(TimeUnit.MILLISECONDS)));
+		double fetchMeanMillis = meterRegistry.find("oanda.price.fetch").timers().stream()
+				.mapToDouble(timer -> timer.mean(TimeUnit.MILLISECONDS)).average().orElse(0);
+		long placed = triggerToCreated.count();
+		Runtime runtime = Runtime.getRuntime();
+
+		logger.warn("Soak of {} orders on {} instruments took {} s. Placed {} ({} orders/s), server saw {} requests, " +
+				"{} 5xx, {} 429, client retries {}. Trigger to created{}, max {} ms, price fetch mean {} ms. " +
+				"CPU {} s, peak threads {}, heap used {} MB", ORDER_COUNT, INSTRUMENTS.length,
+				TimeUnit.NANOSECONDS.toSeconds(elapsedNanos), placed,
+				placed * 1_000_000_000L / elapsedNanos, server.getRequests(), server.getErrors(),
+				server.getThrottled(), (long) meterRegistry.get("oanda.api.retries").counter().count(), percentiles,
+				(long) triggerToCreated.max(TimeUnit.MILLISECONDS), String.format("%.1f", fetchMeanMillis),
+				TimeUnit.NANOSECONDS.toSeconds(os.getProcessCpuTime() - cpuBefore), threadBean.getPeakThreadCount(),
+				(runtime.totalMemory() - runtime.freeMemory()) >> 20);
+
+		Assert.assertEquals("Every order must be triggered", 0, orderManager.getActiveWatchCount());
+		Assert.assertTrue("Most orders must be placed despite the injected failures", placed > ORDER_COUNT * 0.9);
+	}
+}
@@ -0,0 +1,119 @@
+package com.asador.oanda.orders;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import com.asador.oanda.orders.domain.Order;
+import com.asador.oanda.orders.domain.OrderAction;
+import com.asador.oanda.orders.domain.OrderDAO;
+import com.asador.oanda.orders.domain.OrderStatus;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+public class OrderControllerTest {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private OrderDAO orderDao;
+
+	@Autowired
+	private OrderEventStream orderEventStream;
+
+	@After
+	public void tearDown() {
+		for (Order order : orderDao.getOrders())
+			orderDao.removeOrder(order.getOrderId(), OrderStatus.CANCELLED);
+	}
+
+	private Order createOrder(String instrument, OrderAction action) {
+		Order order = new Order();
+		order.setInstrument(instrument);
+		order.setAction(action);
+		order.setStopEntry(1.3345);
+		order.setTargetProfit(1.3045);
+		order.setStopLoss(1.3433);
+		order.setUnits(10000);
+		order.setTriggerDistancePips(5);
+		return order;
+	}
+
+	@Test
+	public void listPendingOrders_ShouldFilterAndPageOrders() throws Exception {
+		Order first = createOrder("GBP_USD", OrderAction.SELL);
+		Order second = createOrder("EUR_USD", OrderAction.SELL);
+		Order third = createOrder("GBP_USD", OrderAction.SELL);
+		orderDao.createOrders(Arrays.asList(first, second, third, createOrder("GBP_USD", OrderAction.BUY)));
+
+		mockMvc.perform(get("/orders").param("instrument", "GBP_USD").param("action", "SELL").param("limit", "1"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$", hasSize(1)))
+				.andExpect(jsonPath("$[0].orderId").value(first.getOrderId()));
+		mockMvc.perform(get("/orders").param("instrument", "GBP_USD").param("action", "SELL")
+				.param("after", String.valueOf(first.getOrderId())))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$", hasSize(1)))
+				.andExpect(jsonPath("$[0].orderId").value(third.getOrderId()))
+				.andExpect(jsonPath("$[0].stopEntry").value(1.3345));
+	}
+
+	@Test
+	public void listPendingOrders_WhenOrdersUnchangedSinceETag_ShouldReturnNotModified() throws Exception {
+		orderDao.createOrder(createOrder("GBP_USD", OrderAction.SELL));
+		String etag = mockMvc.perform(get("/orders"))
+				.andExpect(status().isOk())
+				.andExpect(header().exists(HttpHeaders.ETAG))
+				.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+		mockMvc.perform(get("/orders").header(HttpHeaders.IF_NONE_MATCH, etag))
+				.andExpect(status().isNotModified());
+		// a clustered instance reloads the orders on every heartbeat
+		orderDao.refresh();
+		mockMvc.perform(get("/orders").header(HttpHeaders.IF_NONE_MATCH, etag))
+				.andExpect(status().isNotModified());
+
+		orderDao.createOrder(createOrder("EUR_USD", OrderAction.BUY));
+		mockMvc.perform(get("/orders").header(HttpHeaders.IF_NONE_MATCH, etag))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$", hasSize(2)));
+	}
+
+	@Test
+	public void streamOrderEvents_ShouldWriteServerSentEvents() throws Exception {
+		MvcResult result = mockMvc.perform(get("/orders/events"))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		Order order = createOrder("GBP_USD", OrderAction.SELL);
+		order.setOrderId(7);
+
+		orderEventStream.publish(OrderEvent.created(order));
+		orderEventStream.flush();
+
+		String content = "";
+		for (int i = 0; i < 100 && !content.contains("\n\n"); i++) {
+			Thread.sleep(10);
+			content = result.getResponse().getContentAsString();
+		}
+		Assert.assertTrue(content, content.matches("id:\\d+\nevent:created\ndata:\\{\"type\":\"CREATED\",\"orderId\":7,.*\\}\n\n"));
+	}
+}
@@ -0,0 +1,120 @@
+package com.asador.oanda.orders;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.asador.oanda.orders.domain.Order;
+import com.asador.oanda.orders.domain.OrderAction;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class OrderEventStreamTest {
+
+	// flushed by the tests only
+	private OrderEventStream eventStream = new OrderEventStream(new ObjectMapper(), 60_000, 3, 1, 2);
+
+	@After
+	public void tearDown() {
+		eventStream.shutdown();
+	}
+
+	private Order createOrder(long orderId) {
+		Order order = new Order();
+		order.setOrderId(orderId);
+		order.setInstrument("EUR_USD");
+		order.setAction(OrderAction.BUY);
+		return order;
+	}
+
+	private static class RecordingEmitter extends SseEmitter {
+		private final List<String> batches = new CopyOnWriteArrayList<>();
+		private final CountDownLatch released;
+
+		RecordingEmitter(CountDownLatch released) {
+			this.released = released;
+		}
+
+		@Override
+		public void send(SseEventBuilder builder) throws IOException {
+			try {
+				released.await();
+			} catch (InterruptedException e) {
+				throw new IOException(e);
+			}
+			StringBuilder text = new StringBuilder();
+			for (DataWithMediaType data : builder.build())
+				text.append(data.getData());
+			batches.add(text.toString());
+		}
+
+		String awaitBatch(int index) throws InterruptedException {
+			for (int i = 0; i < 100 && batches.size() <= index; i++)
+				Thread.sleep(10);
+			return batches.get(index);
+		}
+	}
+
+	@Test
+	public void flush_WhenOrderApproachesManyTimes_ShouldOnlySendLatestDistanceBeforeLifecycleEvents() throws Exception {
+		RecordingEmitter emitter = new RecordingEmitter(new CountDownLatch(0));
+		eventStream.subscribe(emitter);
+		Order order = createOrder(1);
+
+		for (int i = 10; i > 0; i--)
+			eventStream.publish(OrderEvent.approaching(order, 1.2, i));
+		eventStream.publish(OrderEvent.triggered(order, 1.2));
+		eventStream.publish(OrderEvent.placed(order, "6372"));
+		eventStream.flush();
+
+		String batch = emitter.awaitBatch(0);
+		Assert.assertEquals("Approaching events must be coalesced", 1, batch.split("event:approaching").length - 1);
+		Assert.assertTrue(batch.contains("\"distancePips\":1.0"));
+		Assert.assertTrue("Events must keep their order", batch.indexOf("event:approaching") < batch.indexOf("event:triggered"));
+		Assert.assertTrue(batch.indexOf("event:triggered") < batch.indexOf("event:placed"));
+		Assert.assertTrue(batch.contains("\"transactionId\":\"6372\""));
+		Assert.assertTrue("Every event must end with a blank line", batch.endsWith("}\n\n"));
+	}
+
+	@Test
+	public void publish_WhenNoSubscribers_ShouldDropEvents() throws Exception {
+		eventStream.publish(OrderEvent.created(createOrder(1)));
+		RecordingEmitter emitter = new RecordingEmitter(new CountDownLatch(0));
+		eventStream.subscribe(emitter);
+
+		eventStream.publish(OrderEvent.created(createOrder(2)));
+		eventStream.flush();
+
+		String batch = emitter.awaitBatch(0);
+		Assert.assertFalse(batch.contains("\"orderId\":1,"));
+		Assert.assertTrue(batch.contains("\"orderId\":2,"));
+	}
+
+	@Test
+	public void flush_WhenSubscriberFallsBehind_ShouldDisconnectItWithoutHoldingUpOthers() throws Exception {
+		CountDownLatch slowReleased = new CountDownLatch(1);
+		RecordingEmitter slow = new RecordingEmitter(slowReleased);
+		RecordingEmitter fast = new RecordingEmitter(new CountDownLatch(0));
+		eventStream.subscribe(slow);
+		eventStream.subscribe(fast);
+
+		for (int i = 1; i <= 6; i++) {
+			eventStream.publish(OrderEvent.created(createOrder(i)));
+			eventStream.flush();
+			fast.awaitBatch(i - 1);
+		}
+
+		Assert.assertEquals("Slow subscriber must be disconnected", 1, eventStream.getSubscriberCount());
+		Assert.assertEquals("Fast subscriber must get every batch", 6, fast.batches.size());
+		slowReleased.countDown();
+		TimeUnit.MILLISECONDS.sleep(50);
+		Assert.assertTrue("Slow subscriber only finishes the batch it was sending", slow.batches.size() <= 1);
+	}
+}
@@ -3,12 +3,18 @@ package com.asador.oanda.orders;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.atLeast;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.After;
 import org.junit.Assert;
@@ -16,12 +22,17 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import com.asador.oanda.orders.domain.Order;
 import com.asador.oanda.orders.domain.OrderAction;
 import com.asador.oanda.orders.domain.OrderDAO;
+import com.asador.oanda.orders.domain.OrderStatus;
+import com.asador.oanda.orders.domain.OrderStore;
+import com.asador.oanda.pricing.Price;
 import com.oanda.v20.ExecuteException;
 import com.oanda.v20.RequestException;
 import com.oanda.v20.account.AccountID;
@@ -34,11 +45,16 @@ import com.oanda.v20.order.OrderContext;
 import com.oanda.v20.order.OrderCreateRequest;
 import com.oanda.v20.order.OrderCreateResponse;
 import com.oanda.v20.primitives.DateTime;
+import com.oanda.v20.transaction.OrderCancelReason;
+import com.oanda.v20.transaction.OrderCancelTransaction;
 import com.oanda.v20.transaction.RequestID;
 import com.oanda.v20.transaction.Transaction;
 import com.oanda.v20.transaction.TransactionID;
 import com.oanda.v20.transaction.TransactionType;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
 @RunWith(SpringRunner.class)
 @SpringBootTest
 public class OrderManagerTest {
@@ -49,6 +65,18 @@ public class OrderManagerTest {
 	@Autowired
 	private OrderDAO orderDao;
 	
+	@Autowired
+	private OrderStore orderStore;
+	
+	@Value("${oanda.watcher.threads}")
+	private int watcherThreads;
+	
+	@Autowired
+	private MeterRegistry meterRegistry;
+	
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+	
 	private OrderContext orderContextMock = mock(OrderContext.class);
 	private InstrumentContext instrumentContextMock = mock(InstrumentContext.class);
 	
@@ -58,6 +86,10 @@ public class OrderManagerTest {
 		orderManager.getOandaContext().order = orderContextMock;
 	}
 	
+	private String getStoredStatus(long orderId) {
+		return jdbcTemplate.queryForObject("select status from pending_order where order_id=?", String.class, orderId);
+	}
+	
 	@After
 	public void tearDown() {
 		for (Order order: orderDao.getOrders())
@@ -89,6 +121,73 @@ public class OrderManagerTest {
 		}
 	}
 
+	@Test
+	public void validateOrder_WhenInstrumentNotTradeable_ShouldThrowException() {
+		Order order = createEURUSDOrder();
+		order.setInstrument("EUR_XYZ");
+
+		try {
+			orderManager.validateOrder(order);
+			Assert.fail("Validation had to fail for an instrument the account cannot trade");
+		} catch (IllegalArgumentException e) {
+			// everything is good
+		}
+	}
+
+	@Test
+	public void validateOrder_WhenPriceHasTooManyDecimals_ShouldThrowException() {
+		Order order = createEURUSDOrder();
+		order.setStopEntry(1.014512);
+
+		try {
+			orderManager.validateOrder(order);
+			Assert.fail("Validation had to fail for a price OANDA would reject");
+		} catch (IllegalArgumentException e) {
+			// everything is good
+		}
+	}
+
+	@Test
+	public void getOrderPlacementTicks_WhenPriceEqualsTriggerValue_ShouldNotDependOnRounding() {
+		Order order = createEURUSDOrder();
+		order.setAction(OrderAction.BUY);
+		order.setStopEntry(1.0003);
+		order.setTriggerDistancePips(3);
+
+		Assert.assertEquals(1000000, orderManager.getOrderPlacementTicks(order));
+		Assert.assertFalse(isTriggeredAt(order, 1.00001));
+		Assert.assertTrue(isTriggeredAt(order, 1.0));
+	}
+
+	/**
+	 * Whether the trigger of the order, as the order watch creates it, fires at the price.
+	 */
+	private boolean isTriggeredAt(Order order, double price) {
+		TriggerIndex triggerIndex = new TriggerIndex();
+		triggerIndex.add(new PriceTrigger(order, orderManager.getOrderPlacementTicks(order), null));
+		return !triggerIndex.pollTriggered(Price.toTicks(price)).isEmpty();
+	}
+
+	@Test
+	public void getNextWeekGtdTime_ShouldBeUtcRFC3339AndReusedWithinTheSecond() {
+		DateTime gtdTime = orderManager.getNextWeekGtdTime();
+
+		Assert.assertTrue(gtdTime.toString().matches("\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}\\.000Z"));
+		DateTime again = orderManager.getNextWeekGtdTime();
+		Assert.assertTrue("GTD time must only be formatted once a second",
+				again == gtdTime || !again.toString().equals(gtdTime.toString()));
+	}
+
+	@Test
+	public void getOrderPlacementTicks_WhenMetal_ShouldUseInstrumentPipLocation() {
+		Order order = createEURUSDOrder();
+		order.setInstrument("XAU_USD");
+		order.setStopEntry(1300.5);
+		order.setTriggerDistancePips(50);
+
+		Assert.assertEquals(Price.toTicks(1300.0), orderManager.getOrderPlacementTicks(order));
+	}
+
 	private Order createEURUSDOrder() {
 		Order order = new Order();
 		order.setInstrument("EUR_USD");
@@ -114,7 +213,7 @@ public class OrderManagerTest {
 	}
 	
 	@Test
-	public void isOrderDuplicate_WhenOrderDuplicate_ShouldRetrunTrue() {
+	public void createStopOrder_WhenOrderDuplicate_ShouldThrowException() {
 		orderDao.createOrder(createEURUSDOrder());
 		Order anotherOrder = new Order();
 		anotherOrder.setInstrument("EUR_USD");
@@ -125,12 +224,17 @@ public class OrderManagerTest {
 		anotherOrder.setUnits(10000);
 		anotherOrder.setTriggerDistancePips(3);
 	
-		boolean duplicate = orderManager.isOrderDuplicate(anotherOrder);
-		Assert.assertTrue("Duplicate order must be detected", duplicate);
+		try {
+			orderManager.createStopOrder(anotherOrder);
+			Assert.fail("Duplicate order must be detected");
+		} catch (RuntimeException e) {
+			// everything is good
+		}
+		Assert.assertEquals(1, orderDao.getOrders().size());
 	}
 	
 	@Test
-	public void isOrderDuplicate_WhenOrderNotDuplicate_ShouldRetrunFalse() {
+	public void createStopOrder_WhenOrderNotDuplicate_ShouldCreatePendingOrder() {
 		orderDao.createOrder(createEURUSDOrder());
 		Order anotherOrder = new Order();
 		anotherOrder.setInstrument("USD_CAD");
@@ -141,8 +245,8 @@ public class OrderManagerTest {
 		anotherOrder.setUnits(10000);
 		anotherOrder.setTriggerDistancePips(3);
 	
-		boolean duplicate = orderManager.isOrderDuplicate(anotherOrder);
-		Assert.assertFalse("Not duplicate order must be detected", duplicate);
+		long orderId = orderManager.createStopOrder(anotherOrder);
+		Assert.assertNotNull("Not duplicate order must be created", orderDao.getOrder(orderId));
 	}
 
 	@Test
@@ -153,6 +257,34 @@ public class OrderManagerTest {
 		Assert.assertNotNull("Order must be existed in the system", order);
 	}
 	
+	@Test
+	public void createStopOrders_WhenBatchHasInvalidAndDuplicateOrders_ShouldCreateOnlyValidOnesAndReportEachOrder() {
+		Order pendingOrder = createUSDCADOrder();
+		orderDao.createOrder(pendingOrder);
+		Order invalidOrder = createEURUSDOrder();
+		invalidOrder.setAction(null);
+		Order gbpusd = createEURUSDOrder();
+		gbpusd.setInstrument("gbp_usd");
+		
+		List<BatchOrderResult> results = orderManager.createStopOrders(Arrays.asList(createEURUSDOrder(), 
+				invalidOrder, createUSDCADOrder(), createEURUSDOrder(), gbpusd));
+		
+		Assert.assertEquals(5, results.size());
+		Assert.assertEquals(BatchOrderResult.Status.CREATED, results.get(0).getStatus());
+		Assert.assertEquals(BatchOrderResult.Status.INVALID, results.get(1).getStatus());
+		Assert.assertEquals("Order already pending must be rejected", 
+				BatchOrderResult.Status.DUPLICATE, results.get(2).getStatus());
+		Assert.assertEquals("Order repeated in the batch must be rejected", 
+				BatchOrderResult.Status.DUPLICATE, results.get(3).getStatus());
+		Assert.assertEquals(BatchOrderResult.Status.CREATED, results.get(4).getStatus());
+		
+		Assert.assertEquals("EUR_USD", orderDao.getOrder(results.get(0).getOrderId()).getInstrument());
+		Assert.assertEquals("GBP_USD", orderDao.getOrder(results.get(4).getOrderId()).getInstrument());
+		Assert.assertNull(results.get(1).getOrderId());
+		Assert.assertEquals(3, orderDao.getOrders().size());
+		Assert.assertEquals("Every created order must be watched", 2, orderManager.getActiveWatchCount());
+	}
+	
 	@Test
 	public void watchPriceAndPlaceStopOrder_WhenPriceReached_ShouldPlaceOandaStopOrderAndRemovePendingOrder() {
 		InstrumentCandlesResponse instrumentCandleResponse1 = mock(InstrumentCandlesResponse.class);
@@ -187,6 +319,7 @@ public class OrderManagerTest {
 		
 		// check results
 		Assert.assertNull("Pending order must have been removed once Oanda Stop order is placed.", orderDao.getOrder(eurusd.getOrderId()));
+		Assert.assertEquals("Placed order must be kept as history", "PLACED", getStoredStatus(eurusd.getOrderId()));
 		
 		try {
 			verify(instrumentContextMock, times(2)).candles(any(InstrumentCandlesRequest.class));
@@ -197,19 +330,122 @@ public class OrderManagerTest {
 	}
 
 	@Test
-	public void watchPriceToReachZone_WhenOandaExceptionOnPriceCheck_ShouldContinueChekingPrice() {
+	public void createStopOrder_WhenPriceReached_ShouldPlaceOandaStopOrderWithoutDedicatedWatcherThread() throws Exception {
+		InstrumentCandlesResponse instrumentCandleResponse1 = mock(InstrumentCandlesResponse.class);
+		Candlestick candlestick1 = new Candlestick();
+		CandlestickData candleData1 = new CandlestickData();
+		candlestick1.setMid(candleData1);
+		candleData1.setC(1.0140);
+		when(instrumentCandleResponse1.getCandles()).thenReturn(Arrays.asList(candlestick1));
+		
+		OrderCreateResponse orderResponse = mock(OrderCreateResponse.class);
+		when(orderResponse.getOrderCancelTransaction()).thenReturn(null);
+		when(orderResponse.getOrderCreateTransaction()).thenReturn(createDummyTransaction());
+		Set<Thread> pollingThreads = ConcurrentHashMap.newKeySet();
+		AtomicInteger polls = new AtomicInteger();
+		when(instrumentContextMock.candles(any(InstrumentCandlesRequest.class))).thenAnswer(invocation -> {
+			pollingThreads.add(Thread.currentThread());
+			polls.incrementAndGet();
+			return instrumentCandleResponse1;
+		});
+		when(orderContextMock.create(any(OrderCreateRequest.class))).thenReturn(orderResponse);
+		
+		// price stays far above these BUY orders so they are watched for the whole test
+		List<String> instruments = Arrays.asList("GBP_USD", "USD_CAD", "USD_CHF", "AUD_USD", "NZD_USD", "EUR_GBP", 
+				"EUR_CHF", "EUR_CAD", "EUR_AUD", "GBP_CHF", "GBP_CAD", "GBP_AUD", "AUD_CAD", "AUD_CHF", "AUD_NZD", 
+				"NZD_CAD", "CAD_CHF", "EUR_NZD", "GBP_NZD");
+		for (String instrument : instruments) {
+			Order order = createEURUSDOrder();
+			order.setInstrument(instrument);
+			order.setAction(OrderAction.BUY);
+			order.setStopEntry(0.5);
+			order.setTargetProfit(0.6);
+			order.setStopLoss(0.4);
+			orderManager.createStopOrder(order);
+		}
+		long orderId = orderManager.createStopOrder(createEURUSDOrder());
+		
+		for (int i = 0; i < 50 && orderDao.getOrder(orderId) != null; i++)
+			Thread.sleep(100);
+		for (int i = 0; i < 50 && polls.get() < 3 * instruments.size(); i++)
+			Thread.sleep(100);
+		
+		Assert.assertNull("Pending order must have been removed once Oanda Stop order is placed.", orderDao.getOrder(orderId));
+		verify(orderContextMock).create(any(OrderCreateRequest.class));
+		Assert.assertEquals(instruments.size(), orderManager.getActiveWatchCount());
+		Assert.assertTrue("Order watches must run on the fixed watcher scheduler, not a thread per order", 
+				pollingThreads.size() <= watcherThreads);
+		for (Thread thread : pollingThreads)
+			Assert.assertTrue(thread.getName().startsWith("order-watcher-"));
+	}
+
+	@Test
+	public void createStopOrder_WhenOrderPlacedAndRejected_ShouldRecordLatencyAndRejection() throws Exception {
+		InstrumentCandlesResponse instrumentCandleResponse1 = mock(InstrumentCandlesResponse.class);
+		Candlestick candlestick1 = new Candlestick();
+		CandlestickData candleData1 = new CandlestickData();
+		candlestick1.setMid(candleData1);
+		candleData1.setC(1.0140);
+		when(instrumentCandleResponse1.getCandles()).thenReturn(Arrays.asList(candlestick1));
+		
+		OrderCreateResponse orderResponse = mock(OrderCreateResponse.class);
+		when(orderResponse.getOrderCancelTransaction())
+				.thenReturn(new OrderCancelTransaction().setReason(OrderCancelReason.MARKET_HALTED));
+		when(orderResponse.getOrderCreateTransaction()).thenReturn(createDummyTransaction());
+		when(instrumentContextMock.candles(any(InstrumentCandlesRequest.class))).thenReturn(instrumentCandleResponse1);
+		when(orderContextMock.create(any(OrderCreateRequest.class))).thenReturn(orderResponse);
+		Timer triggerToCreated = meterRegistry.get("oanda.order.trigger.to.created").timer();
+		long placedBefore = triggerToCreated.count();
+		
+		long orderId = orderManager.createStopOrder(createEURUSDOrder());
+		for (int i = 0; i < 50 && orderDao.getOrder(orderId) != null; i++)
+			Thread.sleep(100);
+		
+		Assert.assertEquals(placedBefore + 1, triggerToCreated.count());
+		Assert.assertTrue(meterRegistry.get("oanda.order.rejected").tag("reason", "MARKET_HALTED").counter().count() >= 1);
+		Assert.assertTrue(meterRegistry.get("oanda.price.fetch").tag("instrument", "EUR_USD").timer().count() >= 1);
+		Assert.assertTrue(meterRegistry.get("oanda.trigger.evaluation").tag("instrument", "EUR_USD").timer().count() >= 1);
+	}
+
+	@Test
+	public void watchPriceAndPlaceStopOrder_WhenOrderRemovedByAnotherNode_ShouldNotPlaceOandaStopOrder() throws Exception {
 		InstrumentCandlesResponse instrumentCandleResponse1 = mock(InstrumentCandlesResponse.class);
 		Candlestick candlestick1 = new Candlestick();
 		CandlestickData candleData1 = new CandlestickData();
 		candlestick1.setMid(candleData1);
 		candleData1.setC(1.0140);
 		when(instrumentCandleResponse1.getCandles()).thenReturn(Arrays.asList(candlestick1));
+		when(instrumentContextMock.candles(any(InstrumentCandlesRequest.class))).thenReturn(instrumentCandleResponse1);
 		
+		Order eurusd = createEURUSDOrder();
+		orderDao.createOrder(eurusd);
+		// another node sharing the store placed or canceled it
+		orderStore.removeOrder(eurusd.getOrderId(), OrderStatus.TRIGGERED);
+		
+		orderManager.watchPriceAndPlaceStopOrder(eurusd);
+		
+		verify(orderContextMock, never()).create(any(OrderCreateRequest.class));
+		Assert.assertNull(orderDao.getOrder(eurusd.getOrderId()));
+	}
+
+	@Test
+	public void watchPriceAndPlaceStopOrder_WhenOandaExceptionOnPriceCheck_ShouldContinueChekingPrice() {
+		InstrumentCandlesResponse instrumentCandleResponse1 = mock(InstrumentCandlesResponse.class);
+		Candlestick candlestick1 = new Candlestick();
+		CandlestickData candleData1 = new CandlestickData();
+		candlestick1.setMid(candleData1);
+		candleData1.setC(1.0140);
+		when(instrumentCandleResponse1.getCandles()).thenReturn(Arrays.asList(candlestick1));
+		
+		OrderCreateResponse orderResponse = mock(OrderCreateResponse.class);
+		when(orderResponse.getOrderCancelTransaction()).thenReturn(null);
+		when(orderResponse.getOrderCreateTransaction()).thenReturn(createDummyTransaction());
 		try {
 			when(instrumentContextMock.candles(any(InstrumentCandlesRequest.class)))
 				.thenThrow(new ExecuteException(new Exception("Unit test price check exception 1")))
 				.thenThrow(new ExecuteException(new Exception("Unit test price check exception 2")))
 				.thenReturn(instrumentCandleResponse1);
+			when(orderContextMock.create(any(OrderCreateRequest.class))).thenReturn(orderResponse);
 		} catch (RequestException | ExecuteException e) {
 			e.printStackTrace();
 		}
@@ -218,14 +454,12 @@ public class OrderManagerTest {
 		orderDao.createOrder(eurusd);
 		
 		// call method under test
-		try {
-			orderManager.watchPriceToReachZone(eurusd);
-		} catch (Exception e1) {
-			Assert.fail("Exception in price check should not stop the loop");
-		}
+		orderManager.watchPriceAndPlaceStopOrder(eurusd);
 		
+		Assert.assertEquals("Exception in price check should not stop the loop", "PLACED", getStoredStatus(eurusd.getOrderId()));
 		try {
 			verify(instrumentContextMock, times(3)).candles(any(InstrumentCandlesRequest.class));
+			verify(orderContextMock).create(any(OrderCreateRequest.class));
 		} catch (RequestException | ExecuteException e) {
 			e.printStackTrace();
 		}
@@ -271,6 +505,34 @@ public class OrderManagerTest {
 		
 	}
 
+	@Test
+	public void cancelPendingStopOrder_WhenOrderWatched_ShouldReleaseWatcherImmediately() throws Exception {
+		InstrumentCandlesResponse instrumentCandleResponse1 = mock(InstrumentCandlesResponse.class);
+		Candlestick candlestick1 = new Candlestick();
+		CandlestickData candleData1 = new CandlestickData();
+		candlestick1.setMid(candleData1);
+		candleData1.setC(1.0252);
+		when(instrumentCandleResponse1.getCandles()).thenReturn(Arrays.asList(candlestick1));
+		when(instrumentContextMock.candles(any(InstrumentCandlesRequest.class))).thenReturn(instrumentCandleResponse1);
+		
+		Order eurusd = createEURUSDOrder();
+		orderDao.createOrder(eurusd);
+		Thread watcher = new Thread(() -> orderManager.watchPriceAndPlaceStopOrder(eurusd));
+		watcher.start();
+		for (int i = 0; i < 50 && orderManager.getActiveWatchCount() == 0; i++)
+			Thread.sleep(10);
+		
+		long cancelTime = System.nanoTime();
+		orderManager.cancelPendingStopOrder(eurusd.getOrderId());
+		watcher.join(1000);
+		
+		Assert.assertFalse("Watcher must be released once the order is canceled", watcher.isAlive());
+		Assert.assertTrue("Watcher must be released within milliseconds", 
+				System.nanoTime() - cancelTime < TimeUnit.MILLISECONDS.toNanos(200));
+		Assert.assertEquals(0, orderManager.getActiveWatchCount());
+		verify(orderContextMock, never()).create(any(OrderCreateRequest.class));
+	}
+
 	@Test
 	public void watchPriceAndPlaceStopOrder_WhenOandaExceptionOnPlacingOrder_ShouldStopOrderWatchAndRemovePendingOrder() {
 		InstrumentCandlesResponse instrumentCandleResponse1 = mock(InstrumentCandlesResponse.class);
@@ -298,6 +560,7 @@ public class OrderManagerTest {
 		
 		// check results
 		Assert.assertNull("Pending order must have been removed if Oanda exception happens.", orderDao.getOrder(eurusd.getOrderId()));
+		Assert.assertEquals("FAILED", getStoredStatus(eurusd.getOrderId()));
 		
 		try {
 			verify(instrumentContextMock, times(1)).candles(any(InstrumentCandlesRequest.class));
@@ -326,6 +589,7 @@ public class OrderManagerTest {
 			
 			Order theOrder = orderDao.getOrder(orderId);
 			Assert.assertNull("Order must be removed.", theOrder);
+			Assert.assertEquals("CANCELLED", getStoredStatus(orderId));
 		} catch (RuntimeException e) {
 			Assert.fail(e.getMessage());
 			e.printStackTrace();
@@ -344,141 +608,115 @@ public class OrderManagerTest {
 	}
 
 	@Test
-	public void priceMeetsOrderPlacementCondition_WhenBuyOrderAndCurrentPriceAboveTriggerValue_ShouldReturnFalse() {
+	public void getOrderPlacementTicks_WhenBuyOrderAndCurrentPriceAboveTriggerValue_ShouldNotTrigger() {
 		Order order = new Order();
 		order.setInstrument("GBP_USD");
 		order.setAction(OrderAction.BUY);
 		order.setStopEntry(1.2345);
 		order.setTriggerDistancePips(3);
 		
-		Candlestick candlestick = new Candlestick();
-		CandlestickData candleData = new CandlestickData();
-		candlestick.setMid(candleData);
-		candleData.setC(1.3256);
-		
-		boolean result = orderManager.priceMeetsOrderPlacementCondition(candlestick, order);
-		Assert.assertFalse("Current price is still above triggering value and doesn't meet order placement criteria", result);
+		Assert.assertFalse("Current price is still above triggering value and doesn't meet order placement criteria", isTriggeredAt(order, 1.3256));
 	}
 	
 	@Test
-	public void priceMeetsOrderPlacementCondition_WhenBuyOrderAndCurrentPriceLessThanTriggerValue_ShouldReturnTrue() {
+	public void getOrderPlacementTicks_WhenBuyOrderAndCurrentPriceLessThanTriggerValue_ShouldTrigger() {
 		Order order = new Order();
 		order.setInstrument("GBP_USD");
 		order.setAction(OrderAction.BUY);
 		order.setStopEntry(1.2345);
 		order.setTriggerDistancePips(3);
 		
-		Candlestick candlestick = new Candlestick();
-		CandlestickData candleData = new CandlestickData();
-		candlestick.setMid(candleData);
-		candleData.setC(1.2335);
-		
-		boolean result = orderManager.priceMeetsOrderPlacementCondition(candlestick, order);
-		Assert.assertTrue("Current price is less than triggering value and meets order placement criteria", result);
+		Assert.assertTrue("Current price is less than triggering value and meets order placement criteria", isTriggeredAt(order, 1.2335));
 	}
 	
 	@Test
-	public void priceMeetsOrderPlacementCondition_WhenBuyOrderAndCurrentPriceEqualsTriggerValue_ShouldReturnTrue() {
+	public void getOrderPlacementTicks_WhenBuyOrderAndCurrentPriceEqualsTriggerValue_ShouldTrigger() {
 		Order order = new Order();
 		order.setInstrument("GBP_USD");
 		order.setAction(OrderAction.BUY);
 		order.setStopEntry(1.2345);
 		order.setTriggerDistancePips(3);
 		
-		Candlestick candlestick = new Candlestick();
-		CandlestickData candleData = new CandlestickData();
-		candlestick.setMid(candleData);
-		candleData.setC(1.2342);
-		
-		boolean result = orderManager.priceMeetsOrderPlacementCondition(candlestick, order);
-		Assert.assertTrue("Current price is equal to triggering value and meets order placement criteria", result);
+		Assert.assertTrue("Current price is equal to triggering value and meets order placement criteria", isTriggeredAt(order, 1.2342));
 	}
 	
 	@Test
-	public void priceMeetsOrderPlacementCondition_WhenSellOrderAndCurrentPriceMoreThanTriggerValue_ShouldReturnTrue() {
+	public void getOrderPlacementTicks_WhenSellOrderAndCurrentPriceMoreThanTriggerValue_ShouldTrigger() {
 		Order order = new Order();
 		order.setInstrument("GBP_USD");
 		order.setAction(OrderAction.SELL);
 		order.setStopEntry(1.2345);
 		order.setTriggerDistancePips(3);
 		
-		Candlestick candlestick = new Candlestick();
-		CandlestickData candleData = new CandlestickData();
-		candlestick.setMid(candleData);
-		candleData.setC(1.2352);
-		
-		boolean result = orderManager.priceMeetsOrderPlacementCondition(candlestick, order);
-		Assert.assertTrue("Current price is above triggering value and meets order placement criteria", result);
+		Assert.assertTrue("Current price is above triggering value and meets order placement criteria", isTriggeredAt(order, 1.2352));
 	}
 	
 	@Test
-	public void priceMeetsOrderPlacementCondition_WhenSellOrderAndCurrentPriceBelowTriggerValue_ShouldReturnFalse() {
+	public void getOrderPlacementTicks_WhenSellOrderAndCurrentPriceBelowTriggerValue_ShouldNotTrigger() {
 		Order order = new Order();
 		order.setInstrument("GBP_USD");
 		order.setAction(OrderAction.SELL);
 		order.setStopEntry(1.2345);
 		order.setTriggerDistancePips(3);
 		
-		Candlestick candlestick = new Candlestick();
-		CandlestickData candleData = new CandlestickData();
-		candlestick.setMid(candleData);
-		candleData.setC(1.2145);
-		
-		boolean result = orderManager.priceMeetsOrderPlacementCondition(candlestick, order);
-		Assert.assertFalse("Current price is below triggering value and doesn't meet order placement criteria", result);
+		Assert.assertFalse("Current price is below triggering value and doesn't meet order placement criteria", isTriggeredAt(order, 1.2145));
 	}
 	
 	@Test
-	public void priceMeetsOrderPlacementCondition_WhenSellOrderAndCurrentPriceEqualsTriggerValue_ShouldReturnTrue() {
+	public void getOrderPlacementTicks_WhenSellOrderAndCurrentPriceEqualsTriggerValue_ShouldTrigger() {
 		Order order = new Order();
 		order.setInstrument("GBP_USD");
 		order.setAction(OrderAction.SELL);
 		order.setStopEntry(1.2345);
 		order.setTriggerDistancePips(3);
 		
-		Candlestick candlestick = new Candlestick();
-		CandlestickData candleData = new CandlestickData();
-		candlestick.setMid(candleData);
-		candleData.setC(1.2348);
-		
-		boolean result = orderManager.priceMeetsOrderPlacementCondition(candlestick, order);
-		Assert.assertTrue("Current price is equal to triggering value and meets order placement criteria", result);
+		Assert.assertTrue("Current price is equal to triggering value and meets order placement criteria", isTriggeredAt(order, 1.2348));
 	}
 
 	@Test
-	public void convertPip2PriceValue_WhenJPY_ShouldDivideBy100() {
-		double result = orderManager.convertPip2PriceValue(5, "USD_JPY");
-		Assert.assertEquals("Pip value should have been divided by 100", 0.05, result, 0);
+	public void getOrderPlacementTicks_WhenJPY_ShouldMoveByHundredthsPerPip() {
+		Order order = new Order();
+		order.setInstrument("USD_JPY");
+		order.setAction(OrderAction.BUY);
+		order.setStopEntry(109.41);
+		order.setTriggerDistancePips(5);
+		
+		Assert.assertEquals("Pip value should have been 0.01", Price.toTicks(109.36), orderManager.getOrderPlacementTicks(order));
 	}
 	
 	@Test
-	public void convertPip2PriceValue_WhenNonJPY_ShouldDivideBy10000() {
-		double result = orderManager.convertPip2PriceValue(5, "USD_CAD");
-		Assert.assertEquals("Pip value should have been divided by 10000", 0.0005, result, 0);
+	public void getOrderPlacementTicks_WhenNonJPY_ShouldMoveByTenThousandthsPerPip() {
+		Order order = new Order();
+		order.setInstrument("USD_CAD");
+		order.setAction(OrderAction.BUY);
+		order.setStopEntry(1.2845);
+		order.setTriggerDistancePips(5);
+		
+		Assert.assertEquals("Pip value should have been 0.0001", Price.toTicks(1.2840), orderManager.getOrderPlacementTicks(order));
 	}
 	
 	@Test
-	public void getOrderPlacementPrice_WhenBuyOrder_ShouldSubtractTriggerPipsFromStopPrice() {
+	public void getOrderPlacementTicks_WhenBuyOrder_ShouldSubtractTriggerPipsFromStopPrice() {
 		Order order = new Order();
 		order.setInstrument("GBP_USD");
 		order.setAction(OrderAction.BUY);
 		order.setStopEntry(1.2345);
 		order.setTriggerDistancePips(5);
 		
-		double result = orderManager.getOrderPlacementPrice(order);
-		Assert.assertEquals("Order placement price is wrong", 1.2340, result, 0.000001);
+		long result = orderManager.getOrderPlacementTicks(order);
+		Assert.assertEquals("Order placement price is wrong", Price.toTicks(1.2340), result);
 	}
 	
 	@Test
-	public void getOrderPlacementPrice_WhenSellOrder_ShouldAddTriggerPipsToStopPrice() {
+	public void getOrderPlacementTicks_WhenSellOrder_ShouldAddTriggerPipsToStopPrice() {
 		Order order = new Order();
 		order.setInstrument("GBP_USD");
 		order.setAction(OrderAction.SELL);
 		order.setStopEntry(1.2345);
 		order.setTriggerDistancePips(5);
 		
-		double result = orderManager.getOrderPlacementPrice(order);
-		Assert.assertEquals("Order placement price is wrong", 1.2350, result, 0.000001);		
+		long result = orderManager.getOrderPlacementTicks(order);
+		Assert.assertEquals("Order placement price is wrong", Price.toTicks(1.2350), result);		
 	}
 
 	private Transaction createDummyTransaction() {
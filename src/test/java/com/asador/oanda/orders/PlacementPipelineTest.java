@@ -0,0 +1,179 @@
+package com.asador.oanda.orders;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PlacementPipelineTest {
+
+	private PlacementPipeline pipeline = new PlacementPipeline(4);
+
+	@After
+	public void tearDown() {
+		pipeline.shutdown();
+	}
+
+	private void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Test
+	public void submit_WhenSameInstrument_ShouldPlaceOneAtATimeInTriggerOrder() throws Exception {
+		List<Integer> placed = new CopyOnWriteArrayList<>();
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+		List<CompletableFuture<Void>> placements = new ArrayList<>();
+
+		for (int i = 0; i < 20; i++) {
+			int priority = i;
+			placements.add(pipeline.submit("EUR_USD", () -> {
+				maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+				sleep(5);
+				placed.add(priority);
+				running.decrementAndGet();
+			}));
+		}
+		CompletableFuture.allOf(placements.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+
+		Assert.assertEquals("Orders of an instrument must never be placed concurrently", 1, maxRunning.get());
+		for (int i = 0; i < placed.size(); i++)
+			Assert.assertEquals("Orders must be placed in trigger order", i, placed.get(i).intValue());
+	}
+
+	@Test
+	public void submit_WhenManyInstruments_ShouldPlaceInParallelUpToWorkerCount() throws Exception {
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+		List<CompletableFuture<Void>> placements = new ArrayList<>();
+
+		for (int i = 0; i < 40; i++) {
+			placements.add(pipeline.submit("INSTRUMENT_" + (i % 10), () -> {
+				maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+				sleep(20);
+				running.decrementAndGet();
+			}));
+		}
+		CompletableFuture.allOf(placements.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+
+		Assert.assertTrue("Instruments must be placed in parallel", maxRunning.get() > 1);
+		Assert.assertTrue("Parallelism must be bounded by the workers", maxRunning.get() <= 4);
+	}
+
+	@Test
+	public void submit_WhenOneInstrumentBursts_ShouldNotHoldUpOtherInstruments() throws Exception {
+		pipeline = new PlacementPipeline(1);
+		CountDownLatch burstStarted = new CountDownLatch(1);
+		List<String> placed = new CopyOnWriteArrayList<>();
+		for (int i = 0; i < 10; i++)
+			pipeline.submit("EUR_USD", () -> {
+				burstStarted.countDown();
+				sleep(10);
+				placed.add("EUR_USD");
+			});
+		burstStarted.await();
+
+		pipeline.submit("USD_JPY", () -> placed.add("USD_JPY")).get(5, TimeUnit.SECONDS);
+
+		Assert.assertTrue("Other instrument must be placed before the burst is over",
+				placed.indexOf("USD_JPY") < 9);
+	}
+
+	@Test
+	public void getStats_ShouldReportQueueDepthAndPlacementLatency() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		List<CompletableFuture<Void>> placements = new ArrayList<>();
+		for (int i = 0; i < 3; i++)
+			placements.add(pipeline.submit("EUR_USD", () -> {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}));
+		sleep(50);
+
+		Assert.assertEquals("Orders behind the one being placed must be queued", 2, pipeline.getStats().getQueueDepth());
+
+		release.countDown();
+		CompletableFuture.allOf(placements.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+		PlacementPipeline.PlacementStats stats = pipeline.getStats();
+		Assert.assertEquals(0, stats.getQueueDepth());
+		Assert.assertEquals(3, stats.getPlacedCount());
+		Assert.assertTrue(stats.getMaxLatencyMillis() >= 50);
+		Assert.assertTrue(stats.getAverageLatencyMillis() > 0);
+	}
+
+	@Test
+	public void submit_WhenPlacementFails_ShouldCompleteExceptionallyAndKeepPlacing() throws Exception {
+		CompletableFuture<Void> failed = pipeline.submit("EUR_USD", () -> {
+			throw new RuntimeException("Unit test placement failure");
+		});
+		CompletableFuture<Void> next = pipeline.submit("EUR_USD", () -> {});
+
+		next.get(5, TimeUnit.SECONDS);
+		Assert.assertTrue(failed.isCompletedExceptionally());
+	}
+
+	@Test
+	public void submit_WhenShutDown_ShouldRejectWithoutQueueing() throws Exception {
+		pipeline.shutdown();
+
+		CompletableFuture<Void> rejected = pipeline.submit("EUR_USD", () -> {});
+
+		Assert.assertTrue(rejected.isCompletedExceptionally());
+		try {
+			rejected.join();
+			Assert.fail("Placement must be rejected");
+		} catch (CompletionException e) {
+			Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+		}
+		Assert.assertEquals(0, pipeline.getQueueDepth());
+	}
+
+	@Test
+	public void shutdown_WhenPlacementsQueued_ShouldRejectThem() throws Exception {
+		pipeline = new PlacementPipeline(1);
+		CountDownLatch placing = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CompletableFuture<Void> running = pipeline.submit("EUR_USD", () -> {
+			placing.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		CompletableFuture<Void> sameLane = pipeline.submit("EUR_USD", () -> {});
+		CompletableFuture<Void> otherLane = pipeline.submit("USD_JPY", () -> {});
+		placing.await();
+
+		pipeline.shutdown();
+
+		running.get(5, TimeUnit.SECONDS);
+		for (CompletableFuture<Void> queued : Arrays.asList(sameLane, otherLane)) {
+			try {
+				queued.get(5, TimeUnit.SECONDS);
+				Assert.fail("Queued placement must be rejected");
+			} catch (ExecutionException e) {
+				Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+			}
+		}
+		Assert.assertEquals(0, pipeline.getQueueDepth());
+	}
+}
@@ -0,0 +1,102 @@
+package com.asador.oanda.orders;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.asador.oanda.orders.domain.Order;
+import com.asador.oanda.orders.domain.OrderAction;
+import com.asador.oanda.pricing.Price;
+
+public class PriceTriggerTest {
+
+	private PriceTrigger createTrigger() {
+		Order order = new Order();
+		order.setOrderId(1);
+		order.setInstrument("EUR_USD");
+		order.setAction(OrderAction.BUY);
+		return new PriceTrigger(order, Price.toTicks(1.2010), null);
+	}
+
+	@Test
+	public void cancel_WhenTriggeredButNotPlacedYet_ShouldPreventPlacement() {
+		PriceTrigger trigger = createTrigger();
+
+		Assert.assertTrue(trigger.fire(1.2000));
+		Assert.assertTrue("Triggered order can still be canceled", trigger.cancel());
+		Assert.assertFalse("Canceled order must never be placed", trigger.startPlacing());
+	}
+
+	@Test
+	public void cancel_WhenOrderBeingPlaced_ShouldFail() {
+		PriceTrigger trigger = createTrigger();
+
+		Assert.assertTrue(trigger.fire(1.2000));
+		Assert.assertTrue(trigger.startPlacing());
+		Assert.assertFalse("Order being placed cannot be canceled", trigger.cancel());
+	}
+
+	@Test
+	public void fire_WhenCanceled_ShouldNotTrigger() {
+		PriceTrigger trigger = createTrigger();
+
+		Assert.assertTrue(trigger.cancel());
+		Assert.assertFalse(trigger.fire(1.2000));
+		Assert.assertFalse(trigger.startPlacing());
+	}
+
+	@Test
+	public void cancelWatching_WhenTriggered_ShouldLeaveTriggerAlone() {
+		PriceTrigger trigger = createTrigger();
+
+		Assert.assertTrue(trigger.fire(1.2000));
+		Assert.assertFalse(trigger.cancelWatching());
+		Assert.assertTrue(trigger.startPlacing());
+	}
+
+	@Test
+	public void awaitResolution_WhenCanceled_ShouldReturn() throws Exception {
+		PriceTrigger trigger = createTrigger();
+		CountDownLatch released = new CountDownLatch(1);
+		Thread watcher = new Thread(() -> {
+			try {
+				trigger.awaitResolution();
+				released.countDown();
+			} catch (InterruptedException e) {
+				// test fails on the assertion below
+			}
+		});
+		watcher.start();
+
+		trigger.cancel();
+		watcher.join(1000);
+		Assert.assertEquals("Watcher must be released as soon as the order is canceled", 0, released.getCount());
+	}
+
+	@Test
+	public void cancel_WhenRacingWithPlacement_ShouldLetExactlyOneWin() throws Exception {
+		for (int i = 0; i < 10000; i++) {
+			PriceTrigger trigger = createTrigger();
+			CyclicBarrier start = new CyclicBarrier(2);
+			AtomicBoolean placed = new AtomicBoolean();
+			Thread placement = new Thread(() -> {
+				try {
+					start.await();
+				} catch (Exception e) {
+					return;
+				}
+				placed.set(trigger.fire(1.2000) && trigger.startPlacing());
+			});
+			placement.start();
+
+			start.await();
+			boolean cancelled = trigger.cancel();
+			placement.join();
+
+			Assert.assertTrue("Either the cancel or the placement must win, never both", cancelled != placed.get());
+		}
+	}
+}
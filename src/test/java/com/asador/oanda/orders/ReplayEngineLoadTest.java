@@ -0,0 +1,86 @@
+package com.asador.oanda.orders;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.asador.oanda.orders.domain.Order;
+import com.asador.oanda.orders.domain.OrderAction;
+
+/**
+ * Replays 20 million random walk ticks of 4 instruments against 10k orders and reports the events per
+ * second. Excluded from the default build, run it with -Dtest=ReplayEngineLoadTest.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class ReplayEngineLoadTest {
+	private final Logger logger = LoggerFactory.getLogger(ReplayEngineLoadTest.class);
+
+	private static final int TICKS_PER_INSTRUMENT = 5_000_000;
+	private static final int ORDER_COUNT = 10_000;
+	private static final String[] INSTRUMENTS = {"EUR_USD", "GBP_USD", "USD_CAD", "AUD_USD"};
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Autowired
+	private ReplayEngine replayEngine;
+
+	@Test
+	public void replay_When20MillionTicks_ShouldReportEventsPerSecond() throws Exception {
+		ReflectionTestUtils.setField(replayEngine, "dataDir", folder.getRoot().getPath());
+		Random random = new Random(42);
+		List<String> files = new ArrayList<>();
+		for (String instrument : INSTRUMENTS) {
+			File file = new File(folder.getRoot(), instrument + ".csv");
+			try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.US_ASCII)) {
+				long time = 1514887200000L;
+				long pricePoints = 120000;
+				for (int i = 0; i < TICKS_PER_INSTRUMENT; i++) {
+					time += 1 + random.nextInt(500);
+					pricePoints = Math.max(100000, Math.min(140000, pricePoints + random.nextInt(5) - 2));
+					writer.write(time + "," + instrument + "," + (pricePoints / 100000) + "." +
+							String.valueOf(100000 + pricePoints % 100000).substring(1));
+					writer.newLine();
+				}
+			}
+			files.add(file.getName());
+		}
+
+		List<Order> orders = new ArrayList<>();
+		for (int i = 0; i < ORDER_COUNT; i++) {
+			Order order = new Order();
+			order.setInstrument(INSTRUMENTS[i % INSTRUMENTS.length]);
+			order.setAction(i % 2 == 0 ? OrderAction.BUY : OrderAction.SELL);
+			order.setStopEntry((110000 + random.nextInt(20000)) / 100000.0);
+			order.setTargetProfit(1.5);
+			order.setStopLoss(1.0);
+			order.setUnits(1000);
+			order.setTriggerDistancePips(3);
+			orders.add(order);
+		}
+
+		ReplayReport report = replayEngine.replay(files, orders);
+		logger.warn("Replayed {} ticks from {} to {} in {} ms, {} events/s, {} of {} orders placed",
+				report.getEvents(), report.getFirstEventTime(), report.getLastEventTime(), report.getElapsedMillis(),
+				report.getEventsPerSecond(), report.getPlacements().size(), ORDER_COUNT);
+
+		Assert.assertEquals((long) TICKS_PER_INSTRUMENT * INSTRUMENTS.length, report.getEvents());
+	}
+}
@@ -0,0 +1,106 @@
+package com.asador.oanda.orders;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.asador.oanda.orders.domain.Order;
+import com.asador.oanda.orders.domain.OrderAction;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class ReplayEngineTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Autowired
+	private ReplayEngine replayEngine;
+
+	@Before
+	public void setup() {
+		ReflectionTestUtils.setField(replayEngine, "dataDir", folder.getRoot().getPath());
+	}
+
+	private void writeFile(String name, String... lines) throws Exception {
+		Files.write(new File(folder.getRoot(), name).toPath(), Arrays.asList(lines), StandardCharsets.US_ASCII);
+	}
+
+	private Order createOrder(String instrument, OrderAction action, double stopEntry) {
+		Order order = new Order();
+		order.setInstrument(instrument);
+		order.setAction(action);
+		order.setStopEntry(stopEntry);
+		order.setTargetProfit(stopEntry);
+		order.setStopLoss(stopEntry);
+		order.setUnits(1000);
+		order.setTriggerDistancePips(5);
+		return order;
+	}
+
+	@Test
+	public void replay_WhenTickFilesOfSeveralInstruments_ShouldPlaceOrdersAtSimulatedTimeOfTrigger() throws Exception {
+		writeFile("EUR_USD.csv", "time,instrument,price",
+				"2018-01-02T10:00:00Z,EUR_USD,1.2030",
+				"2018-01-02T10:00:02Z,EUR_USD,1.2015",
+				"2018-01-02T10:00:04Z,EUR_USD,1.2010");
+		writeFile("GBP_USD.csv",
+				"1514887201000,GBP_USD,1.3500",
+				"1514887203000,GBP_USD,1.3516");
+
+		ReplayReport report = replayEngine.replay(Arrays.asList("EUR_USD.csv", "GBP_USD.csv"), Arrays.asList(
+				createOrder("EUR_USD", OrderAction.BUY, 1.2020), createOrder("GBP_USD", OrderAction.SELL, 1.3510)));
+
+		Assert.assertEquals(5, report.getEvents());
+		Assert.assertEquals("2018-01-02T10:00:00Z", report.getFirstEventTime());
+		Assert.assertEquals("2018-01-02T10:00:04Z", report.getLastEventTime());
+		Assert.assertEquals(2, report.getPlacements().size());
+		ReplayReport.SimulatedPlacement eurusd = report.getPlacements().get(0);
+		Assert.assertEquals("EUR_USD", eurusd.getInstrument());
+		Assert.assertEquals("2018-01-02T10:00:02Z", eurusd.getTime());
+		Assert.assertEquals(1.2015, eurusd.getPrice(), 0);
+		ReplayReport.SimulatedPlacement gbpusd = report.getPlacements().get(1);
+		Assert.assertEquals("GBP_USD", gbpusd.getInstrument());
+		Assert.assertEquals("2018-01-02T10:00:03Z", gbpusd.getTime());
+	}
+
+	@Test
+	public void replay_WhenCandles_ShouldTriggerOnTheExtremesOfEachCandle() throws Exception {
+		writeFile("USD_JPY.csv",
+				"2018-01-02T10:00:00Z,USD_JPY,112.500,112.600,112.400,112.550",
+				"2018-01-02T10:01:00Z,USD_JPY,112.550,112.700,111.900,112.500");
+
+		ReplayReport report = replayEngine.replay(Collections.singletonList("USD_JPY.csv"),
+				Collections.singletonList(createOrder("USD_JPY", OrderAction.BUY, 112.0)));
+
+		Assert.assertEquals(8, report.getEvents());
+		Assert.assertEquals(1, report.getPlacements().size());
+		Assert.assertEquals("2018-01-02T10:01:00Z", report.getPlacements().get(0).getTime());
+		Assert.assertEquals(111.9, report.getPlacements().get(0).getPrice(), 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void replay_WhenFileOutsideDataDir_ShouldThrowException() throws Exception {
+		replayEngine.replay(Collections.singletonList("../orders.csv"), Collections.emptyList());
+	}
+
+	@Test
+	public void parseTicks_ShouldParseDecimalPricesExactly() {
+		Assert.assertEquals(1234500, ReplayFile.parseTicks("1.2345", 0, 6));
+		Assert.assertEquals(109410000, ReplayFile.parseTicks("x,109.41", 2, 8));
+		Assert.assertEquals(2000000, ReplayFile.parseTicks("2", 0, 1));
+	}
+}
@@ -0,0 +1,113 @@
+package com.asador.oanda.orders;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.asador.oanda.orders.domain.Order;
+import com.asador.oanda.orders.domain.OrderAction;
+import com.asador.oanda.pricing.Price;
+
+public class TriggerIndexTest {
+
+	private TriggerIndex triggerIndex = new TriggerIndex();
+
+	private PriceTrigger createTrigger(long orderId, OrderAction action, double placementPrice) {
+		Order order = new Order();
+		order.setOrderId(orderId);
+		order.setInstrument("EUR_USD");
+		order.setAction(action);
+		return new PriceTrigger(order, Price.toTicks(placementPrice), null);
+	}
+
+	private List<Long> orderIdsOf(List<PriceTrigger> triggers) {
+		return triggers.stream().map(trigger -> trigger.getOrder().getOrderId()).collect(Collectors.toList());
+	}
+
+	@Test
+	public void pollTriggered_WhenPriceFallsBelowBuyTriggers_ShouldReturnOnlyCrossedBuyTriggers() {
+		triggerIndex.add(createTrigger(1, OrderAction.BUY, 1.2010));
+		triggerIndex.add(createTrigger(2, OrderAction.BUY, 1.2030));
+		triggerIndex.add(createTrigger(3, OrderAction.BUY, 1.2020));
+		triggerIndex.add(createTrigger(4, OrderAction.SELL, 1.2040));
+
+		List<PriceTrigger> triggered = triggerIndex.pollTriggered(Price.toTicks(1.2020));
+
+		Assert.assertEquals("Highest BUY triggers must be crossed first",
+				Arrays.asList(2L, 3L), orderIdsOf(triggered));
+		Assert.assertEquals(2, triggerIndex.size());
+	}
+
+	@Test
+	public void forEachApproaching_ShouldReturnOnlyTriggersWithinDistanceOfThePrice() {
+		triggerIndex.add(createTrigger(1, OrderAction.BUY, 1.2010));
+		triggerIndex.add(createTrigger(2, OrderAction.BUY, 1.1990));
+		triggerIndex.add(createTrigger(3, OrderAction.BUY, 1.2005));
+		triggerIndex.add(createTrigger(4, OrderAction.SELL, 1.2030));
+		triggerIndex.add(createTrigger(5, OrderAction.SELL, 1.2050));
+		List<PriceTrigger> approaching = new ArrayList<>();
+
+		triggerIndex.forEachApproaching(Price.toTicks(1.2020), Price.toTicks(0.0010), approaching::add);
+
+		Assert.assertEquals("Nearest triggers of each action must come first",
+				Arrays.asList(1L, 4L), orderIdsOf(approaching));
+		Assert.assertEquals("Approaching triggers must stay in the index", 5, triggerIndex.size());
+	}
+
+	@Test
+	public void pollTriggered_WhenPriceRisesAboveSellTriggers_ShouldReturnOnlyCrossedSellTriggers() {
+		triggerIndex.add(createTrigger(1, OrderAction.SELL, 1.2030));
+		triggerIndex.add(createTrigger(2, OrderAction.SELL, 1.2010));
+		triggerIndex.add(createTrigger(3, OrderAction.SELL, 1.2020));
+		triggerIndex.add(createTrigger(4, OrderAction.BUY, 1.2000));
+
+		List<PriceTrigger> triggered = triggerIndex.pollTriggered(Price.toTicks(1.2020));
+
+		Assert.assertEquals("Lowest SELL triggers must be crossed first",
+				Arrays.asList(2L, 3L), orderIdsOf(triggered));
+		Assert.assertEquals(2, triggerIndex.size());
+	}
+
+	@Test
+	public void pollTriggered_WhenNoTriggerCrossed_ShouldReturnEmptyList() {
+		triggerIndex.add(createTrigger(1, OrderAction.BUY, 1.2010));
+		triggerIndex.add(createTrigger(2, OrderAction.SELL, 1.2030));
+
+		Assert.assertTrue(triggerIndex.pollTriggered(Price.toTicks(1.2020)).isEmpty());
+		Assert.assertEquals(2, triggerIndex.size());
+	}
+
+	@Test
+	public void pollTriggered_WhenTriggersShareSamePlacementPrice_ShouldReturnAllOfThem() {
+		triggerIndex.add(createTrigger(1, OrderAction.BUY, 1.2010));
+		triggerIndex.add(createTrigger(2, OrderAction.BUY, 1.2010));
+
+		Assert.assertEquals(2, triggerIndex.pollTriggered(Price.toTicks(1.2010)).size());
+		Assert.assertTrue(triggerIndex.isEmpty());
+	}
+
+	@Test
+	public void pollTriggered_WhenTriggerAlreadyReturned_ShouldNotReturnItAgain() {
+		triggerIndex.add(createTrigger(1, OrderAction.BUY, 1.2010));
+
+		Assert.assertEquals(1, triggerIndex.pollTriggered(Price.toTicks(1.2000)).size());
+		Assert.assertTrue(triggerIndex.pollTriggered(Price.toTicks(1.1990)).isEmpty());
+	}
+
+	@Test
+	public void remove_WhenTriggerRemoved_ShouldNotBeTriggered() {
+		triggerIndex.add(createTrigger(1, OrderAction.BUY, 1.2010));
+		triggerIndex.add(createTrigger(2, OrderAction.SELL, 1.2030));
+
+		Assert.assertNotNull(triggerIndex.remove(1));
+		Assert.assertNotNull(triggerIndex.remove(2));
+		Assert.assertNull("Unknown order must not be removed", triggerIndex.remove(3));
+
+		Assert.assertTrue(triggerIndex.pollTriggered(Price.toTicks(1.2000)).isEmpty());
+		Assert.assertTrue(triggerIndex.pollTriggered(Price.toTicks(1.2040)).isEmpty());
+	}
+}
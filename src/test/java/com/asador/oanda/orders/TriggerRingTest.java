@@ -0,0 +1,175 @@
+package com.asador.oanda.orders;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.asador.oanda.orders.domain.Order;
+import com.asador.oanda.orders.domain.OrderAction;
+
+public class TriggerRingTest {
+
+	private TriggerRing ring = new TriggerRing("trigger-ring-test", 8);
+
+	@After
+	public void tearDown() {
+		ring.stop();
+	}
+
+	private PriceTrigger createTrigger(long orderId) {
+		Order order = new Order();
+		order.setOrderId(orderId);
+		order.setInstrument("EUR_USD");
+		order.setAction(OrderAction.BUY);
+		return new PriceTrigger(order, 1_000_000, null);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void constructor_WhenSizeNotPowerOfTwo_ShouldThrowException() {
+		new TriggerRing("trigger-ring-test", 10);
+	}
+
+	@Test
+	public void publish_ShouldHandleCommandsAndPricesInPublishOrder() throws Exception {
+		List<String> handled = new ArrayList<>();
+		CountDownLatch done = new CountDownLatch(3);
+		ring.start(new TriggerRing.Handler() {
+
+			@Override
+			public void onPrice(String instrument, long priceTicks, double price) {
+				handled.add("price " + instrument + " " + priceTicks);
+				done.countDown();
+			}
+
+			@Override
+			public void onAddTrigger(PriceTrigger trigger) {
+				handled.add("add " + trigger.getOrder().getOrderId());
+				done.countDown();
+			}
+
+			@Override
+			public void onRemoveTrigger(String instrument, long orderId) {
+				handled.add("remove " + instrument + " " + orderId);
+				done.countDown();
+			}
+		});
+
+		ring.publishAddTrigger(createTrigger(1));
+		ring.publishPrice("EUR_USD", 1_000_000, 1.0);
+		ring.publishRemoveTrigger("EUR_USD", 1);
+
+		Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+		Assert.assertEquals(Arrays.asList("add 1", "price EUR_USD 1000000", "remove EUR_USD 1"), handled);
+	}
+
+	@Test
+	public void publish_WhenManyProducersWrapTheRing_ShouldHandleEveryEventOnceInProducerOrder() throws Exception {
+		int producers = 4;
+		int eventsPerProducer = 20_000;
+		long[] lastTicks = new long[producers];
+		CountDownLatch done = new CountDownLatch(producers * eventsPerProducer);
+		List<String> outOfOrder = new ArrayList<>();
+		ring.start(new TriggerRing.Handler() {
+
+			@Override
+			public void onPrice(String instrument, long priceTicks, double price) {
+				int producer = (int) price;
+				if (priceTicks != lastTicks[producer] + 1)
+					outOfOrder.add(instrument + " " + priceTicks);
+				lastTicks[producer] = priceTicks;
+				done.countDown();
+			}
+
+			@Override
+			public void onAddTrigger(PriceTrigger trigger) {
+			}
+
+			@Override
+			public void onRemoveTrigger(String instrument, long orderId) {
+			}
+		});
+
+		List<Thread> threads = new ArrayList<>();
+		for (int p = 0; p < producers; p++) {
+			int producer = p;
+			Thread thread = new Thread(() -> {
+				for (int i = 1; i <= eventsPerProducer; i++)
+					ring.publishPrice("P" + producer, i, producer);
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads)
+			thread.join(10_000);
+
+		Assert.assertTrue("Every event must be handled", done.await(10, TimeUnit.SECONDS));
+		Assert.assertTrue("Events of a producer must be handled in order: " + outOfOrder, outOfOrder.isEmpty());
+		for (int p = 0; p < producers; p++)
+			Assert.assertEquals(eventsPerProducer, lastTicks[p]);
+		// slots are given back once the batch they belong to is handled
+		for (int i = 0; i < 50 && ring.getBacklog() > 0; i++)
+			Thread.sleep(10);
+		Assert.assertEquals(0, ring.getBacklog());
+	}
+
+	@Test
+	public void start_WhenHandlerFails_ShouldKeepHandlingLaterEvents() throws Exception {
+		CountDownLatch handled = new CountDownLatch(1);
+		ring.start(new TriggerRing.Handler() {
+
+			@Override
+			public void onPrice(String instrument, long priceTicks, double price) {
+				if (priceTicks == 1)
+					throw new IllegalStateException("Unit test handler failure");
+				handled.countDown();
+			}
+
+			@Override
+			public void onAddTrigger(PriceTrigger trigger) {
+			}
+
+			@Override
+			public void onRemoveTrigger(String instrument, long orderId) {
+			}
+		});
+
+		ring.publishPrice("EUR_USD", 1, 1.0);
+		ring.publishPrice("EUR_USD", 2, 2.0);
+
+		Assert.assertTrue(handled.await(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void publish_WhenHandlerParked_ShouldWakeItUp() throws Exception {
+		CountDownLatch handled = new CountDownLatch(1);
+		ring.start(new TriggerRing.Handler() {
+
+			@Override
+			public void onPrice(String instrument, long priceTicks, double price) {
+				handled.countDown();
+			}
+
+			@Override
+			public void onAddTrigger(PriceTrigger trigger) {
+			}
+
+			@Override
+			public void onRemoveTrigger(String instrument, long orderId) {
+			}
+		});
+		Thread handlerThread = (Thread) ReflectionTestUtils.getField(ring, "handlerThread");
+		while (handlerThread.getState() != Thread.State.TIMED_WAITING)
+			Thread.yield();
+
+		ring.publishPrice("EUR_USD", 1_000_000, 1.0);
+
+		Assert.assertTrue("Handler must not wait for its park to time out", handled.await(200, TimeUnit.MILLISECONDS));
+	}
+}
@@ -0,0 +1,78 @@
+package com.asador.oanda.orders;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TriggerShardsTest {
+
+	private static final String[] INSTRUMENTS = {"EUR_USD", "GBP_USD", "USD_CAD", "USD_CHF", "AUD_USD",
+			"NZD_USD", "EUR_GBP", "EUR_CHF", "EUR_CAD", "EUR_AUD", "GBP_CHF", "GBP_CAD", "GBP_AUD", "AUD_CAD",
+			"AUD_CHF", "AUD_NZD", "NZD_CAD", "NZD_CHF", "CAD_CHF", "EUR_NZD"};
+
+	private TriggerShards triggerShards = new TriggerShards(4, 1024);
+
+	@After
+	public void tearDown() {
+		triggerShards.stop();
+	}
+
+	@Test
+	public void constructor_WhenNoShardCount_ShouldUseOneShardPerCore() {
+		TriggerShards perCore = new TriggerShards(0, 8);
+
+		Assert.assertEquals(Runtime.getRuntime().availableProcessors(), perCore.getShardCount());
+	}
+
+	@Test
+	public void shardOf_ShouldAlwaysRouteAnInstrumentToTheSameShardAndSpreadInstruments() {
+		Set<Integer> usedShards = new HashSet<>();
+		for (String instrument : INSTRUMENTS) {
+			Assert.assertSame(triggerShards.shardOf(instrument), triggerShards.shardOf(new String(instrument)));
+			usedShards.add(triggerShards.shardIndexOf(instrument));
+		}
+
+		Assert.assertEquals("Instruments must be spread over every shard", 4, usedShards.size());
+	}
+
+	@Test
+	public void start_ShouldHandleEveryInstrumentOnTheThreadOfItsShard() throws Exception {
+		Map<String, Set<String>> threadsByInstrument = new ConcurrentHashMap<>();
+		CountDownLatch done = new CountDownLatch(INSTRUMENTS.length * 100);
+		triggerShards.start(() -> new TriggerRing.Handler() {
+
+			@Override
+			public void onPrice(String instrument, long priceTicks, double price) {
+				threadsByInstrument.computeIfAbsent(instrument, key -> ConcurrentHashMap.newKeySet())
+						.add(Thread.currentThread().getName());
+				done.countDown();
+			}
+
+			@Override
+			public void onAddTrigger(PriceTrigger trigger) {
+			}
+
+			@Override
+			public void onRemoveTrigger(String instrument, long orderId) {
+			}
+		});
+
+		for (int i = 0; i < 100; i++) {
+			for (String instrument : INSTRUMENTS)
+				triggerShards.shardOf(instrument).publishPrice(instrument, i, i);
+		}
+
+		Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+		for (String instrument : INSTRUMENTS)
+			Assert.assertEquals(Collections.singleton("trigger-shard-" + triggerShards.shardIndexOf(instrument)),
+					threadsByInstrument.get(instrument));
+	}
+}
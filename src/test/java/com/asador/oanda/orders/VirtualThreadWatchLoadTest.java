@@ -0,0 +1,114 @@
+package com.asador.oanda.orders;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.asador.oanda.orders.domain.Order;
+import com.asador.oanda.orders.domain.OrderAction;
+import com.oanda.v20.Context;
+import com.oanda.v20.instrument.Candlestick;
+import com.oanda.v20.instrument.CandlestickData;
+import com.oanda.v20.instrument.InstrumentCandlesRequest;
+import com.oanda.v20.instrument.InstrumentCandlesResponse;
+import com.oanda.v20.instrument.InstrumentContext;
+
+/**
+ * Holds 100k order watches on virtual threads against a stubbed instrument context and reports the
+ * platform thread count and heap used. Only runs with the jdk21 profile.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {"oanda.watcher.mode=virtual", "logging.level.com.asador.oanda.orders=WARN"})
+public class VirtualThreadWatchLoadTest {
+	private final Logger logger = LoggerFactory.getLogger(VirtualThreadWatchLoadTest.class);
+
+	private static final int WATCH_COUNT = 100_000;
+	private static final String[] INSTRUMENTS = {"EUR_USD", "GBP_USD", "USD_CAD", "USD_CHF", "AUD_USD",
+			"NZD_USD", "EUR_GBP", "EUR_CHF", "EUR_CAD", "EUR_AUD", "GBP_CHF", "GBP_CAD", "GBP_AUD", "AUD_CAD",
+			"AUD_CHF", "AUD_NZD", "NZD_CAD", "CAD_CHF", "EUR_NZD", "GBP_NZD"};
+
+	@Autowired
+	private OrderManager orderManager;
+
+	@Autowired
+	private Context oandaCtx;
+
+	@Before
+	public void setup() {
+		// price stays far above every BUY trigger so no watch ever completes on its own
+		InstrumentCandlesResponse candlesResponse = mock(InstrumentCandlesResponse.class);
+		Candlestick candlestick = new Candlestick();
+		CandlestickData candleData = new CandlestickData();
+		candlestick.setMid(candleData);
+		candleData.setC(2.0);
+		when(candlesResponse.getCandles()).thenReturn(Arrays.asList(candlestick));
+
+		oandaCtx.instrument = new InstrumentContext(oandaCtx) {
+
+			@Override
+			public InstrumentCandlesResponse candles(InstrumentCandlesRequest request) {
+				return candlesResponse;
+			}
+		};
+	}
+
+	@Test
+	public void createOrderWatch_When100kWatchesOnVirtualThreads_ShouldKeepPlatformThreadCountFlat() throws Exception {
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		long heapBefore = usedHeap();
+		int threadsBefore = threadBean.getThreadCount();
+		long start = System.nanoTime();
+
+		// watches are not persisted, the store is not what is measured here
+		for (int i = 0; i < WATCH_COUNT; i++) {
+			Order order = new Order();
+			order.setOrderId(i + 1);
+			order.setInstrument(INSTRUMENTS[i % INSTRUMENTS.length]);
+			order.setAction(OrderAction.BUY);
+			order.setStopEntry(1.0);
+			order.setTargetProfit(1.1);
+			order.setStopLoss(0.9);
+			order.setUnits(1000);
+			order.setTriggerDistancePips(3);
+			orderManager.createOrderWatch(order);
+		}
+		for (int i = 0; i < 600 && orderManager.getActiveWatchCount() < WATCH_COUNT; i++)
+			Thread.sleep(100);
+		long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+		long heapAfter = usedHeap();
+		int threadsAfter = threadBean.getThreadCount();
+		logger.warn("{} virtual thread watches started in {} ms. Platform threads {} -> {} (peak {}), heap used " +
+				"{} MB -> {} MB, ~{} bytes per watch", orderManager.getActiveWatchCount(), elapsedMillis,
+				threadsBefore, threadsAfter, threadBean.getPeakThreadCount(), heapBefore >> 20, heapAfter >> 20,
+				(heapAfter - heapBefore) / WATCH_COUNT);
+
+		Assert.assertEquals("Every watch must be active", WATCH_COUNT, orderManager.getActiveWatchCount());
+		Assert.assertTrue("Watches must not be backed by platform threads", threadsAfter - threadsBefore < 100);
+
+		for (int i = 0; i < WATCH_COUNT; i++)
+			orderManager.cancelOrderWatch(i + 1);
+		for (int i = 0; i < 600 && orderManager.getActiveWatchCount() > 0; i++)
+			Thread.sleep(100);
+		Assert.assertEquals("Every watch must be released once canceled", 0, orderManager.getActiveWatchCount());
+	}
+
+	private long usedHeap() throws InterruptedException {
+		System.gc();
+		Thread.sleep(200);
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+}
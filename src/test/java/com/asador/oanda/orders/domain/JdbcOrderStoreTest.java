@@ -0,0 +1,180 @@
+package com.asador.oanda.orders.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class JdbcOrderStoreTest {
+
+	private JdbcTemplate jdbcTemplate;
+	private JdbcOrderStore orderStore;
+
+	@Before
+	public void setup() {
+		jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource("jdbc:hsqldb:mem:legacyOrders", "SA", ""));
+		orderStore = new JdbcOrderStore();
+		ReflectionTestUtils.setField(orderStore, "jdbcTemplate", jdbcTemplate);
+	}
+
+	@After
+	public void tearDown() {
+		jdbcTemplate.execute("SHUTDOWN");
+	}
+
+	private Order createOrder(long orderId, String instrument) {
+		Order order = new Order();
+		order.setOrderId(orderId);
+		order.setInstrument(instrument);
+		order.setAction(OrderAction.BUY);
+		order.setUnits(10);
+		order.setStopEntry(5000.1);
+		order.setTargetProfit(5100.1);
+		order.setStopLoss(4950.1);
+		order.setTriggerDistancePips(5);
+		return order;
+	}
+
+	private int getSchemaVersion() {
+		return jdbcTemplate.queryForObject("select max(version) from schema_version", Integer.class);
+	}
+
+	private int countIndexes() {
+		return jdbcTemplate.queryForObject("select count(distinct index_name) from information_schema.system_indexinfo " +
+				"where table_name='PENDING_ORDER' and index_name like 'PENDING_ORDER_%'", Integer.class);
+	}
+
+	@Test
+	public void migrateSchema_WhenPricesInFloatColumns_ShouldConvertThemToTicks() {
+		jdbcTemplate.execute("CREATE TABLE PENDING_ORDER ( ORDER_ID BIGINT, INSTRUMENT CHAR(7), ACTION VARCHAR(5), " +
+				"UNITS INTEGER, STOP_ENTRY FLOAT, TARGET_PROFIT FLOAT, STOP_LOSS FLOAT, TRIGGER_DISTANCE_PIPS TINYINT )");
+		jdbcTemplate.update("insert into pending_order values (1, 'USD_JPY', 'BUY', 10000, 109.41, 110.1, 109.05, 5)");
+
+		orderStore.migrateSchema();
+		orderStore.migrateSchema();
+
+		Order order = orderStore.getOrders().iterator().next();
+		Assert.assertEquals(109410000, order.getStopEntryTicks());
+		Assert.assertEquals(110100000, order.getTargetProfitTicks());
+		Assert.assertEquals(109050000, order.getStopLossTicks());
+		Assert.assertEquals(JdbcOrderStore.SCHEMA_VERSION, getSchemaVersion());
+	}
+
+	@Test
+	public void migrateSchema_WhenTableHasNoKey_ShouldKeyAndIndexItAndKeepOrdersPending() {
+		jdbcTemplate.execute("CREATE TABLE PENDING_ORDER ( ORDER_ID BIGINT, INSTRUMENT CHAR(7), ACTION VARCHAR(5), " +
+				"UNITS INTEGER, STOP_ENTRY BIGINT, TARGET_PROFIT BIGINT, STOP_LOSS BIGINT, TRIGGER_DISTANCE_PIPS TINYINT )");
+		jdbcTemplate.update("insert into pending_order values (1, 'USD_JPY', 'BUY', 10000, 109410000, 110100000, 109050000, 5)");
+
+		orderStore.migrateSchema();
+
+		Order order = orderStore.getOrders().iterator().next();
+		Assert.assertEquals("USD_JPY", order.getInstrument());
+		Assert.assertEquals(109410000, order.getStopEntryTicks());
+		Assert.assertEquals(JdbcOrderStore.SCHEMA_VERSION, getSchemaVersion());
+		Assert.assertEquals("Instrument/action and status indexes must be created", 2, countIndexes());
+		try {
+			orderStore.createOrder(createOrder(1, "USD_JPY"));
+			Assert.fail("Order id must be the primary key");
+		} catch (RuntimeException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void migrateSchema_WhenOrdersShareIdsOrHaveNone_ShouldKeepOneOrderPerId() {
+		jdbcTemplate.execute("CREATE TABLE PENDING_ORDER ( ORDER_ID BIGINT, INSTRUMENT CHAR(7), ACTION VARCHAR(5), " +
+				"UNITS INTEGER, STOP_ENTRY FLOAT, TARGET_PROFIT FLOAT, STOP_LOSS FLOAT, TRIGGER_DISTANCE_PIPS TINYINT )");
+		jdbcTemplate.update("insert into pending_order values (1, 'USD_JPY', 'BUY', 10000, 109.41, 110.1, 109.05, 5)");
+		jdbcTemplate.update("insert into pending_order values (1, 'USD_JPY', 'BUY', 10000, 109.41, 110.1, 109.05, 5)");
+		jdbcTemplate.update("insert into pending_order values (2, 'EUR_USD', 'SELL', 10000, 1.1, 1.09, 1.11, 5)");
+		jdbcTemplate.update("insert into pending_order values (null, 'EUR_USD', 'SELL', 10000, 1.1, 1.09, 1.11, 5)");
+
+		orderStore.migrateSchema();
+
+		Assert.assertEquals(2, orderStore.getOrders().size());
+		Assert.assertEquals(JdbcOrderStore.SCHEMA_VERSION, getSchemaVersion());
+	}
+
+	@Test
+	public void migrateSchema_WhenPreviousMigrationStoppedHalfWay_ShouldFinishIt() {
+		// prices of the first column moved to ticks, the second one converted but not renamed yet
+		jdbcTemplate.execute("CREATE TABLE PENDING_ORDER ( ORDER_ID BIGINT, INSTRUMENT CHAR(7), ACTION VARCHAR(5), " +
+				"UNITS INTEGER, TARGET_PROFIT_TICKS BIGINT, STOP_LOSS FLOAT, TRIGGER_DISTANCE_PIPS TINYINT, STOP_ENTRY BIGINT )");
+		jdbcTemplate.update("insert into pending_order values (1, 'USD_JPY', 'BUY', 10000, 110100000, 109.05, 5, 109410000)");
+
+		orderStore.migrateSchema();
+
+		Order order = orderStore.getOrders().iterator().next();
+		Assert.assertEquals(109410000, order.getStopEntryTicks());
+		Assert.assertEquals(110100000, order.getTargetProfitTicks());
+		Assert.assertEquals(109050000, order.getStopLossTicks());
+
+		// keyed with the status added, but stopped before the last column and index, so no version recorded
+		jdbcTemplate.execute("drop index pending_order_status");
+		jdbcTemplate.execute("alter table pending_order drop column updated_at");
+		jdbcTemplate.update("delete from schema_version where version=3");
+		orderStore.migrateSchema();
+
+		Assert.assertEquals(JdbcOrderStore.SCHEMA_VERSION, getSchemaVersion());
+		Assert.assertEquals(2, countIndexes());
+		Assert.assertEquals(109410000, orderStore.getOrders().iterator().next().getStopEntryTicks());
+	}
+
+	@Test
+	public void migrateSchema_WhenNodesStartTogether_ShouldMigrateOnce() throws Exception {
+		jdbcTemplate.execute("CREATE TABLE PENDING_ORDER ( ORDER_ID BIGINT, INSTRUMENT CHAR(7), ACTION VARCHAR(5), " +
+				"UNITS INTEGER, STOP_ENTRY FLOAT, TARGET_PROFIT FLOAT, STOP_LOSS FLOAT, TRIGGER_DISTANCE_PIPS TINYINT )");
+		jdbcTemplate.update("insert into pending_order values (1, 'USD_JPY', 'BUY', 10000, 109.41, 110.1, 109.05, 5)");
+		ExecutorService nodes = Executors.newFixedThreadPool(4);
+		List<Future<?>> startups = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			JdbcOrderStore nodeStore = new JdbcOrderStore();
+			ReflectionTestUtils.setField(nodeStore, "jdbcTemplate", jdbcTemplate);
+			startups.add(nodes.submit(nodeStore::migrateSchema));
+		}
+		for (Future<?> startup : startups)
+			startup.get(30, TimeUnit.SECONDS);
+		nodes.shutdown();
+
+		Assert.assertEquals(109410000, orderStore.getOrders().iterator().next().getStopEntryTicks());
+		Assert.assertEquals(JdbcOrderStore.SCHEMA_VERSION, getSchemaVersion());
+	}
+
+	@Test
+	public void migrateSchema_WhenNoTable_ShouldCreateCurrentSchema() {
+		orderStore.migrateSchema();
+
+		Assert.assertEquals(JdbcOrderStore.SCHEMA_VERSION, getSchemaVersion());
+		Assert.assertEquals(2, countIndexes());
+		orderStore.createOrder(createOrder(1, "SPX500_USD"));
+		Assert.assertEquals("Instruments longer than currency pairs must fit", "SPX500_USD",
+				orderStore.getOrders().iterator().next().getInstrument());
+	}
+
+	@Test
+	public void removeOrder_ShouldKeepOrderWithItsStatus() {
+		orderStore.migrateSchema();
+		orderStore.createOrder(createOrder(1, "EUR_USD"));
+		orderStore.createOrder(createOrder(2, "GBP_USD"));
+
+		Assert.assertTrue(orderStore.removeOrder(1, OrderStatus.TRIGGERED));
+		Assert.assertFalse("Only one caller can take an order out of pending", orderStore.removeOrder(1, OrderStatus.CANCELLED));
+		orderStore.updateStatus(1, OrderStatus.PLACED);
+
+		Assert.assertEquals(1, orderStore.getOrders().size());
+		Assert.assertEquals(2, orderStore.getOrders().iterator().next().getOrderId());
+		Assert.assertEquals("PLACED", jdbcTemplate.queryForObject("select status from pending_order where order_id=1", String.class));
+		Assert.assertEquals("Ids of orders no longer pending must not be handed out again", 2, orderStore.getLastOrderId());
+	}
+}
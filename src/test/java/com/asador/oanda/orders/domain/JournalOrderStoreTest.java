@@ -0,0 +1,273 @@
+package com.asador.oanda.orders.domain;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JournalOrderStoreTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File journalFile;
+	private JournalOrderStore orderStore;
+
+	@Before
+	public void setup() {
+		journalFile = new File(folder.getRoot(), "orders.journal");
+		orderStore = openStore();
+	}
+
+	@After
+	public void tearDown() {
+		orderStore.close();
+	}
+
+	private JournalOrderStore openStore() {
+		JournalOrderStore store = new JournalOrderStore(journalFile.getPath(), false);
+		store.init();
+		return store;
+	}
+
+	private JournalOrderStore reopenStore() {
+		orderStore.close();
+		orderStore = openStore();
+		return orderStore;
+	}
+
+	private Order createOrder(long orderId) {
+		Order order = new Order();
+		order.setOrderId(orderId);
+		order.setInstrument("GBP_USD");
+		order.setAction(OrderAction.SELL);
+		order.setStopEntry(1.3345);
+		order.setTargetProfit(1.3045);
+		order.setStopLoss(1.3433);
+		order.setUnits(10000);
+		order.setTriggerDistancePips(5);
+		return order;
+	}
+
+	private List<Long> orderIdsOf(Collection<Order> orders) {
+		return orders.stream().map(Order::getOrderId).sorted().collect(Collectors.toList());
+	}
+
+	@Test
+	public void init_WhenJournalReopened_ShouldRecoverOrdersWithAllFields() {
+		orderStore.createOrder(createOrder(1));
+		Order usdjpy = createOrder(2);
+		usdjpy.setInstrument("USD_JPY");
+		usdjpy.setAction(OrderAction.BUY);
+		usdjpy.setStopEntry(109.41);
+		orderStore.createOrder(usdjpy);
+
+		List<Order> recovered = reopenStore().getOrders().stream()
+				.sorted(Comparator.comparingLong(Order::getOrderId)).collect(Collectors.toList());
+
+		Assert.assertEquals(2, recovered.size());
+		Order gbpusd = recovered.get(0);
+		Assert.assertEquals("GBP_USD", gbpusd.getInstrument());
+		Assert.assertEquals(OrderAction.SELL, gbpusd.getAction());
+		Assert.assertEquals(10000, gbpusd.getUnits());
+		Assert.assertEquals(1.3345, gbpusd.getStopEntry(), 0);
+		Assert.assertEquals(1.3045, gbpusd.getTargetProfit(), 0);
+		Assert.assertEquals(1.3433, gbpusd.getStopLoss(), 0);
+		Assert.assertEquals(5, gbpusd.getTriggerDistancePips());
+		Assert.assertEquals("USD_JPY", recovered.get(1).getInstrument());
+		Assert.assertEquals(OrderAction.BUY, recovered.get(1).getAction());
+		Assert.assertEquals(109.41, recovered.get(1).getStopEntry(), 0);
+	}
+
+	@Test
+	public void createOrder_WhenInstrumentLongerThanCurrencyPair_ShouldRecoverIt() {
+		Order spx500 = createOrder(1);
+		spx500.setInstrument("SPX500_USD");
+		spx500.setStopEntry(2700.5);
+		orderStore.createOrder(spx500);
+
+		Order recovered = reopenStore().getOrders().iterator().next();
+
+		Assert.assertEquals("SPX500_USD", recovered.getInstrument());
+		Assert.assertEquals(OrderAction.SELL, recovered.getAction());
+		Assert.assertEquals(2700.5, recovered.getStopEntry(), 0);
+		Assert.assertEquals(5, recovered.getTriggerDistancePips());
+	}
+
+	@Test
+	public void removeOrder_WhenJournalReopened_ShouldNotRecoverRemovedOrders() {
+		orderStore.createOrder(createOrder(1));
+		orderStore.createOrder(createOrder(2));
+
+		Assert.assertTrue(orderStore.removeOrder(1, OrderStatus.CANCELLED));
+		Assert.assertFalse("Removing an unknown order must report it", orderStore.removeOrder(1, OrderStatus.CANCELLED));
+
+		Assert.assertEquals(Arrays.asList(2L), orderIdsOf(reopenStore().getOrders()));
+	}
+
+	@Test
+	public void createOrders_WhenOneOrderCannotBeStored_ShouldStoreNoneOfThem() {
+		orderStore.createOrder(createOrder(1));
+		Order tooLong = createOrder(3);
+		tooLong.setInstrument("GBP_USD_TOO_LONG");
+
+		try {
+			orderStore.createOrders(Arrays.asList(createOrder(2), tooLong));
+			Assert.fail("Storing an instrument longer than the record must fail");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+
+		Assert.assertEquals(Arrays.asList(1L), orderIdsOf(orderStore.getOrders()));
+		orderStore.createOrders(Arrays.asList(createOrder(4), createOrder(5)));
+		Assert.assertEquals(Arrays.asList(1L, 4L, 5L), orderIdsOf(reopenStore().getOrders()));
+	}
+
+	@Test
+	public void init_WhenLastRecordTorn_ShouldRecoverEverythingBeforeIt() throws Exception {
+		orderStore.createOrder(createOrder(1));
+		orderStore.createOrder(createOrder(2));
+		orderStore.close();
+
+		// corrupt the second record as if the process died while writing it
+		try (RandomAccessFile file = new RandomAccessFile(journalFile, "rw")) {
+			file.seek(16 + JournalOrderStore.RECORD_SIZE + 20);
+			file.write(new byte[] {1, 2, 3});
+		}
+		orderStore = openStore();
+
+		Assert.assertEquals(Arrays.asList(1L), orderIdsOf(orderStore.getOrders()));
+		orderStore.createOrder(createOrder(3));
+		Assert.assertEquals(Arrays.asList(1L, 3L), orderIdsOf(reopenStore().getOrders()));
+	}
+
+	@Test
+	public void createOrder_WhenJournalFull_ShouldGrowIt() {
+		for (long orderId = 1; orderId <= 10000; orderId++)
+			orderStore.createOrder(createOrder(orderId));
+
+		Assert.assertEquals(10000, reopenStore().getOrders().size());
+	}
+
+	@Test
+	public void compact_ShouldKeepLiveOrdersAndDropDeadRecords() throws Exception {
+		for (long orderId = 1; orderId <= 10000; orderId++)
+			orderStore.createOrder(createOrder(orderId));
+		for (long orderId = 1; orderId <= 9990; orderId++)
+			orderStore.removeOrder(orderId, OrderStatus.CANCELLED);
+		long sizeBefore = orderStore.getJournalSize();
+
+		orderStore.compactIfNeeded();
+
+		Assert.assertTrue("Journal must shrink", orderStore.getJournalSize() < sizeBefore);
+		Assert.assertEquals(10, orderStore.getOrders().size());
+		orderStore.removeOrder(10000, OrderStatus.CANCELLED);
+		orderStore.createOrder(createOrder(10001));
+		List<Long> recovered = orderIdsOf(reopenStore().getOrders());
+		Assert.assertEquals(10, recovered.size());
+		Assert.assertFalse(recovered.contains(10000L));
+		Assert.assertTrue(recovered.contains(10001L));
+	}
+
+	@Test
+	public void getLastOrderId_WhenRemovedOrdersCompactedAway_ShouldStillCoverThem() throws Exception {
+		orderStore.createOrders(Arrays.asList(createOrder(1), createOrder(2)));
+		orderStore.createOrder(createOrder(3));
+		orderStore.removeOrder(3, OrderStatus.CANCELLED);
+
+		orderStore.compact();
+
+		Assert.assertEquals(3, orderStore.getLastOrderId());
+		Assert.assertEquals(3, reopenStore().getLastOrderId());
+		Assert.assertEquals(Arrays.asList(1L, 2L), orderIdsOf(orderStore.getOrders()));
+	}
+
+	@Test
+	public void compact_WhenJournalCannotBeReplaced_ShouldKeepUsingTheOldJournal() throws Exception {
+		orderStore.close();
+		orderStore = new JournalOrderStore(journalFile.getPath(), false) {
+			@Override
+			void replaceJournal(Path compactionPath) throws IOException {
+				throw new IOException("Simulated rename failure");
+			}
+		};
+		orderStore.init();
+		for (long orderId = 1; orderId <= 100; orderId++)
+			orderStore.createOrder(createOrder(orderId));
+		for (long orderId = 1; orderId <= 90; orderId++)
+			orderStore.removeOrder(orderId, OrderStatus.CANCELLED);
+
+		try {
+			orderStore.compact();
+			Assert.fail("Compaction must report the failed rename");
+		} catch (IOException e) {
+			// expected
+		}
+
+		Assert.assertEquals(10, orderStore.getOrders().size());
+		for (long orderId = 101; orderId <= 5000; orderId++)
+			orderStore.createOrder(createOrder(orderId));
+		Assert.assertEquals("Compaction work file must be cleaned up", 1, folder.getRoot().list().length);
+		Assert.assertEquals(4910, reopenStore().getOrders().size());
+	}
+
+	private void writeJournalWithOneOrder(int magic, boolean pricesAsDoubles) throws Exception {
+		orderStore.close();
+		// a journal written in an older format, with a single GBP_USD order and 8 byte instruments
+		ByteBuffer legacyJournal = ByteBuffer.allocate(16 + JournalOrderStore.RECORD_SIZE);
+		legacyJournal.putInt(magic).putInt(JournalOrderStore.RECORD_SIZE).putLong(0);
+		legacyJournal.put((byte) 1).putLong(7).put("GBP_USD".getBytes(StandardCharsets.US_ASCII)).put((byte) 0);
+		legacyJournal.put((byte) OrderAction.SELL.ordinal()).putLong(10000);
+		if (pricesAsDoubles)
+			legacyJournal.putDouble(1.3345).putDouble(1.3045).putDouble(1.3433).putInt(5);
+		else
+			legacyJournal.putLong(1334500).putLong(1304500).putLong(1343300).putInt(5);
+		CRC32 crc = new CRC32();
+		crc.update(legacyJournal.array(), 16, JournalOrderStore.RECORD_SIZE - 4);
+		legacyJournal.putInt(16 + JournalOrderStore.RECORD_SIZE - 4, (int) crc.getValue());
+		Files.write(journalFile.toPath(), legacyJournal.array());
+	}
+
+	private void assertLegacyOrderRecovered() {
+		orderStore = openStore();
+		Order order = reopenStore().getOrders().iterator().next();
+
+		Assert.assertEquals(7, order.getOrderId());
+		Assert.assertEquals("GBP_USD", order.getInstrument());
+		Assert.assertEquals(OrderAction.SELL, order.getAction());
+		Assert.assertEquals(1334500, order.getStopEntryTicks());
+		Assert.assertEquals(1304500, order.getTargetProfitTicks());
+		Assert.assertEquals(1343300, order.getStopLossTicks());
+		Assert.assertEquals(5, order.getTriggerDistancePips());
+	}
+
+	@Test
+	public void init_WhenJournalHasPricesAsDoubles_ShouldRewriteThemAsTicks() throws Exception {
+		writeJournalWithOneOrder(0x4F464A31, true);
+
+		assertLegacyOrderRecovered();
+	}
+
+	@Test
+	public void init_WhenJournalHasShortInstruments_ShouldRewriteIt() throws Exception {
+		writeJournalWithOneOrder(0x4F464A32, false);
+
+		assertLegacyOrderRecovered();
+	}
+}
@@ -0,0 +1,254 @@
+package com.asador.oanda.orders.domain;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class OrderDAOTest {
+
+	@Autowired
+	private OrderDAO orderDao;
+
+	@Autowired
+	private OrderStore orderStore;
+
+	@After
+	public void tearDown() {
+		for (Order order : orderDao.getOrders())
+			orderDao.removeOrder(order.getOrderId(), OrderStatus.CANCELLED);
+	}
+
+	private Order createGBPUSDOrder() {
+		Order order = new Order();
+		order.setInstrument("GBP_USD");
+		order.setAction(OrderAction.SELL);
+		order.setStopEntry(1.3345);
+		order.setTargetProfit(1.3045);
+		order.setStopLoss(1.3433);
+		order.setUnits(10000);
+		order.setTriggerDistancePips(5);
+		return order;
+	}
+
+	private boolean isOrderStored(long orderId) {
+		return orderStore.getOrders().stream().anyMatch(order -> order.getOrderId() == orderId);
+	}
+
+	@Test
+	public void createOrder_ShouldWriteThroughToOrderStore() {
+		long orderId = orderDao.createOrder(createGBPUSDOrder());
+
+		Assert.assertTrue("Order must be written to the store", isOrderStored(orderId));
+		Assert.assertNotNull("Order must be served from memory", orderDao.getOrder(orderId));
+	}
+
+	@Test
+	public void removeOrder_ShouldWriteThroughToOrderStore() {
+		long orderId = orderDao.createOrder(createGBPUSDOrder());
+
+		Assert.assertTrue(orderDao.removeOrder(orderId, OrderStatus.CANCELLED));
+
+		Assert.assertFalse("Order must be removed from the store", isOrderStored(orderId));
+		Assert.assertNull("Order must be removed from memory", orderDao.getOrder(orderId));
+		Assert.assertFalse("Removing an unknown order must report it", orderDao.removeOrder(orderId, OrderStatus.CANCELLED));
+	}
+
+	@Test
+	public void hasOrder_ShouldFollowInstrumentAndActionOfPendingOrders() {
+		long orderId = orderDao.createOrder(createGBPUSDOrder());
+
+		Assert.assertTrue(orderDao.hasOrder("GBP_USD", OrderAction.SELL));
+		Assert.assertFalse(orderDao.hasOrder("GBP_USD", OrderAction.BUY));
+		Assert.assertFalse(orderDao.hasOrder("EUR_USD", OrderAction.SELL));
+
+		orderDao.removeOrder(orderId, OrderStatus.CANCELLED);
+		Assert.assertFalse(orderDao.hasOrder("GBP_USD", OrderAction.SELL));
+	}
+
+	@Test
+	public void createOrderIfAbsent_WhenCreatedConcurrently_ShouldCreateOnlyOneOrder() throws Exception {
+		int threads = 8;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Order> orders = new ArrayList<>();
+		List<Future<Long>> orderIds = new ArrayList<>();
+		try {
+			for (int i = 0; i < threads; i++) {
+				Order order = createGBPUSDOrder();
+				orders.add(order);
+				orderIds.add(executor.submit(() -> {
+					start.await();
+					return orderDao.createOrderIfAbsent(order);
+				}));
+			}
+			start.countDown();
+
+			Set<Long> distinctIds = new HashSet<>();
+			for (Future<Long> orderId : orderIds)
+				distinctIds.add(orderId.get(5, TimeUnit.SECONDS));
+			Assert.assertEquals("Every caller must get the id of the one order created", 1, distinctIds.size());
+			Assert.assertEquals(1, orderDao.getOrders().size());
+			Assert.assertEquals(1, orders.stream().filter(order -> distinctIds.contains(order.getOrderId())).count());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void createOrdersIfAbsent_ShouldSkipPendingAndRepeatedOrders() {
+		long pendingId = orderDao.createOrder(createGBPUSDOrder());
+		Order gbpusd = createGBPUSDOrder();
+		Order eurusd = createGBPUSDOrder();
+		eurusd.setInstrument("EUR_USD");
+		Order eurusdAgain = createGBPUSDOrder();
+		eurusdAgain.setInstrument("EUR_USD");
+
+		List<Long> orderIds = orderDao.createOrdersIfAbsent(Arrays.asList(gbpusd, eurusd, eurusdAgain));
+
+		Assert.assertEquals(Arrays.asList(pendingId, eurusd.getOrderId(), eurusd.getOrderId()), orderIds);
+		Assert.assertEquals(0, gbpusd.getOrderId());
+		Assert.assertEquals(0, eurusdAgain.getOrderId());
+		Assert.assertTrue(isOrderStored(eurusd.getOrderId()));
+		Assert.assertEquals(2, orderDao.getOrders().size());
+	}
+
+	@Test
+	public void init_ShouldRehydratePendingOrdersFromOrderStore() {
+		Order storedOrder = createGBPUSDOrder();
+		storedOrder.setOrderId(42);
+		orderStore.createOrder(storedOrder);
+
+		orderDao.init();
+
+		Assert.assertNotNull("Stored order must be loaded in memory", orderDao.getOrder(42));
+		Assert.assertTrue(orderDao.hasOrder("GBP_USD", OrderAction.SELL));
+	}
+
+	@Test
+	public void createOrders_ShouldWriteThroughAllOrdersToOrderStore() {
+		Order gbpusd = createGBPUSDOrder();
+		Order eurusd = createGBPUSDOrder();
+		eurusd.setInstrument("EUR_USD");
+
+		orderDao.createOrders(Arrays.asList(gbpusd, eurusd));
+
+		Assert.assertNotEquals("Orders created together must get their own ids", gbpusd.getOrderId(), eurusd.getOrderId());
+		Assert.assertTrue(isOrderStored(gbpusd.getOrderId()));
+		Assert.assertTrue(isOrderStored(eurusd.getOrderId()));
+		Assert.assertTrue(orderDao.hasOrder("EUR_USD", OrderAction.SELL));
+	}
+
+	@Test
+	public void createOrders_WhenOneOrderCannotBeStored_ShouldStoreNoneOfThem() {
+		Order gbpusd = createGBPUSDOrder();
+		Order tooLong = createGBPUSDOrder();
+		tooLong.setInstrument("GBP_USD_TOO_LONG");
+
+		try {
+			orderDao.createOrders(Arrays.asList(gbpusd, tooLong));
+			Assert.fail("Storing an instrument longer than the column must fail");
+		} catch (RuntimeException e) {
+			// expected
+		}
+
+		Assert.assertTrue("Batch must be rolled back", orderStore.getOrders().isEmpty());
+		Assert.assertTrue(orderDao.getOrders().isEmpty());
+	}
+
+	private List<Long> getOrderIds(Iterable<Order> orders) {
+		List<Long> orderIds = new ArrayList<>();
+		for (Order order : orders)
+			orderIds.add(order.getOrderId());
+		return orderIds;
+	}
+
+	@Test
+	public void getOrders_ShouldFilterAndPageByOrderId() {
+		Order gbpusdSell = createGBPUSDOrder();
+		Order gbpusdBuy = createGBPUSDOrder();
+		gbpusdBuy.setAction(OrderAction.BUY);
+		Order eurusdSell = createGBPUSDOrder();
+		eurusdSell.setInstrument("EUR_USD");
+		Order gbpusdSell2 = createGBPUSDOrder();
+		orderDao.createOrders(Arrays.asList(gbpusdSell, gbpusdBuy, eurusdSell, gbpusdSell2));
+
+		Assert.assertEquals(Arrays.asList(gbpusdSell.getOrderId(), gbpusdBuy.getOrderId(), gbpusdSell2.getOrderId()),
+				getOrderIds(orderDao.getOrders("GBP_USD", null, 0, 0)));
+		Assert.assertEquals(Arrays.asList(gbpusdSell.getOrderId(), eurusdSell.getOrderId()),
+				getOrderIds(orderDao.getOrders(null, OrderAction.SELL, 0, 2)));
+		Assert.assertEquals("Next page must start after the last order of the previous one",
+				Arrays.asList(gbpusdSell2.getOrderId()),
+				getOrderIds(orderDao.getOrders(null, OrderAction.SELL, eurusdSell.getOrderId(), 2)));
+	}
+
+	@Test
+	public void getVersion_ShouldChangeWhenOrdersChange() {
+		String initialVersion = orderDao.getVersion();
+		long orderId = orderDao.createOrder(createGBPUSDOrder());
+		String createdVersion = orderDao.getVersion();
+		Assert.assertNotEquals(initialVersion, createdVersion);
+		Assert.assertEquals("Reading orders must not change the version", createdVersion, orderDao.getVersion());
+
+		orderDao.removeOrder(orderId, OrderStatus.CANCELLED);
+		Assert.assertNotEquals(createdVersion, orderDao.getVersion());
+		String removedVersion = orderDao.getVersion();
+		orderDao.removeOrder(orderId, OrderStatus.CANCELLED);
+		Assert.assertEquals("Removing an unknown order must not change the version", removedVersion, orderDao.getVersion());
+	}
+
+	@Test
+	public void refresh_WhenStoreUnchanged_ShouldKeepTheVersion() {
+		orderDao.createOrder(createGBPUSDOrder());
+		String version = orderDao.getVersion();
+
+		orderDao.refresh();
+		Assert.assertEquals(version, orderDao.getVersion());
+
+		Order storedOrder = createGBPUSDOrder();
+		// ids of orders no longer pending stay taken in the store
+		storedOrder.setOrderId(43);
+		orderStore.createOrder(storedOrder);
+		orderDao.refresh();
+		Assert.assertNotEquals("Orders created by another instance must change the version", version, orderDao.getVersion());
+	}
+
+	@Test
+	public void refresh_WhileOrdersAreRead_ShouldNeverShowAPartialCache() throws Exception {
+		long orderId = orderDao.createOrder(createGBPUSDOrder());
+		AtomicBoolean refreshing = new AtomicBoolean(true);
+		AtomicInteger misses = new AtomicInteger();
+		Thread reader = new Thread(() -> {
+			while (refreshing.get()) {
+				if (orderDao.getOrder(orderId) == null || orderDao.getOrders().isEmpty())
+					misses.incrementAndGet();
+			}
+		});
+		reader.start();
+
+		for (int i = 0; i < 200; i++)
+			orderDao.refresh();
+		refreshing.set(false);
+		reader.join();
+
+		Assert.assertEquals("Readers must see the pending order during every reload", 0, misses.get());
+	}
+}
@@ -0,0 +1,105 @@
+package com.asador.oanda.orders.domain;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class OrderIdGeneratorTest {
+	private final Logger logger = LoggerFactory.getLogger(OrderIdGeneratorTest.class);
+
+	private static final long NOW = OrderIdGenerator.EPOCH + 86_400_000L;
+
+	@Test
+	public void nextId_WhenCalledManyTimesInSameMillisecond_ShouldKeepIncreasing() {
+		OrderIdGenerator generator = new OrderIdGenerator(1, () -> NOW);
+
+		long previousId = generator.nextId();
+		for (int i = 0; i < 100_000; i++) {
+			long id = generator.nextId();
+			Assert.assertTrue("Ids must keep increasing once the sequence of a millisecond is used up", id > previousId);
+			previousId = id;
+		}
+	}
+
+	@Test
+	public void nextId_WhenClockGoesBackwards_ShouldKeepIncreasing() {
+		AtomicLong clock = new AtomicLong(NOW);
+		OrderIdGenerator generator = new OrderIdGenerator(1, clock::get);
+
+		long id = generator.nextId();
+		clock.set(NOW - 60_000);
+
+		Assert.assertTrue(generator.nextId() > id);
+	}
+
+	@Test
+	public void nextId_WhenDifferentNodesAtSameTime_ShouldNotCollide() {
+		OrderIdGenerator node1 = new OrderIdGenerator(1, () -> NOW);
+		OrderIdGenerator node2 = new OrderIdGenerator(2, () -> NOW);
+
+		for (int i = 0; i < 10_000; i++)
+			Assert.assertNotEquals(node1.nextId(), node2.nextId());
+	}
+
+	@Test
+	public void advancePast_WhenPreviousRunClockWasAhead_ShouldHandOutGreaterIds() {
+		long lastIdOfPreviousRun = new OrderIdGenerator(1, () -> NOW + 60_000).nextId();
+		OrderIdGenerator generator = new OrderIdGenerator(1, () -> NOW);
+
+		generator.advancePast(lastIdOfPreviousRun);
+
+		Assert.assertTrue("Ids must not go back after a restart", generator.nextId() > lastIdOfPreviousRun);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void constructor_WhenNodeIdOutOfRange_ShouldThrowException() {
+		new OrderIdGenerator(OrderIdGenerator.MAX_NODE_ID + 1);
+	}
+
+	@Test
+	public void nextId_WhenCalledConcurrently_ShouldNeverCollide() throws Exception {
+		int threadCount = Math.max(4, Runtime.getRuntime().availableProcessors());
+		int idsPerThread = 1_000_000;
+		OrderIdGenerator generator = new OrderIdGenerator(7);
+		long[][] ids = new long[threadCount][idsPerThread];
+		CountDownLatch start = new CountDownLatch(1);
+		Thread[] threads = new Thread[threadCount];
+		for (int t = 0; t < threadCount; t++) {
+			long[] threadIds = ids[t];
+			threads[t] = new Thread(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				for (int i = 0; i < idsPerThread; i++)
+					threadIds[i] = generator.nextId();
+			});
+			threads[t].start();
+		}
+
+		long startTime = System.nanoTime();
+		start.countDown();
+		for (Thread thread : threads)
+			thread.join();
+		long elapsedNanos = System.nanoTime() - startTime;
+
+		long[] allIds = new long[threadCount * idsPerThread];
+		for (int t = 0; t < threadCount; t++) {
+			for (int i = 1; i < idsPerThread; i++)
+				Assert.assertTrue("Ids of one thread must keep increasing", ids[t][i] > ids[t][i - 1]);
+			System.arraycopy(ids[t], 0, allIds, t * idsPerThread, idsPerThread);
+		}
+		Arrays.sort(allIds);
+		for (int i = 1; i < allIds.length; i++)
+			Assert.assertNotEquals("Duplicate order id", allIds[i - 1], allIds[i]);
+
+		logger.info("{} threads generated {} unique ids in {} ms, {} ids/s", threadCount, allIds.length,
+				elapsedNanos / 1_000_000, (long) (allIds.length / (elapsedNanos / 1e9)));
+	}
+}
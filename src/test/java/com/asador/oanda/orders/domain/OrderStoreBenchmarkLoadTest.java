@@ -0,0 +1,100 @@
+package com.asador.oanda.orders.domain;
+
+import java.io.File;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Compares create/remove throughput and startup recovery time of the journal store against the JDBC
+ * store on a HSQLDB file database. Run with {@code mvn test -Dtest=OrderStoreBenchmarkLoadTest}.
+ */
+public class OrderStoreBenchmarkLoadTest {
+	private final Logger logger = LoggerFactory.getLogger(OrderStoreBenchmarkLoadTest.class);
+
+	private static final int ORDER_COUNT = 10_000;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private interface StoreFactory {
+		OrderStore open();
+	}
+
+	private interface StoreCloser {
+		void close(OrderStore store);
+	}
+
+	private Order createOrder(long orderId) {
+		Order order = new Order();
+		order.setOrderId(orderId);
+		order.setInstrument("EUR_USD");
+		order.setAction(OrderAction.BUY);
+		order.setStopEntry(1.1925);
+		order.setTargetProfit(1.2025);
+		order.setStopLoss(1.1875);
+		order.setUnits(10000);
+		order.setTriggerDistancePips(5);
+		return order;
+	}
+
+	@Test
+	public void benchmark_JournalOrderStore() {
+		File journalFile = new File(folder.getRoot(), "orders.journal");
+		run("journal", () -> {
+			JournalOrderStore store = new JournalOrderStore(journalFile.getPath(), false);
+			store.init();
+			return store;
+		}, store -> ((JournalOrderStore) store).close());
+	}
+
+	@Test
+	public void benchmark_JdbcOrderStore() {
+		String url = "jdbc:hsqldb:file:" + new File(folder.getRoot(), "orders").getPath();
+		run("jdbc", () -> {
+			JdbcTemplate jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(url, "SA", ""));
+			new ResourceDatabasePopulator(new ClassPathResource("schema-hsqldb.sql"))
+					.execute(jdbcTemplate.getDataSource());
+			JdbcOrderStore store = new JdbcOrderStore();
+			ReflectionTestUtils.setField(store, "jdbcTemplate", jdbcTemplate);
+			store.migrateSchema();
+			return store;
+		}, store -> ((JdbcTemplate) ReflectionTestUtils.getField(store, "jdbcTemplate")).execute("SHUTDOWN"));
+	}
+
+	private void run(String name, StoreFactory factory, StoreCloser closer) {
+		OrderStore store = factory.open();
+
+		long start = System.nanoTime();
+		for (int i = 1; i <= ORDER_COUNT; i++)
+			store.createOrder(createOrder(i));
+		long createNanos = System.nanoTime() - start;
+
+		// remove every other order so recovery has to skip dead records too
+		start = System.nanoTime();
+		for (int i = 1; i <= ORDER_COUNT; i += 2)
+			store.removeOrder(i, OrderStatus.CANCELLED);
+		long removeNanos = System.nanoTime() - start;
+		closer.close(store);
+
+		start = System.nanoTime();
+		store = factory.open();
+		int recovered = store.getOrders().size();
+		long recoveryNanos = System.nanoTime() - start;
+		closer.close(store);
+
+		logger.warn("{} store: {} creates/s, {} removes/s, recovered {} orders in {} ms", name,
+				(long) (ORDER_COUNT / (createNanos / 1e9)), (long) (ORDER_COUNT / 2 / (removeNanos / 1e9)),
+				recovered, recoveryNanos / 1_000_000);
+		Assert.assertEquals(ORDER_COUNT / 2, recovered);
+	}
+}
@@ -0,0 +1,142 @@
+package com.asador.oanda.pricing;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.asador.oanda.api.CircuitBreaker;
+import com.asador.oanda.api.OandaApiGuard;
+import com.oanda.v20.Context;
+import com.oanda.v20.ExecuteException;
+import com.oanda.v20.RequestException;
+import com.oanda.v20.instrument.Candlestick;
+import com.oanda.v20.instrument.CandlestickData;
+import com.oanda.v20.instrument.InstrumentCandlesRequest;
+import com.oanda.v20.instrument.InstrumentCandlesResponse;
+import com.oanda.v20.instrument.InstrumentContext;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class PollingPriceFeedTest {
+
+	@Autowired
+	private PollingPriceFeed priceFeed;
+
+	@Autowired
+	private Context oandaCtx;
+
+	@Autowired
+	private OandaApiGuard apiGuard;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	private InstrumentContext instrumentContextMock = mock(InstrumentContext.class);
+
+	@Before
+	public void setup() {
+		oandaCtx.instrument = instrumentContextMock;
+	}
+
+	@Test
+	public void subscribe_WhenManyListenersOnSameInstrument_ShouldPollPriceOncePerTick() throws Exception {
+		InstrumentCandlesResponse candlesResponse = mock(InstrumentCandlesResponse.class);
+		Candlestick candlestick = new Candlestick();
+		CandlestickData candleData = new CandlestickData();
+		candlestick.setMid(candleData);
+		candleData.setC(1.3456);
+		when(candlesResponse.getCandles()).thenReturn(Arrays.asList(candlestick));
+
+		CountDownLatch firstPollGate = new CountDownLatch(1);
+		when(instrumentContextMock.candles(any(InstrumentCandlesRequest.class))).thenAnswer(invocation -> {
+			firstPollGate.await();
+			return candlesResponse;
+		});
+
+		CountDownLatch pricesReceived = new CountDownLatch(20);
+		PriceListener[] listeners = new PriceListener[20];
+		for (int i = 0; i < listeners.length; i++) {
+			CountDownLatch received = new CountDownLatch(1);
+			listeners[i] = (instrument, price) -> {
+				if (received.getCount() > 0) {
+					received.countDown();
+					pricesReceived.countDown();
+				}
+			};
+			priceFeed.subscribe("GBP_USD", listeners[i]);
+		}
+		firstPollGate.countDown();
+
+		Assert.assertTrue("Every listener should have received the price",
+				pricesReceived.await(5, TimeUnit.SECONDS));
+		for (PriceListener listener : listeners)
+			priceFeed.unsubscribe("GBP_USD", listener);
+
+		verify(instrumentContextMock, times(1)).candles(any(InstrumentCandlesRequest.class));
+	}
+
+	@Test
+	public void subscribe_WhenInstrumentKeepsFailing_ShouldPauseItsPolling() throws Exception {
+		AtomicInteger pollCount = new AtomicInteger();
+		when(instrumentContextMock.candles(any(InstrumentCandlesRequest.class))).thenAnswer(invocation -> {
+			pollCount.incrementAndGet();
+			throw new RequestException(404) {};
+		});
+		PriceListener listener = (instrument, price) -> {};
+		priceFeed.subscribe("XAU_XAG", listener);
+
+		for (int i = 0; i < 100 && apiGuard.getInstrumentStates().get("XAU_XAG") != CircuitBreaker.State.OPEN; i++)
+			Thread.sleep(100);
+		int pollsBeforePause = pollCount.get();
+		Thread.sleep(2000);
+		priceFeed.unsubscribe("XAU_XAG", listener);
+
+		Assert.assertEquals(CircuitBreaker.State.OPEN, apiGuard.getInstrumentStates().get("XAU_XAG"));
+		Assert.assertEquals("Failing instrument must not be polled while paused", pollsBeforePause, pollCount.get());
+		Assert.assertEquals("Instrument failures must not pause the account", 
+				CircuitBreaker.State.CLOSED, apiGuard.getAccountState());
+	}
+
+	@Test
+	public void subscribe_WhenPollFailsTransiently_ShouldGetThePriceOnTheNextPoll() throws Exception {
+		InstrumentCandlesResponse candlesResponse = mock(InstrumentCandlesResponse.class);
+		Candlestick candlestick = new Candlestick();
+		CandlestickData candleData = new CandlestickData();
+		candlestick.setMid(candleData);
+		candleData.setC(0.7512);
+		when(candlesResponse.getCandles()).thenReturn(Arrays.asList(candlestick));
+		when(instrumentContextMock.candles(any(InstrumentCandlesRequest.class)))
+				.thenThrow(new ExecuteException(new Exception("Unit test connection reset")))
+				.thenReturn(candlesResponse);
+		double retriesBefore = meterRegistry.counter("oanda.api.retries").count();
+
+		CountDownLatch priceReceived = new CountDownLatch(1);
+		PriceListener listener = (instrument, price) -> priceReceived.countDown();
+		long start = System.nanoTime();
+		priceFeed.subscribe("AUD_USD", listener);
+
+		Assert.assertTrue(priceReceived.await(5, TimeUnit.SECONDS));
+		priceFeed.unsubscribe("AUD_USD", listener);
+		Assert.assertEquals(retriesBefore + 1, meterRegistry.counter("oanda.api.retries").count(), 0);
+		Assert.assertTrue("The next poll, a second later, is the retry",
+				System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(900));
+		verify(instrumentContextMock, times(2)).candles(any(InstrumentCandlesRequest.class));
+	}
+}
@@ -0,0 +1,185 @@
+package com.asador.oanda.pricing;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+public class StreamingPriceFeedTest {
+
+	private static final String ACCOUNT_ID = "101-004-1234567-001";
+	private static final Pattern INSTRUMENT = Pattern.compile("\"instrument\":\"(\\w+)\"");
+
+	private HttpServer stubServer;
+	private byte[] cannedStream;
+	private volatile boolean keepStreamOpen = true;
+	private CountDownLatch serverShutdown = new CountDownLatch(1);
+	private AtomicInteger connectionCount = new AtomicInteger();
+	private List<String> requestedUris = new CopyOnWriteArrayList<>();
+	private List<String> authorizationHeaders = new CopyOnWriteArrayList<>();
+	private CountDownLatch allInstrumentsRequested = new CountDownLatch(1);
+
+	private StreamingPriceFeed priceFeed;
+
+	@Before
+	public void setup() throws Exception {
+		cannedStream = Files.readAllBytes(Paths.get(getClass().getResource("/pricing-stream.txt").toURI()));
+
+		stubServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		stubServer.setExecutor(Executors.newCachedThreadPool());
+		stubServer.createContext("/v3/accounts/" + ACCOUNT_ID + "/pricing/stream", this::serveCannedStream);
+		stubServer.start();
+
+		priceFeed = new StreamingPriceFeed("http://localhost:" + stubServer.getAddress().getPort(), ACCOUNT_ID,
+				"test-token", 1);
+	}
+
+	@After
+	public void tearDown() {
+		priceFeed.shutdown();
+		serverShutdown.countDown();
+		stubServer.stop(0);
+	}
+
+	private void serveCannedStream(HttpExchange exchange) throws IOException {
+		connectionCount.incrementAndGet();
+		requestedUris.add(exchange.getRequestURI().toString());
+		authorizationHeaders.add(exchange.getRequestHeaders().getFirst("Authorization"));
+		String query = exchange.getRequestURI().getQuery();
+		List<String> instruments = Arrays.asList(query.substring(query.indexOf('=') + 1).split(","));
+		if (instruments.containsAll(Arrays.asList("EUR_USD", "USD_JPY")))
+			allInstrumentsRequested.countDown();
+
+		// zero response length makes the stub reply with a chunked body, just like OANDA
+		exchange.sendResponseHeaders(200, 0);
+		try (InputStream request = exchange.getRequestBody(); OutputStream response = exchange.getResponseBody()) {
+			for (String line : new String(cannedStream, StandardCharsets.UTF_8).split("\n")) {
+				// like OANDA, only the prices of the instruments asked for
+				Matcher instrument = INSTRUMENT.matcher(line);
+				if (instrument.find() && !instruments.contains(instrument.group(1)))
+					continue;
+				response.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+				response.flush();
+			}
+			if (keepStreamOpen)
+				serverShutdown.await(30, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Test
+	public void subscribe_WhenStreamDeliversPrices_ShouldPushMidPricesToInstrumentListeners() throws Exception {
+		BlockingQueue<Double> eurusdPrices = new LinkedBlockingQueue<>();
+		PriceListener listener = (instrument, price) -> eurusdPrices.add(price);
+		priceFeed.subscribe("EUR_USD", listener);
+
+		Assert.assertEquals(1.1922, eurusdPrices.poll(5, TimeUnit.SECONDS), 0.000001);
+		Assert.assertEquals(1.1916, eurusdPrices.poll(5, TimeUnit.SECONDS), 0.000001);
+		priceFeed.unsubscribe("EUR_USD", listener);
+
+		Assert.assertEquals("/v3/accounts/" + ACCOUNT_ID + "/pricing/stream?instruments=EUR_USD", requestedUris.get(0));
+		Assert.assertEquals("Bearer test-token", authorizationHeaders.get(0));
+	}
+
+	@Test
+	public void subscribe_WhenNewInstrumentSubscribed_ShouldReconnectWithAllInstruments() throws Exception {
+		BlockingQueue<Double> eurusdPrices = new LinkedBlockingQueue<>();
+		BlockingQueue<Double> usdjpyPrices = new LinkedBlockingQueue<>();
+		PriceListener eurusdListener = (instrument, price) -> eurusdPrices.add(price);
+		PriceListener usdjpyListener = (instrument, price) -> usdjpyPrices.add(price);
+
+		priceFeed.subscribe("EUR_USD", eurusdListener);
+		Assert.assertNotNull(eurusdPrices.poll(5, TimeUnit.SECONDS));
+		priceFeed.subscribe("USD_JPY", usdjpyListener);
+
+		Assert.assertTrue("Stream must be reopened with the new instrument", allInstrumentsRequested.await(5, TimeUnit.SECONDS));
+		Assert.assertEquals(109.41, usdjpyPrices.poll(5, TimeUnit.SECONDS), 0.000001);
+		priceFeed.unsubscribe("EUR_USD", eurusdListener);
+		priceFeed.unsubscribe("USD_JPY", usdjpyListener);
+
+		Assert.assertTrue(requestedUris.contains("/v3/accounts/" + ACCOUNT_ID + "/pricing/stream?instruments=EUR_USD,USD_JPY"));
+	}
+
+	@Test
+	public void subscribe_WhenServerClosesStream_ShouldReconnectAndKeepPushingPrices() throws Exception {
+		keepStreamOpen = false;
+		BlockingQueue<Double> eurusdPrices = new LinkedBlockingQueue<>();
+		PriceListener listener = (instrument, price) -> eurusdPrices.add(price);
+		priceFeed.subscribe("EUR_USD", listener);
+
+		for (int i = 0; i < 4; i++)
+			Assert.assertNotNull("Prices must keep coming after reconnect", eurusdPrices.poll(5, TimeUnit.SECONDS));
+		priceFeed.unsubscribe("EUR_USD", listener);
+
+		Assert.assertTrue("Stream must have been reconnected", connectionCount.get() >= 2);
+	}
+
+	@Test
+	public void subscribe_WhenHeartbeatsStop_ShouldReconnect() throws Exception {
+		BlockingQueue<Double> eurusdPrices = new LinkedBlockingQueue<>();
+		PriceListener listener = (instrument, price) -> eurusdPrices.add(price);
+		priceFeed.subscribe("EUR_USD", listener);
+
+		// the stub goes silent after the canned messages, the 1 second heartbeat timeout must kick in
+		for (int i = 0; i < 4; i++)
+			Assert.assertNotNull("Prices must keep coming after reconnect", eurusdPrices.poll(5, TimeUnit.SECONDS));
+		priceFeed.unsubscribe("EUR_USD", listener);
+
+		Assert.assertTrue("Stream must have been reconnected", connectionCount.get() >= 2);
+	}
+
+	@Test
+	public void shutdown_WhileStreaming_ShouldStopTheStreamThread() throws Exception {
+		BlockingQueue<Double> eurusdPrices = new LinkedBlockingQueue<>();
+		priceFeed.subscribe("EUR_USD", (instrument, price) -> eurusdPrices.add(price));
+		Assert.assertNotNull(eurusdPrices.poll(5, TimeUnit.SECONDS));
+
+		priceFeed.shutdown();
+
+		ExecutorService executor = (ExecutorService) ReflectionTestUtils.getField(priceFeed, "executor");
+		Assert.assertTrue("Stream thread must stop instead of reconnecting", executor.awaitTermination(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void subscribe_WhenListenerThrows_ShouldReconnectAndKeepPushingPrices() throws Exception {
+		BlockingQueue<Double> eurusdPrices = new LinkedBlockingQueue<>();
+		AtomicInteger priceCount = new AtomicInteger();
+		PriceListener listener = (instrument, price) -> {
+			if (priceCount.incrementAndGet() == 1)
+				throw new IllegalStateException("Unit test listener failure");
+			eurusdPrices.add(price);
+		};
+		priceFeed.subscribe("EUR_USD", listener);
+
+		for (int i = 0; i < 2; i++)
+			Assert.assertNotNull("Prices must keep coming after the failure", eurusdPrices.poll(5, TimeUnit.SECONDS));
+		priceFeed.unsubscribe("EUR_USD", listener);
+
+		Assert.assertTrue("Stream must have been reconnected", connectionCount.get() >= 2);
+	}
+}